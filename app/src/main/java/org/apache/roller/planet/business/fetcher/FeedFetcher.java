@@ -68,5 +68,25 @@ public interface FeedFetcher {
      * @throws FetcherException If there is an error fetching the subscription.
      */
     Subscription fetchSubscription(String feedURL, Date lastModified) throws FetcherException;
+    
+    
+    /**
+     * Conditionally fetch a single subscription using the HTTP validators
+     * (ETag and Last-Modified headers) from its previous fetch.
+     *
+     * Works like {@link #fetchSubscription(String, Date)}, but also asks the
+     * server to send the feed only if it has changed, so an unchanged feed
+     * doesn't have to be downloaded and parsed.  The returned Subscription
+     * carries the validators to use for the next fetch.
+     *
+     * @param feedURL The feed url to use when fetching the subscription.
+     * @param lastUpdated The last updated date of the feed, may be null.
+     * @param etag The ETag from the previous fetch, may be null.
+     * @param lastModified The Last-Modified from the previous fetch, may be null.
+     * @return Subscription The fetched subscription, or null if unchanged.
+     * @throws FetcherException If there is an error fetching the subscription.
+     */
+    Subscription fetchSubscription(String feedURL, Date lastUpdated, String etag, String lastModified)
+            throws FetcherException;
 
 }
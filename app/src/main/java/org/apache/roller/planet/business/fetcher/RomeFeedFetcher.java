@@ -28,9 +28,12 @@ import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -44,6 +47,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.planet.pojos.SubscriptionEntry;
 import org.apache.roller.planet.pojos.Subscription;
 
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.http.HttpResponse.BodyHandlers.ofInputStream;
 
 
@@ -81,6 +85,16 @@ public class RomeFeedFetcher implements FeedFetcher {
      */
     @Override
     public Subscription fetchSubscription(String feedURL, Date lastModified) throws FetcherException {
+        return fetchSubscription(feedURL, lastModified, null, null);
+    }
+    
+    
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Subscription fetchSubscription(String feedURL, Date lastModified,
+            String etag, String httpLastModified) throws FetcherException {
 
         if(feedURL == null) {
             throw new IllegalArgumentException("feed url cannot be null");
@@ -88,9 +102,27 @@ public class RomeFeedFetcher implements FeedFetcher {
         
         // fetch the feed
         log.debug("Fetching feed: "+feedURL);
+        HttpRequest.Builder request = requestBuilder.copy().uri(URI.create(feedURL));
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (httpLastModified != null) {
+            request.header("If-Modified-Since", httpLastModified);
+        }
+        
         SyndFeed feed;
+        HttpHeaders headers;
         try {
-            feed = fetchFeed(feedURL);
+            HttpResponse<InputStream> response = client.send(request.build(), ofInputStream());
+            headers = response.headers();
+            if (response.statusCode() == HTTP_NOT_MODIFIED) {
+                response.body().close();
+                log.debug("Feed not modified: "+feedURL);
+                return null;
+            }
+            try(XmlReader reader = new XmlReader(response.body())) {
+                feed = new SyndFeedInput().build(reader);
+            }
         } catch (FeedException | IOException | InterruptedException ex) {
             throw new FetcherException("Error fetching subscription - "+feedURL, ex);
         }
@@ -100,6 +132,8 @@ public class RomeFeedFetcher implements FeedFetcher {
         // build planet subscription from fetched feed
         Subscription newSub = new Subscription();
         newSub.setFeedURL(feedURL);
+        newSub.setEtag(headers.firstValue("ETag").orElse(null));
+        newSub.setLastModified(headers.firstValue("Last-Modified").orElse(null));
         newSub.setSiteURL(feed.getLink());
         newSub.setTitle(feed.getTitle());
         newSub.setAuthor(feed.getAuthor());
@@ -142,6 +176,10 @@ public class RomeFeedFetcher implements FeedFetcher {
         List<SyndEntry> feedEntries = feed.getEntries();
         for (SyndEntry feedEntry : feedEntries) {
             SubscriptionEntry newEntry = buildEntry(feedEntry);
+            if (newEntry == null) {
+                log.debug("Skipping entry without permalink in "+feedURL);
+                continue;
+            }
             
             // some kludge to handle feeds with no entry dates
             if (newEntry.getPubTime() == null) {
@@ -225,14 +263,4 @@ public class RomeFeedFetcher implements FeedFetcher {
         return newEntry;
     }
     
-    private SyndFeed fetchFeed(String url) throws IOException, InterruptedException, FeedException {
-        
-        HttpRequest request = requestBuilder.copy().uri(URI.create(url)).build();
-        
-        try(XmlReader reader = new XmlReader(client.send(request, ofInputStream()).body())) {
-            return new SyndFeedInput().build(reader);
-        }
-       
-    }
-    
 }
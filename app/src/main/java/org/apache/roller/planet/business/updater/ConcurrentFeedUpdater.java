@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.planet.business.updater;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.RollerException;
+import org.apache.roller.planet.business.PlanetManager;
+import org.apache.roller.planet.business.fetcher.FeedFetcher;
+import org.apache.roller.planet.business.fetcher.FetcherException;
+import org.apache.roller.planet.pojos.PlanetGroup;
+import org.apache.roller.planet.pojos.Subscription;
+import org.apache.roller.planet.pojos.SubscriptionEntry;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * A FeedUpdater which fetches remote feeds concurrently.
+ *
+ * Feeds are fetched on a small pool of threads with a limited number of
+ * fetches to the same host at a time.  Each fetch is conditional on the ETag
+ * and Last-Modified headers of the previous one, so feeds which haven't
+ * changed aren't downloaded again.  Entries are matched up with the stored
+ * ones by permalink and only new or changed entries are written.
+ *
+ * Only fetching happens on the pool, the subscriptions are read and updated
+ * by the calling thread as the fetches come in.  Local (weblogger:) feeds are
+ * fetched on the calling thread too, since that needs the database.
+ */
+public class ConcurrentFeedUpdater implements FeedUpdater {
+
+    private static final Log log = LogFactory.getLog(ConcurrentFeedUpdater.class);
+
+    private final int threads;
+    private final int threadsPerHost;
+
+
+    public ConcurrentFeedUpdater() {
+        this(WebloggerConfig.getIntProperty("planet.aggregator.threads", 8),
+                WebloggerConfig.getIntProperty("planet.aggregator.threadsPerHost", 2));
+    }
+
+    public ConcurrentFeedUpdater(int threads, int threadsPerHost) {
+        this.threads = Math.max(1, threads);
+        this.threadsPerHost = Math.max(1, threadsPerHost);
+    }
+
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void updateSubscription(Subscription sub) throws UpdaterException {
+
+        if (sub == null) {
+            throw new IllegalArgumentException("cannot update null subscription");
+        }
+
+        Fetch fetch = new Fetch(sub);
+        fetch.run(WebloggerFactory.getWeblogger().getFeedFetcher());
+        apply(sub, fetch);
+    }
+
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void updateSubscriptions() throws UpdaterException {
+
+        log.debug("--- BEGIN --- Updating all subscriptions");
+
+        long startTime = System.currentTimeMillis();
+
+        try {
+            // update all subscriptions in the system
+            PlanetManager pmgr = WebloggerFactory.getWeblogger().getPlanetManager();
+            updateSubscriptions(pmgr.getSubscriptions());
+        } catch (RollerException ex) {
+            throw new UpdaterException("Error getting subscriptions list", ex);
+        }
+
+        long endTime = System.currentTimeMillis();
+        log.info("--- DONE --- Updated subscriptions in "
+                + ((endTime-startTime) / RollerConstants.SEC_IN_MS) + " seconds");
+    }
+
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void updateSubscriptions(PlanetGroup group) throws UpdaterException {
+
+        if(group == null) {
+            throw new IllegalArgumentException("cannot update null group");
+        }
+
+        log.debug("--- BEGIN --- Updating subscriptions in group = "+group.getHandle());
+
+        long startTime = System.currentTimeMillis();
+
+        updateSubscriptions(group.getSubscriptions());
+
+        long endTime = System.currentTimeMillis();
+        log.info("--- DONE --- Updated subscriptions in "
+                + ((endTime-startTime) / RollerConstants.SEC_IN_MS) + " seconds");
+    }
+
+
+    // fetch remote feeds on the pool while local ones are updated here,
+    // then update the remote ones as their fetches finish
+    private void updateSubscriptions(Collection<Subscription> subscriptions) {
+
+        FeedFetcher fetcher = WebloggerFactory.getWeblogger().getFeedFetcher();
+
+        List<Fetch> local = new ArrayList<>();
+        Map<String, Queue<Fetch>> hosts = new LinkedHashMap<>();
+        int remote = 0;
+        for (Subscription sub : subscriptions) {
+            Fetch fetch = new Fetch(sub);
+            String host = getHost(sub.getFeedURL());
+            if (host == null) {
+                local.add(fetch);
+            } else {
+                hosts.computeIfAbsent(host, h -> new ConcurrentLinkedQueue<>()).add(fetch);
+                remote++;
+            }
+        }
+
+        BlockingQueue<Fetch> done = new LinkedBlockingQueue<>();
+        ExecutorService executor = null;
+        if (remote > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.min(threads, remote), r -> {
+                Thread thread = new Thread(r, "FeedUpdater-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            // interleave the hosts so every host is started before any gets a second thread
+            Map<Queue<Fetch>, Integer> workers = new HashMap<>();
+            for (Queue<Fetch> queue : hosts.values()) {
+                workers.put(queue, Math.min(threadsPerHost, queue.size()));
+            }
+            for (int i = 0; i < threadsPerHost; i++) {
+                for (Queue<Fetch> queue : hosts.values()) {
+                    if (i < workers.get(queue)) {
+                        executor.execute(() -> {
+                            Fetch fetch;
+                            while ((fetch = queue.poll()) != null) {
+                                try {
+                                    fetch.run(fetcher);
+                                } finally {
+                                    done.add(fetch);
+                                }
+                            }
+                        });
+                    }
+                }
+            }
+            executor.shutdown();
+        }
+
+        try {
+            for (Fetch fetch : local) {
+                fetch.run(fetcher);
+                update(fetch);
+            }
+            for (int i = 0; i < remote; i++) {
+                update(done.take());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while updating subscriptions");
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+
+    // update a subscription after fetching it, logging any errors
+    private void update(Fetch fetch) {
+
+        PlanetManager pmgr = WebloggerFactory.getWeblogger().getPlanetManager();
+        try {
+            // reattach sub.  sub gets detached as we iterate
+            Subscription sub = pmgr.getSubscriptionById(fetch.id);
+            if (sub == null) {
+                log.warn("Subscription went missing while doing update: " + fetch.feedURL);
+                return;
+            }
+            apply(sub, fetch);
+
+        } catch (Exception ex) {
+            // do a little work to get at the source of the problem
+            Throwable cause = ex;
+            if (ex instanceof RollerException && ((RollerException) ex).getRootCause() != null) {
+                cause = ((RollerException) ex).getRootCause();
+            }
+            if (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Error updating subscription - " + fetch.feedURL, cause);
+            } else {
+                log.warn("Error updating subscription - " + fetch.feedURL
+                        + " turn on debug logging for more info");
+            }
+        }
+    }
+
+
+    // update a subscription with the results of its fetch
+    private void apply(Subscription sub, Fetch fetch) throws UpdaterException {
+
+        if (fetch.error != null) {
+            throw new UpdaterException("Error fetching updated subscription", fetch.error);
+        }
+
+        Subscription updatedSub = fetch.result;
+
+        // if sub was unchanged then we are done
+        if (updatedSub == null) {
+            log.debug("Skipping update, feed hasn't changed - " + sub.getFeedURL());
+            return;
+        }
+
+        // update subscription attributes
+        sub.setSiteURL(updatedSub.getSiteURL());
+        sub.setTitle(updatedSub.getTitle());
+        sub.setAuthor(updatedSub.getAuthor());
+        sub.setLastUpdated(updatedSub.getLastUpdated());
+        sub.setEtag(updatedSub.getEtag());
+        sub.setLastModified(updatedSub.getLastModified());
+
+        int added = 0;
+        int changed = 0;
+        int removed = 0;
+        try {
+            PlanetManager pmgr = WebloggerFactory.getWeblogger().getPlanetManager();
+
+            if (!updatedSub.getEntries().isEmpty()) {
+                Map<String, SubscriptionEntry> existing = new HashMap<>();
+                for (SubscriptionEntry entry : sub.getEntries()) {
+                    existing.put(entry.getPermalink(), entry);
+                }
+
+                for (SubscriptionEntry entry : updatedSub.getEntries()) {
+                    SubscriptionEntry current = existing.remove(entry.getPermalink());
+                    if (current == null) {
+                        sub.addEntry(entry);
+                        added++;
+                    } else if (!isSameEntry(current, entry)) {
+                        current.setTitle(entry.getTitle());
+                        current.setAuthor(entry.getAuthor());
+                        current.setText(entry.getText());
+                        current.setPubTime(entry.getPubTime());
+                        current.setUpdateTime(entry.getUpdateTime());
+                        current.setCategoriesString(entry.getCategoriesString());
+                        changed++;
+                    }
+                }
+
+                // entries which dropped out of the feed go away
+                for (SubscriptionEntry entry : existing.values()) {
+                    sub.getEntries().remove(entry);
+                    pmgr.deleteEntry(entry);
+                    removed++;
+                }
+            }
+
+            // save and flush
+            pmgr.saveSubscription(sub);
+            WebloggerFactory.getWeblogger().flush();
+
+        } catch (RollerException ex) {
+            throw new UpdaterException("Error persisting updated subscription", ex);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("updated feed -- " + sub.getFeedURL() + " -- " + added + " new, "
+                    + changed + " changed, " + removed + " removed entries");
+        }
+    }
+
+
+    private static boolean isSameEntry(SubscriptionEntry a, SubscriptionEntry b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getAuthor(), b.getAuthor())
+                && Objects.equals(a.getText(), b.getText())
+                && Objects.equals(a.getCategoriesString(), b.getCategoriesString())
+                && isSameTime(a.getPubTime(), b.getPubTime())
+                && isSameTime(a.getUpdateTime(), b.getUpdateTime());
+    }
+
+
+    // compare to the second, databases don't all keep fractions of seconds
+    private static boolean isSameTime(Timestamp a, Timestamp b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getTime() / RollerConstants.SEC_IN_MS == b.getTime() / RollerConstants.SEC_IN_MS;
+    }
+
+
+    // host of a remote feed, or null if the feed isn't fetched over http
+    private static String getHost(String feedURL) {
+        if (feedURL == null) {
+            return null;
+        }
+        String lower = feedURL.toLowerCase(Locale.ENGLISH);
+        if (!lower.startsWith("http://") && !lower.startsWith("https://")) {
+            return null;
+        }
+        try {
+            String host = URI.create(feedURL).getHost();
+            return host != null ? host.toLowerCase(Locale.ENGLISH) : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+
+    /**
+     * A single fetch, with everything it needs copied out of the subscription
+     * so that it can run on any thread.
+     */
+    private static final class Fetch {
+
+        private final String id;
+        private final String feedURL;
+        private final Date lastUpdated;
+        private final String etag;
+        private final String lastModified;
+
+        private Subscription result;
+        private FetcherException error;
+
+        Fetch(Subscription sub) {
+            this.id = sub.getId();
+            this.feedURL = sub.getFeedURL();
+            this.lastUpdated = sub.getLastUpdated();
+            this.etag = sub.getEtag();
+            this.lastModified = sub.getLastModified();
+        }
+
+        void run(FeedFetcher fetcher) {
+            log.debug("updating feed: " + feedURL);
+            try {
+                result = fetcher.fetchSubscription(feedURL, lastUpdated, etag, lastModified);
+            } catch (FetcherException ex) {
+                error = ex;
+            } catch (RuntimeException | Error ex) {
+                // errors too, such as a stack overflow parsing the feed, so
+                // that the fetch still gets a result to wait for
+                error = new FetcherException("Error fetching subscription - " + feedURL, ex);
+            }
+        }
+    }
+
+}
@@ -36,6 +36,8 @@ public class Subscription implements Serializable, Comparable<Subscription> {
     private String feedUrl;
     private String siteUrl;
     private Date lastUpdated;
+    private String etag;
+    private String lastModified;
     private int inboundlinks = 0;
     private int inboundblogs = 0;
 
@@ -148,6 +150,28 @@ public class Subscription implements Serializable, Comparable<Subscription> {
     }
     
 
+    /**
+     * ETag header sent with the feed when it was last fetched.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * Last-Modified header sent with the feed when it was last fetched, as is.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
     public int getInboundlinks() {
         return inboundlinks;
     }
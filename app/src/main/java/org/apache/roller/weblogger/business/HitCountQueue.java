@@ -18,9 +18,11 @@
 
 package org.apache.roller.weblogger.business;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -38,6 +40,10 @@ import org.apache.roller.weblogger.pojos.Weblog;
  * We also start up a single thread which runs continously to take the queued
  * hit counts, tally them, and record them into the db.
  *
+ * Hits are tallied as they come in, with one counter per weblog, so memory use
+ * depends on the number of weblogs being viewed rather than on the number of
+ * hits.  The whole map of counters is swapped out when the hits are drained.
+ *
  * TODO: we may want to make this an interface that is pluggable if there is
  *   some indication that users want to override this implementation.
  */
@@ -48,7 +54,8 @@ public final class HitCountQueue {
     private static HitCountQueue instance = null;
     
     private WorkerThread worker = null;
-    private List<String> queue = null;
+    private final AtomicReference<Map<String, LongAdder>> hits =
+            new AtomicReference<>(new ConcurrentHashMap<>());
     
     
     static {
@@ -68,9 +75,6 @@ public final class HitCountQueue {
             log.warn("Invalid sleep time ["+sleep+"], using default");
         }
         
-        // create the hits queue
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
-        
         // start up a worker to process the hits at intervals
         HitCountProcessingJob job = new HitCountProcessingJob();
         worker = new ContinuousWorkerThread("HitCountQueueProcessor", job, sleepTime);
@@ -85,24 +89,45 @@ public final class HitCountQueue {
     
     public void processHit(Weblog weblog) {
         
-        // if the weblog isn't null then just drop its handle in the queue
-        // each entry in the queue is a weblog handle and indicates a single hit
+        // if the weblog isn't null then just count a hit for its handle
         if(weblog != null) {
-            this.queue.add(weblog.getHandle());
+            processHit(weblog.getHandle());
         }
     }
     
     
-    public List<String> getHits() {
-        return new ArrayList<>(this.queue);
+    /**
+     * Count a hit for the weblog with the given handle.
+     */
+    public void processHit(String weblogHandle) {
+        
+        if(weblogHandle != null) {
+            Map<String, LongAdder> counts = this.hits.get();
+            LongAdder count = counts.get(weblogHandle);
+            if(count == null) {
+                count = counts.computeIfAbsent(weblogHandle, handle -> new LongAdder());
+            }
+            count.increment();
+        }
     }
     
     
     /**
-     * Reset the queued hits.
+     * Take the hits queued so far, tallied by weblog handle, and start over
+     * with an empty tally.
+     *
+     * NOTE: a hit which is being counted at the exact moment of the swap may
+     *       go uncounted, which is fine for hit counts.
      */
-    public synchronized void resetHits() {
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
+    public Map<String, Long> drainHits() {
+        
+        Map<String, LongAdder> drained = this.hits.getAndSet(new ConcurrentHashMap<>());
+        
+        Map<String, Long> tally = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : drained.entrySet()) {
+            tally.put(entry.getKey(), entry.getValue().sum());
+        }
+        return tally;
     }
     
     
@@ -0,0 +1,556 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.business.startup.WebloggerStartup;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.MailUtil;
+
+
+/**
+ * Queues up outgoing mail so that it can be sent in the background, without
+ * holding up the request which triggered it.
+ *
+ * Each queued message is written to a file of its own in the queue directory
+ * before it is handed to the sending threads, so messages survive restarts
+ * and mail server outages.  The file name starts with the time the message
+ * is due to be sent, which lets the queue find due messages by listing the
+ * directory.  Messages are deleted once they are sent.  Failed messages are
+ * retried later, waiting longer with every failure, and messages which still
+ * fail after the last attempt are renamed to *.failed and left alone.
+ *
+ * Recipients rejected by the mail server are dropped, the message is only
+ * retried for the recipients which didn't get it for other reasons.  Messages
+ * to many blind copy recipients are split up so that no single message goes
+ * to more than a configured number of recipients.
+ */
+public final class MailQueue {
+
+    private static final Log log = LogFactory.getLog(MailQueue.class);
+
+    private static final String SUFFIX = ".mail";
+    private static final String FAILED_SUFFIX = ".failed";
+
+    // how often to look for due messages, retries are also scheduled directly
+    private static final long SCAN_INTERVAL = RollerConstants.MIN_IN_MS;
+
+    private static volatile MailQueue instance = null;
+
+    private final File dir;
+    private final Sender sender;
+    private final int maxRecipients;
+    private final int maxAttempts;
+    private final long retryMillis;
+    private final long maxRetryMillis;
+
+    private final ScheduledExecutorService scanner;
+    private final ExecutorService senders;
+
+    // names of the files being sent or about to be
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Sends a single message, throwing an exception if it failed.
+     */
+    interface Sender {
+        void send(Message message) throws MessagingException;
+    }
+
+
+    /**
+     * An outgoing message.
+     */
+    public static final class Message {
+
+        private final String from;
+        private final String[] to;
+        private final String[] cc;
+        private final String[] bcc;
+        private final String subject;
+        private final String content;
+        private final String contentType;
+        private final int attempts;
+
+        public Message(String from, String[] to, String[] cc, String[] bcc,
+                String subject, String content, String contentType) {
+            this(from, to, cc, bcc, subject, content, contentType, 0);
+        }
+
+        private Message(String from, String[] to, String[] cc, String[] bcc,
+                String subject, String content, String contentType, int attempts) {
+            this.from = from;
+            this.to = to != null ? to : new String[0];
+            this.cc = cc != null ? cc : new String[0];
+            this.bcc = bcc != null ? bcc : new String[0];
+            this.subject = subject;
+            this.content = content;
+            this.contentType = contentType;
+            this.attempts = attempts;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String[] getTo() {
+            return to;
+        }
+
+        public String[] getCc() {
+            return cc;
+        }
+
+        public String[] getBcc() {
+            return bcc;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Number of times sending this message has failed.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+
+    /**
+     * @param dir            directory holding the queued messages
+     * @param sender         sends the messages
+     * @param threads        most messages sent at once
+     * @param maxRecipients  most blind copy recipients of a single message
+     * @param maxAttempts    times to try sending a message before giving up
+     * @param retryMillis    how long to wait before retrying a message the first time
+     * @param maxRetryMillis longest to wait before retrying a message
+     */
+    MailQueue(File dir, Sender sender, int threads, int maxRecipients,
+            int maxAttempts, long retryMillis, long maxRetryMillis) {
+        this.dir = dir;
+        this.sender = sender;
+        this.maxRecipients = Math.max(1, maxRecipients);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryMillis = Math.max(1, retryMillis);
+        this.maxRetryMillis = Math.max(this.retryMillis, maxRetryMillis);
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            log.error("Unable to create mail queue directory " + dir.getAbsolutePath());
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "MailQueue-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MailQueueScanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // pick up whatever was left queued by the last run, then keep looking
+        this.scanner.scheduleWithFixedDelay(this::scan, 0, SCAN_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Start the queue as configured, if it is enabled and mail is configured.
+     */
+    public static synchronized void start() {
+        if (instance != null || !WebloggerConfig.getBooleanProperty("mail.queue.enabled", true)
+                || !MailUtil.isMailConfigured()) {
+            return;
+        }
+
+        String dirName = WebloggerConfig.getProperty("mail.queue.dir");
+        if (StringUtils.isEmpty(dirName)) {
+            dirName = System.getProperty("user.home") + File.separator + "roller_data"
+                    + File.separator + "mailqueue";
+        }
+
+        Sender sender = message -> {
+            MailProvider provider = WebloggerStartup.getMailProvider();
+            if (provider == null) {
+                throw new MessagingException("Mail is not configured");
+            }
+            MailUtil.sendMessage(provider.getSession(), provider.getTransport(),
+                    message.getFrom(), message.getTo(), message.getCc(), message.getBcc(),
+                    message.getSubject(), message.getContent(), message.getContentType());
+        };
+
+        instance = new MailQueue(new File(dirName), sender,
+                WebloggerConfig.getIntProperty("mail.queue.threads", 2),
+                WebloggerConfig.getIntProperty("mail.queue.maxRecipients", 50),
+                WebloggerConfig.getIntProperty("mail.queue.maxAttempts", 8),
+                WebloggerConfig.getIntProperty("mail.queue.retryMins", 1) * (long) RollerConstants.MIN_IN_MS,
+                WebloggerConfig.getIntProperty("mail.queue.maxRetryMins", 120) * (long) RollerConstants.MIN_IN_MS);
+        log.info("Queueing outgoing mail in " + dirName);
+    }
+
+
+    /**
+     * The running queue, or null if outgoing mail is sent right away.
+     */
+    public static MailQueue getInstance() {
+        return instance;
+    }
+
+
+    /**
+     * Queue a message for sending, splitting it up if it has more blind copy
+     * recipients than a single message may have.
+     *
+     * @throws MessagingException if the message couldn't be queued
+     */
+    public void enqueue(Message message) throws MessagingException {
+        // bad addresses are the caller's problem, not something to retry
+        for (String[] recipients : new String[][] { message.to, message.cc, message.bcc }) {
+            for (String recipient : recipients) {
+                new InternetAddress(recipient);
+            }
+        }
+
+        String[] bcc = message.getBcc();
+        int start = 0;
+        do {
+            String[] batch = Arrays.copyOfRange(bcc, start, Math.min(start + maxRecipients, bcc.length));
+            // to and cc recipients get the first part only
+            Message part = start == 0
+                    ? new Message(message.from, message.to, message.cc, batch,
+                            message.subject, message.content, message.contentType)
+                    : new Message(message.from, null, null, batch,
+                            message.subject, message.content, message.contentType);
+            File file;
+            try {
+                file = write(part, System.currentTimeMillis());
+            } catch (IOException e) {
+                throw new MessagingException("Unable to queue message", e);
+            }
+            submit(file);
+            start += maxRecipients;
+        } while (start < bcc.length);
+    }
+
+
+    /**
+     * Stop sending.  Messages which are still queued are sent after the next
+     * start.
+     */
+    public void shutdown() {
+        scanner.shutdownNow();
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(RollerConstants.GRACEFUL_SHUTDOWN_WAIT_IN_SECONDS, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            log.debug(e.getMessage(), e);
+            senders.shutdownNow();
+        }
+        synchronized (MailQueue.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+
+
+    // hand the due messages to the sending threads, oldest first
+    private void scan() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (dueTime(file) <= now) {
+                submit(file);
+            }
+        }
+    }
+
+
+    private void submit(File file) {
+        String name = file.getName();
+        if (!inFlight.add(name)) {
+            return;
+        }
+        try {
+            senders.execute(() -> {
+                try {
+                    send(file);
+                } finally {
+                    inFlight.remove(name);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down, sent after the next start
+            inFlight.remove(name);
+        }
+    }
+
+
+    private void send(File file) {
+        if (!file.exists()) {
+            // already sent
+            return;
+        }
+
+        Message message;
+        try {
+            message = read(file);
+        } catch (IOException e) {
+            log.error("Unable to read queued message " + file.getName(), e);
+            giveUp(file);
+            return;
+        }
+
+        try {
+            sender.send(message);
+            delete(file);
+
+        } catch (SendFailedException e) {
+            Address[] invalid = e.getInvalidAddresses();
+            if (invalid != null && invalid.length > 0) {
+                log.warn("Dropping rejected recipients " + Arrays.toString(invalid)
+                        + " of message \"" + message.getSubject() + "\"");
+            }
+            // try again for those who didn't get it, if anyone
+            Message unsent = unsentPart(message, e.getValidUnsentAddresses());
+            if (unsent != null) {
+                retry(file, unsent, e);
+            } else {
+                delete(file);
+            }
+
+        } catch (AddressException e) {
+            log.error("Giving up on message \"" + message.getSubject() + "\" with a bad address, leaving it as "
+                    + file.getName() + FAILED_SUFFIX, e);
+            giveUp(file);
+
+        } catch (MessagingException | RuntimeException e) {
+            retry(file, message, e);
+        }
+    }
+
+
+    private void retry(File file, Message message, Exception cause) {
+        int attempts = message.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.error("Giving up on message \"" + message.getSubject() + "\" after "
+                    + attempts + " attempts, leaving it as " + file.getName() + FAILED_SUFFIX, cause);
+            giveUp(file);
+            return;
+        }
+
+        // double the wait with each failure, then take half of it plus a
+        // random part of the other half so that retries don't fall in step
+        long delay = retryMillis << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, maxRetryMillis);
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+
+        log.warn("Unable to send message \"" + message.getSubject() + "\", attempt " + attempts
+                + ", retrying in " + delay + "ms: " + cause.getMessage());
+        if (log.isDebugEnabled()) {
+            log.debug("Send failure", cause);
+        }
+
+        Message retried = new Message(message.from, message.to, message.cc, message.bcc,
+                message.subject, message.content, message.contentType, attempts);
+        File retryFile;
+        try {
+            retryFile = write(retried, System.currentTimeMillis() + delay);
+        } catch (IOException e) {
+            // the original file stays and is picked up by the next scan
+            log.error("Unable to requeue message " + file.getName(), e);
+            return;
+        }
+        delete(file);
+
+        try {
+            scanner.schedule(() -> submit(retryFile), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, sent after the next start
+        }
+    }
+
+
+    // the message for the unsent addresses only, or null if there are none
+    private static Message unsentPart(Message message, Address[] unsent) {
+        if (unsent == null || unsent.length == 0) {
+            return null;
+        }
+        Set<String> addresses = new HashSet<>();
+        for (Address address : unsent) {
+            addresses.add(address instanceof InternetAddress
+                    ? ((InternetAddress) address).getAddress().toLowerCase() : address.toString().toLowerCase());
+        }
+        Message part = new Message(message.from, unsentOf(message.to, addresses), unsentOf(message.cc, addresses),
+                unsentOf(message.bcc, addresses), message.subject, message.content,
+                message.contentType, message.attempts);
+        if (part.to.length + part.cc.length + part.bcc.length == 0) {
+            return null;
+        }
+        return part;
+    }
+
+
+    private static String[] unsentOf(String[] recipients, Set<String> unsent) {
+        List<String> result = new ArrayList<>();
+        for (String recipient : recipients) {
+            try {
+                if (unsent.contains(new InternetAddress(recipient).getAddress().toLowerCase())) {
+                    result.add(recipient);
+                }
+            } catch (AddressException e) {
+                // rejected before it was ever sent
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+
+    private static long dueTime(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.indexOf('-')));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+
+    // write to a temporary file first, so only complete messages are ever seen
+    private File write(Message message, long due) throws IOException {
+        Properties props = new Properties();
+        setProperty(props, "from", message.from);
+        setProperty(props, "to", StringUtils.join(message.to, '\n'));
+        setProperty(props, "cc", StringUtils.join(message.cc, '\n'));
+        setProperty(props, "bcc", StringUtils.join(message.bcc, '\n'));
+        setProperty(props, "subject", message.subject);
+        setProperty(props, "content", message.content);
+        setProperty(props, "contentType", message.contentType);
+        props.setProperty("attempts", Integer.toString(message.attempts));
+
+        String name = String.format("%013d-%s", due, UUID.randomUUID());
+        File tmp = new File(dir, name + ".tmp");
+        File file = new File(dir, name + SUFFIX);
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8)) {
+            props.store(out, null);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+
+    private static Message read(File file) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            props.load(in);
+        }
+        int attempts;
+        try {
+            attempts = Integer.parseInt(props.getProperty("attempts", "0"));
+        } catch (NumberFormatException e) {
+            attempts = 0;
+        }
+        return new Message(props.getProperty("from"), addresses(props.getProperty("to")),
+                addresses(props.getProperty("cc")), addresses(props.getProperty("bcc")),
+                props.getProperty("subject"), props.getProperty("content"),
+                props.getProperty("contentType"), attempts);
+    }
+
+
+    private static void setProperty(Properties props, String key, String value) {
+        if (value != null) {
+            props.setProperty(key, value);
+        }
+    }
+
+
+    private static String[] addresses(String value) {
+        return StringUtils.isEmpty(value) ? new String[0] : value.split("\n");
+    }
+
+
+    private static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.error("Unable to delete queued message " + file.getName(), e);
+        }
+    }
+
+
+    private static void giveUp(File file) {
+        try {
+            Files.move(file.toPath(), new File(file.getParentFile(), file.getName() + FAILED_SUFFIX).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Unable to move aside queued message " + file.getName(), e);
+        }
+    }
+
+}
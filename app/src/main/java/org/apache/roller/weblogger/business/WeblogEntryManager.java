@@ -70,6 +70,19 @@ public interface WeblogEntryManager {
     List<WeblogEntry> getWeblogEntries(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
 
+    /**
+     * Get the next batch of published entries in order of id, for walking
+     * through a large number of entries without an ever growing offset.
+     * @param weblog Weblog to get entries from, or null for all weblogs
+     * @param afterId Only get entries with an id greater than this one, or
+     *                null to start with the first entry
+     * @param maxEntries Largest number of entries to return
+     * @return List of WeblogEntry objects ordered by id, empty when done
+     * @throws WebloggerException
+     */
+    List<WeblogEntry> getPublishedWeblogEntriesAfter(Weblog weblog, String afterId, int maxEntries)
+            throws WebloggerException;
+
     /**
      * Get Weblog Entries grouped by day.
      * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
@@ -89,6 +102,32 @@ public interface WeblogEntryManager {
      */
     Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
+
+    /**
+     * Get the start of the closest month before the month of the given date
+     * with published entries, in the weblog's time zone.
+     * @param weblog  Weblog of the entries
+     * @param catName Category name of the entries or null for all categories
+     * @param locale  Locale of the entries or null for all locales
+     * @param date    Date in the month to start from
+     * @return Start of the month, or null if there is none
+     * @throws WebloggerException
+     */
+    Date getPreviousPublishedMonth(Weblog weblog, String catName, String locale, Date date)
+            throws WebloggerException;
+
+    /**
+     * Get the start of the closest month after the month of the given date
+     * with published entries, in the weblog's time zone.
+     * @param weblog  Weblog of the entries
+     * @param catName Category name of the entries or null for all categories
+     * @param locale  Locale of the entries or null for all locales
+     * @param date    Date in the month to start from
+     * @return Start of the month, or null if there is none
+     * @throws WebloggerException
+     */
+    Date getNextPublishedMonth(Weblog weblog, String catName, String locale, Date date)
+            throws WebloggerException;
     
     /**
      * Get weblog entries ordered by descending number of comments.
@@ -198,6 +237,15 @@ public interface WeblogEntryManager {
      */
     List<WeblogEntryComment> getComments(CommentSearchCriteria csc) throws WebloggerException;
 
+    /**
+     * Get the email addresses of those who asked to be notified of new
+     * comments on an entry, going by the most recent approved comment left
+     * with each address.
+     * @param entry entry to get the subscribers of
+     * @return email addresses in the order they first commented
+     */
+    List<String> getCommentSubscribers(WeblogEntry entry) throws WebloggerException;
+
     /**
      * Deletes comments that match paramters.
      * @param website    Website or null for all comments on site
@@ -357,6 +405,21 @@ public interface WeblogEntryManager {
         throws WebloggerException;
     
     
+    /**
+     * Increment the hit counts for a number of weblogs at once.
+     *
+     * Unlike calling incrementHitCount() for each weblog this takes a fixed
+     * number of statements regardless of how many weblogs there are, missing
+     * hit count records are created along the way.  Handles of weblogs which
+     * don't exist or aren't visible are ignored.
+     *
+     * @param hitsByHandle How much to increment by, keyed by weblog handle.
+     * @throws WebloggerException If there was a problem with the backend.
+     */
+    void incrementHitCounts(Map<String, Long> hitsByHandle)
+        throws WebloggerException;
+    
+    
     /**
      * Reset the hit counts for all weblogs.  This sets the counts back to 0.
      *
@@ -385,6 +448,15 @@ public interface WeblogEntryManager {
      */    
     long getCommentCount(Weblog websiteData) throws WebloggerException;
 
+
+    /**
+     * Recompute the approved comment count kept on every entry from the
+     * comments table.
+     *
+     * @return number of entries whose count was wrong
+     */
+    int recountComments() throws WebloggerException;
+
     
     /**
      * Get site-wide entry count 
@@ -362,6 +362,7 @@ public abstract class WebloggerImpl implements Weblogger {
         getThreadManager().initialize();
         getIndexManager().initialize();
         getMediaFileManager().initialize();
+        MailQueue.start();
 
         // Turn off External DTD support in SAXParser to protect Roller from vulnerability.
         SAXParserFactory spf = SAXParsers.getSAXParserFactory();
@@ -415,6 +416,9 @@ public abstract class WebloggerImpl implements Weblogger {
     public void shutdown() {
         try {
             HitCountQueue.getInstance().shutdown();
+            if (MailQueue.getInstance() != null) {
+                MailQueue.getInstance().shutdown();
+            }
             if (indexManager != null) {
                 indexManager.shutdown();
             }
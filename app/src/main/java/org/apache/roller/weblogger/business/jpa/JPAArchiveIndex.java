@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.persistence.TypedQuery;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.DateUtil;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+
+
+/**
+ * Keeps track of the days on which each weblog has published entries, so
+ * that calendars and archive navigation don't have to load entries.
+ *
+ * The days of a weblog are kept as one bitset per month, for all of its
+ * categories and for each category on its own, in the weblog's time zone.
+ * They are read with a single query returning only publication times and
+ * category names, and read again once entries are published, unpublished
+ * or moved, after the transaction commits.  They are also read again after
+ * a timeout, which picks up changes made by other servers in a cluster, and
+ * when the weblog's time zone changes.
+ */
+@com.google.inject.Singleton
+public class JPAArchiveIndex {
+
+    private static final Log LOG = LogFactory.getLog(JPAArchiveIndex.class);
+
+    // key of the days of all categories
+    private static final String ALL = "";
+
+    private final JPAPersistenceStrategy strategy;
+
+    // how long an index is kept before it is read again
+    private final long timeoutMillis;
+
+    // indexes by weblog id
+    private final Map<String, Index> indexByWeblog = new ConcurrentHashMap<>();
+
+    // counts invalidations, so that an index loaded while a weblog changed
+    // isn't cached, guarded by indexByWeblog
+    private long generation = 0;
+
+
+    // the days of a weblog, as bitsets of days by year * 100 + month, by category name
+    private static final class Index {
+        private final String timeZone;
+        private final long expires;
+        private final Map<String, NavigableMap<Integer, Integer>> months = new HashMap<>();
+
+        Index(String timeZone, long expires) {
+            this.timeZone = timeZone;
+            this.expires = expires;
+        }
+
+        NavigableMap<Integer, Integer> getMonths(String catName) {
+            NavigableMap<Integer, Integer> days = months.get(StringUtils.isEmpty(catName) ? ALL : catName);
+            return days != null ? days : Collections.emptyNavigableMap();
+        }
+    }
+
+
+    @com.google.inject.Inject
+    protected JPAArchiveIndex(JPAPersistenceStrategy strategy) {
+        this.strategy = strategy;
+        this.timeoutMillis = WebloggerConfig.getIntProperty("cache.archiveindex.timeout", 900) * 1000L;
+    }
+
+
+    /**
+     * Get the days between two dates with published entries, of all
+     * categories or of the named one.  Days are given as noon of the day in
+     * the weblog's time zone, latest first.
+     */
+    List<Date> getDays(Weblog weblog, String catName, Date startDate, Date endDate)
+            throws WebloggerException {
+
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        NavigableMap<Integer, Integer> months = getIndex(weblog).getMonths(catName).subMap(
+                startDate != null ? monthKey(startDate, cal) : Integer.MIN_VALUE, true,
+                endDate != null ? monthKey(endDate, cal) : Integer.MAX_VALUE, true);
+
+        List<Date> days = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> month : months.descendingMap().entrySet()) {
+            int bits = month.getValue();
+            for (int day = 31; day >= 1; day--) {
+                if ((bits & (1 << day - 1)) == 0) {
+                    continue;
+                }
+                cal.clear();
+                cal.set(month.getKey() / 100, month.getKey() % 100 - 1, day, 12, 0, 0);
+                Date noon = cal.getTime();
+                // partly covered days count, entries are only known by the day
+                if ((endDate == null || !DateUtil.getStartOfDay(noon, cal).after(endDate))
+                        && (startDate == null || !DateUtil.getEndOfDay(noon, cal).before(startDate))) {
+                    days.add(noon);
+                }
+            }
+        }
+        return days;
+    }
+
+
+    /**
+     * Get the start of the closest month before the month of the given date
+     * with published entries, of all categories or of the named one, or null
+     * if there is none.
+     */
+    Date getPreviousMonth(Weblog weblog, String catName, Date date) throws WebloggerException {
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        return startOfMonth(getIndex(weblog).getMonths(catName).lowerKey(monthKey(date, cal)), cal);
+    }
+
+
+    /**
+     * Get the start of the closest month after the month of the given date
+     * with published entries, of all categories or of the named one, or null
+     * if there is none.
+     */
+    Date getNextMonth(Weblog weblog, String catName, Date date) throws WebloggerException {
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        return startOfMonth(getIndex(weblog).getMonths(catName).higherKey(monthKey(date, cal)), cal);
+    }
+
+
+    /**
+     * Drop the index of a weblog once the current transaction commits, it is
+     * read again when next needed.
+     */
+    void invalidate(Weblog weblog) {
+        String weblogId = weblog.getId();
+        strategy.afterCommit(() -> {
+            synchronized (indexByWeblog) {
+                generation++;
+                indexByWeblog.remove(weblogId);
+            }
+        });
+    }
+
+
+    private static int monthKey(Date date, Calendar cal) {
+        cal.setTime(date);
+        return cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+    }
+
+
+    private static Date startOfMonth(Integer monthKey, Calendar cal) {
+        if (monthKey == null) {
+            return null;
+        }
+        cal.clear();
+        cal.set(monthKey / 100, monthKey % 100 - 1, 1, 0, 0, 0);
+        return cal.getTime();
+    }
+
+
+    private Index getIndex(Weblog weblog) throws WebloggerException {
+        Index index = indexByWeblog.get(weblog.getId());
+        if (index == null || index.expires < System.currentTimeMillis()
+                || !index.timeZone.equals(weblog.getTimeZoneInstance().getID())) {
+            long loadGeneration;
+            synchronized (indexByWeblog) {
+                loadGeneration = generation;
+            }
+            index = loadIndex(weblog);
+            synchronized (indexByWeblog) {
+                if (loadGeneration == generation) {
+                    indexByWeblog.put(weblog.getId(), index);
+                }
+            }
+        }
+        return index;
+    }
+
+
+    private Index loadIndex(Weblog weblog) throws WebloggerException {
+        TypedQuery<Object[]> q = strategy.getNamedQuery(
+                "WeblogEntry.getPubTime&CategoryNameByWebsite&Status", Object[].class);
+        q.setParameter(1, weblog);
+        q.setParameter(2, PubStatus.PUBLISHED);
+
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        Index index = new Index(weblog.getTimeZoneInstance().getID(), System.currentTimeMillis() + timeoutMillis);
+        NavigableMap<Integer, Integer> all = new TreeMap<>();
+        index.months.put(ALL, all);
+        int count = 0;
+        for (Object[] row : q.getResultList()) {
+            if (row[0] == null) {
+                continue;
+            }
+            cal.setTime((Timestamp) row[0]);
+            int month = cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+            int day = 1 << cal.get(Calendar.DAY_OF_MONTH) - 1;
+            all.merge(month, day, (a, b) -> a | b);
+            if (row[1] != null) {
+                index.months.computeIfAbsent((String) row[1], name -> new TreeMap<>())
+                        .merge(month, day, (a, b) -> a | b);
+            }
+            count++;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Indexed " + count + " published entries of " + weblog.getHandle()
+                    + " in " + all.size() + " months");
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import jakarta.persistence.TypedQuery;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.WebloggerException;
+
+
+/**
+ * Counts of names by their first letter, A to Z, for directory pages.
+ *
+ * The counts are read with a single grouped query and kept until names are
+ * added or removed, or until they time out, which picks up changes made by
+ * other servers in a cluster.
+ */
+final class JPALetterCounts {
+
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private final JPAPersistenceStrategy strategy;
+
+    // query returning the upper case first letter and count of each group of names
+    private final String queryName;
+
+    private volatile Map<String, Long> counts = null;
+    private volatile long expires = 0;
+
+    // counts invalidations, so that counts loaded while names changed aren't
+    // cached, guarded by this
+    private long generation = 0;
+
+
+    JPALetterCounts(JPAPersistenceStrategy strategy, String queryName) {
+        this.strategy = strategy;
+        this.queryName = queryName;
+    }
+
+
+    /**
+     * Get the count of names starting with each letter, including letters
+     * no name starts with.
+     */
+    Map<String, Long> getCounts() throws WebloggerException {
+        Map<String, Long> current = counts;
+        if (current != null && expires > System.currentTimeMillis()) {
+            return current;
+        }
+
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+
+        Map<String, Long> results = new TreeMap<>();
+        for (int i = 0; i < LETTERS.length(); i++) {
+            results.put(String.valueOf(LETTERS.charAt(i)), 0L);
+        }
+        TypedQuery<Object[]> query = strategy.getNamedQuery(queryName, Object[].class);
+        for (Object[] row : query.getResultList()) {
+            // names starting with anything but a letter aren't listed
+            if (row[0] != null && results.containsKey(row[0].toString())) {
+                results.put(row[0].toString(), ((Number) row[1]).longValue());
+            }
+        }
+
+        current = Collections.unmodifiableMap(results);
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                expires = System.currentTimeMillis() + RollerConstants.FIFTEEN_MIN_IN_MS;
+                counts = current;
+            }
+        }
+        return current;
+    }
+
+
+    /**
+     * Drop the counts once the current transaction commits.
+     */
+    void invalidate() {
+        strategy.afterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                counts = null;
+            }
+        });
+    }
+
+}
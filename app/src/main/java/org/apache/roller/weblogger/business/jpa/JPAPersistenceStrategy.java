@@ -18,8 +18,10 @@
 
 package org.apache.roller.weblogger.business.jpa;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -51,6 +53,11 @@ public class JPAPersistenceStrategy {
      * The thread local EntityManager.
      */
     private final ThreadLocal<EntityManager> threadLocalEntityManager = new ThreadLocal<>();
+
+    /**
+     * Work to do once the current transaction commits, per thread.
+     */
+    private final ThreadLocal<List<Runnable>> threadLocalAfterCommit = new ThreadLocal<>();
     
     /**
      * The EntityManagerFactory for this Roller instance.
@@ -134,8 +141,36 @@ public class JPAPersistenceStrategy {
             EntityManager em = getEntityManager(true);
             em.getTransaction().commit();
         } catch (PersistenceException pe) {
+            threadLocalAfterCommit.remove();
             throw new WebloggerException(pe);
         }
+        
+        List<Runnable> actions = threadLocalAfterCommit.get();
+        if (actions != null) {
+            threadLocalAfterCommit.remove();
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    logger.error("error running action after commit", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Run the given action once the current transaction commits, for changes
+     * that must not be seen unless the database changes are.  The action is
+     * dropped if the transaction is rolled back instead.
+     * @param action the action to run
+     */
+    public void afterCommit(Runnable action) {
+        List<Runnable> actions = threadLocalAfterCommit.get();
+        if (actions == null) {
+            actions = new ArrayList<>();
+            threadLocalAfterCommit.set(actions);
+        }
+        actions.add(action);
     }
     
     /**
@@ -159,6 +194,7 @@ public class JPAPersistenceStrategy {
                 }
             }
             threadLocalEntityManager.remove();
+            threadLocalAfterCommit.remove();
         }
     }
     
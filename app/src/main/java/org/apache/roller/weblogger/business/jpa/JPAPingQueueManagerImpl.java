@@ -19,7 +19,9 @@
 package org.apache.roller.weblogger.business.jpa;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 
 import org.apache.commons.logging.Log;
@@ -40,6 +42,9 @@ public class JPAPingQueueManagerImpl implements PingQueueManager {
 
     private static final Log log = LogFactory.getLog(JPAPingQueueManagerImpl.class);
 
+    // keep IN lists well within what every supported database allows
+    private static final int MAX_IN_LIST_SIZE = 500;
+
     /** The strategy for this manager. */
     private final JPAPersistenceStrategy strategy;
 
@@ -74,6 +79,21 @@ public class JPAPingQueueManagerImpl implements PingQueueManager {
         strategy.remove(pingQueueEntry);
     }
 
+    @Override
+    public void removeQueueEntries(List<PingQueueEntry> pingQueueEntries)
+            throws WebloggerException {
+        log.debug("Removing " + pingQueueEntries.size() + " ping queue entries");
+        List<String> ids = new ArrayList<>(pingQueueEntries.size());
+        for (PingQueueEntry pingQueueEntry : pingQueueEntries) {
+            ids.add(pingQueueEntry.getId());
+        }
+        for (int i = 0; i < ids.size(); i += MAX_IN_LIST_SIZE) {
+            Query q = strategy.getNamedUpdate("PingQueueEntry.removeByIdList");
+            q.setParameter(1, ids.subList(i, Math.min(i + MAX_IN_LIST_SIZE, ids.size())));
+            q.executeUpdate();
+        }
+    }
+
     
     @Override
     public void addQueueEntry(AutoPing autoPing) throws WebloggerException {
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.persistence.TypedQuery;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntryTagAggregate;
+
+
+/**
+ * Keeps the tag counts of the tag aggregate table in memory, per weblog and
+ * site-wide, so that tag clouds and tag combination checks don't have to
+ * query the database.
+ *
+ * Changes to tag counts are written to the database in one batch per entry
+ * save, and applied to the counts in memory once the transaction commits.
+ * Counts are reloaded from the database after a timeout, which also picks up
+ * changes made by other servers in a cluster.
+ */
+@com.google.inject.Singleton
+public class JPATagStatsManager {
+
+    private static final Log LOG = LogFactory.getLog(JPATagStatsManager.class);
+
+    // key of the site-wide counts
+    private static final String SITE = "";
+
+    // largest number of values passed in a single IN clause
+    private static final int MAX_IN_LIST_SIZE = 500;
+
+    private final JPAPersistenceStrategy strategy;
+
+    // how long counts are kept before they are reloaded
+    private final long timeoutMillis;
+
+    // tag counts by weblog id, or SITE for the site-wide counts
+    private final Map<String, Stats> statsByWeblog = new ConcurrentHashMap<>();
+
+    // counts committed changes, so that counts loaded while tags changed
+    // aren't cached, guarded by statsByWeblog
+    private long generation = 0;
+
+
+    /**
+     * Count of a tag in a weblog or site-wide.
+     */
+    static final class TagCount {
+
+        private final String name;
+        private final int total;
+        private final long lastUsed;
+
+        TagCount(String name, int total, long lastUsed) {
+            this.name = name;
+            this.total = total;
+            this.lastUsed = lastUsed;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getTotal() {
+            return total;
+        }
+
+        long getLastUsed() {
+            return lastUsed;
+        }
+
+        TagCount add(int amount, long time) {
+            return new TagCount(name, total + amount, Math.max(lastUsed, time));
+        }
+    }
+
+    // the tag counts of a weblog and when to reload them
+    private static final class Stats {
+        private final Map<String, TagCount> tags = new ConcurrentHashMap<>();
+        private final long expires;
+
+        Stats(long expires) {
+            this.expires = expires;
+        }
+    }
+
+
+    @com.google.inject.Inject
+    protected JPATagStatsManager(JPAPersistenceStrategy strategy) {
+        this.strategy = strategy;
+        this.timeoutMillis = WebloggerConfig.getIntProperty("cache.tagstats.timeout", 900) * 1000L;
+    }
+
+
+    /**
+     * Get the tags of a weblog, or the site-wide tags if weblog is null.
+     * Only tags with a count above zero are returned.
+     */
+    Collection<TagCount> getTags(Weblog weblog) throws WebloggerException {
+        return getStats(weblog).tags.values();
+    }
+
+
+    /**
+     * True if all the given tags are used in a weblog, or anywhere if weblog
+     * is null.
+     */
+    boolean containsAll(Weblog weblog, List<String> names) throws WebloggerException {
+        Map<String, TagCount> tags = getStats(weblog).tags;
+        for (String name : names) {
+            if (!tags.containsKey(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Apply the tag count changes of an entry save to the weblog and site-wide
+     * counts, creating aggregate rows for new tags and removing the rows of
+     * tags which are no longer used.
+     *
+     * @param weblog  weblog of the saved entry
+     * @param amounts amount to change the count of each tag by
+     */
+    void updateTagCounts(Weblog weblog, Map<String, Integer> amounts) throws WebloggerException {
+
+        if (weblog == null) {
+            throw new WebloggerException("Website cannot be NULL.");
+        }
+
+        List<String> names = new ArrayList<>(amounts.size());
+        for (Map.Entry<String, Integer> amount : amounts.entrySet()) {
+            if (amount.getValue() != 0) {
+                names.add(amount.getKey());
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+
+        Timestamp lastUsed = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < names.size(); i += MAX_IN_LIST_SIZE) {
+            List<String> batch = names.subList(i, Math.min(i + MAX_IN_LIST_SIZE, names.size()));
+
+            // rows are ordered by lastUsed so that the most recent row is the
+            // one updated where a cluster created more than one for a tag
+            TypedQuery<WeblogEntryTagAggregate> q = strategy.getNamedQueryCommitFirst(
+                    "WeblogEntryTagAggregate.getByNameList&WebsiteOrWebsiteNullOrderByLastUsedDesc",
+                    WeblogEntryTagAggregate.class);
+            q.setParameter(1, batch);
+            q.setParameter(2, weblog);
+            Map<String, WeblogEntryTagAggregate> weblogRows = new HashMap<>();
+            Map<String, WeblogEntryTagAggregate> siteRows = new HashMap<>();
+            for (WeblogEntryTagAggregate row : q.getResultList()) {
+                (row.getWeblog() == null ? siteRows : weblogRows).putIfAbsent(row.getName(), row);
+            }
+
+            for (String name : batch) {
+                int amount = amounts.get(name);
+                updateTagCount(weblogRows.get(name), weblog, name, amount, lastUsed);
+                updateTagCount(siteRows.get(name), null, name, amount, lastUsed);
+            }
+        }
+
+        // the counts in memory change once the database does
+        Map<String, Integer> changes = new HashMap<>(amounts);
+        String weblogId = weblog.getId();
+        strategy.afterCommit(() -> {
+            synchronized (statsByWeblog) {
+                generation++;
+                applyTagCounts(statsByWeblog.get(weblogId), changes, lastUsed.getTime());
+                applyTagCounts(statsByWeblog.get(SITE), changes, lastUsed.getTime());
+            }
+        });
+    }
+
+
+    /**
+     * Drop the counts of a weblog which is removed, along with the site-wide
+     * counts it was part of.
+     */
+    void invalidate(Weblog weblog) {
+        String weblogId = weblog.getId();
+        strategy.afterCommit(() -> {
+            synchronized (statsByWeblog) {
+                generation++;
+                statsByWeblog.remove(weblogId);
+                statsByWeblog.remove(SITE);
+            }
+        });
+    }
+
+
+    private void updateTagCount(WeblogEntryTagAggregate row, Weblog weblog,
+            String name, int amount, Timestamp lastUsed) throws WebloggerException {
+        if (row == null) {
+            // create it only if we are going to need it
+            if (amount > 0) {
+                row = new WeblogEntryTagAggregate(null, weblog, name, amount);
+                row.setLastUsed(lastUsed);
+                strategy.store(row);
+            }
+        } else if (row.getTotal() + amount <= 0) {
+            strategy.remove(row);
+        } else {
+            row.setTotal(row.getTotal() + amount);
+            row.setLastUsed(lastUsed);
+            strategy.store(row);
+        }
+    }
+
+
+    private static void applyTagCounts(Stats stats, Map<String, Integer> amounts, long lastUsed) {
+        if (stats == null) {
+            // not loaded, will be read from the database when needed
+            return;
+        }
+        for (Map.Entry<String, Integer> amount : amounts.entrySet()) {
+            int change = amount.getValue();
+            stats.tags.compute(amount.getKey(), (name, count) -> {
+                TagCount updated = count == null
+                        ? new TagCount(name, change, lastUsed) : count.add(change, lastUsed);
+                return updated.getTotal() > 0 ? updated : null;
+            });
+        }
+    }
+
+
+    private Stats getStats(Weblog weblog) throws WebloggerException {
+        String key = weblog == null ? SITE : weblog.getId();
+        Stats stats = statsByWeblog.get(key);
+        if (stats == null || stats.expires < System.currentTimeMillis()) {
+            long loadGeneration;
+            synchronized (statsByWeblog) {
+                loadGeneration = generation;
+            }
+            stats = loadStats(weblog);
+            synchronized (statsByWeblog) {
+                if (loadGeneration == generation) {
+                    statsByWeblog.put(key, stats);
+                }
+            }
+        }
+        return stats;
+    }
+
+
+    private Stats loadStats(Weblog weblog) throws WebloggerException {
+        TypedQuery<Object[]> q;
+        if (weblog != null) {
+            q = strategy.getNamedQuery(
+                    "WeblogEntryTagAggregate.getName&Total&LastUsedByWebsite", Object[].class);
+            q.setParameter(1, weblog);
+        } else {
+            q = strategy.getNamedQuery(
+                    "WeblogEntryTagAggregate.getName&Total&LastUsedByWebsiteNull", Object[].class);
+        }
+
+        Stats stats = new Stats(System.currentTimeMillis() + timeoutMillis);
+        for (Object[] row : q.getResultList()) {
+            String name = (String) row[0];
+            int total = ((Number) row[1]).intValue();
+            long lastUsed = row[2] != null ? ((Timestamp) row[2]).getTime() : 0;
+            // a cluster may have created more than one row for a tag
+            stats.tags.merge(name, new TagCount(name, total, lastUsed),
+                    (count, more) -> count.add(more.getTotal(), more.getLastUsed()));
+        }
+        stats.tags.values().removeIf(count -> count.getTotal() <= 0);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loaded " + stats.tags.size() + " tag counts of "
+                    + (weblog != null ? weblog.getHandle() : "the site"));
+        }
+        return stats;
+    }
+
+}
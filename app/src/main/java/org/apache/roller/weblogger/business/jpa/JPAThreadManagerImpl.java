@@ -19,7 +19,9 @@
 package org.apache.roller.weblogger.business.jpa;
 
 import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
@@ -202,6 +204,20 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
     }
 
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<TaskLock> getTaskLocksByName(List<String> names) throws WebloggerException {
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TypedQuery<TaskLock> q = strategy.getNamedQuery("TaskLock.getByNameList", TaskLock.class);
+        q.setParameter(1, names);
+        return q.getResultList();
+    }
+
+    
     /**
      * @inheritDoc
      */
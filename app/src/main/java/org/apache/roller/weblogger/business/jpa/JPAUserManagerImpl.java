@@ -31,7 +31,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.TypedQuery;
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -52,11 +51,15 @@ public class JPAUserManagerImpl implements UserManager {
     // cached mapping of userNames -> userIds
     private final Map<String, String> userNameToIdMap = Collections.synchronizedMap(new HashMap<>());
     
+    // user counts by first letter of the user name
+    private final JPALetterCounts userNameLetterCounts;
+    
 
     @com.google.inject.Inject
     protected JPAUserManagerImpl(JPAPersistenceStrategy strat) {
         log.debug("Instantiating JPA User Manager");
         this.strategy = strat;
+        this.userNameLetterCounts = new JPALetterCounts(strat, "User.getUserNameLetter&CountGroupByUserNameLetter");
     }
 
 
@@ -85,6 +88,7 @@ public class JPAUserManagerImpl implements UserManager {
 
         // remove entry from cache mapping
         this.userNameToIdMap.remove(userName);
+        this.userNameLetterCounts.invalidate();
     }
 
     
@@ -114,6 +118,7 @@ public class JPAUserManagerImpl implements UserManager {
         }
 
         this.strategy.store(newUser);
+        this.userNameLetterCounts.invalidate();
 
         grantRole("editor", newUser);
         if (adminUser) {
@@ -292,18 +297,7 @@ public class JPAUserManagerImpl implements UserManager {
     
     @Override
     public Map<String, Long> getUserNameLetterMap() throws WebloggerException {
-        String lc = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        Map<String, Long> results = new TreeMap<>();
-        TypedQuery<Long> query = strategy.getNamedQuery(
-                "User.getCountByUserNameLike", Long.class);
-        for (int i=0; i<26; i++) {
-            char currentChar = lc.charAt(i);
-            query.setParameter(1, currentChar + "%");
-            List<Long> row = query.getResultList();
-            Long count = row.get(0);
-            results.put(String.valueOf(currentChar), count);
-        }
-        return results;
+        return userNameLetterCounts.getCounts();
     }
 
     
@@ -44,7 +44,6 @@ import org.apache.roller.weblogger.pojos.TagStatCountComparator;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
-import org.apache.roller.weblogger.pojos.WeblogEntryTagAggregate;
 import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntryAttribute;
@@ -66,6 +65,8 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     
     private final Weblogger roller;
     private final JPAPersistenceStrategy strategy;
+    private final JPATagStatsManager tagStats;
+    private final JPAArchiveIndex archiveIndex;
     
     // cached mapping of entryAnchors -> entryIds
     private final Map<String, String> entryAnchorToIdMap = Collections.synchronizedMap(new HashMap<String, String>());
@@ -78,12 +79,18 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     private static final Comparator<StatCount> STAT_COUNT_COUNT_REVERSE_COMPARATOR =
             Collections.reverseOrder(StatCountCountComparator.getInstance());
     
+    // largest number of values passed in a single IN clause
+    private static final int MAX_IN_LIST_SIZE = 500;
+    
     
     @com.google.inject.Inject
-    protected JPAWeblogEntryManagerImpl(Weblogger roller, JPAPersistenceStrategy strategy) {
+    protected JPAWeblogEntryManagerImpl(Weblogger roller, JPAPersistenceStrategy strategy,
+            JPATagStatsManager tagStats, JPAArchiveIndex archiveIndex) {
         LOG.debug("Instantiating JPA Weblog Manager");
         this.roller = roller;
         this.strategy = strategy;
+        this.tagStats = tagStats;
+        this.archiveIndex = archiveIndex;
     }
     
     /**
@@ -99,6 +106,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(cat.getWeblog());
         this.strategy.store(cat);
+
+        // the category may have been renamed
+        archiveIndex.invalidate(cat.getWeblog());
     }
     
     /**
@@ -150,6 +160,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             srcCat.getWeblog().setBloggerCategory(destCat);
             this.strategy.store(srcCat.getWeblog());
         }
+
+        archiveIndex.invalidate(srcCat.getWeblog());
+        archiveIndex.invalidate(website);
     }
     
     /**
@@ -159,6 +172,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     public void saveComment(WeblogEntryComment comment) throws WebloggerException {
         this.strategy.store(comment);
         
+        // the comment may be new or may have been approved or rejected
+        updateCommentCount(comment.getWeblogEntry());
+        
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
     }
@@ -169,6 +185,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     @Override
     public void removeComment(WeblogEntryComment comment) throws WebloggerException {
         this.strategy.remove(comment);
+        updateCommentCount(comment.getWeblogEntry());
         
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
@@ -200,32 +217,35 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             entry.setAnchor(this.createAnchor(entry));
         }
         
+        // tag count changes of this save, applied together
+        Map<String, Integer> tagCounts = new HashMap<>();
         if (entry.isPublished()) {
             // tag aggregates are updated only when entry published in order for
             // tag cloud counts to match published articles
             if (entry.getRefreshAggregates()) {
                 // blog entry wasn't published before, so all tags need to be incremented
                 for (WeblogEntryTag tag : entry.getTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), 1);
+                    tagCounts.merge(tag.getName(), 1, Integer::sum);
                 }
             } else {
                 // only new tags need to be incremented
                 for (WeblogEntryTag tag : entry.getAddedTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), 1);
+                    tagCounts.merge(tag.getName(), 1, Integer::sum);
                 }
             }
         } else {
             if (entry.getRefreshAggregates()) {
                 // blog entry no longer published so need to reduce aggregate count
                 for (WeblogEntryTag tag : entry.getTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), -1);
+                    tagCounts.merge(tag.getName(), -1, Integer::sum);
                 }
             }
         }
 
         for (WeblogEntryTag tag : entry.getRemovedTags()) {
-            removeWeblogEntryTag(tag);
+            removeWeblogEntryTag(tag, tagCounts);
         }
+        tagStats.updateTagCounts(entry.getWebsite(), tagCounts);
 
         // if the entry was published to future, set status as SCHEDULED
         // we only consider an entry future published if it is scheduled
@@ -240,6 +260,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         
         this.strategy.store(entry);
         
+        // published entries may have been added, moved or taken away
+        if (entry.isPublished() || entry.getRefreshAggregates()) {
+            archiveIndex.invalidate(entry.getWebsite());
+        }
+        
         // update weblog last modified date.  date updated by saveWebsite()
         if(entry.isPublished()) {
             roller.getWeblogManager().saveWeblog(entry.getWebsite());
@@ -269,9 +294,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         
         // remove tag & tag aggregates
         if (entry.getTags() != null) {
+            Map<String, Integer> tagCounts = new HashMap<>();
             for (WeblogEntryTag tag : entry.getTags()) {
-                removeWeblogEntryTag(tag);
+                removeWeblogEntryTag(tag, tagCounts);
             }
+            tagStats.updateTagCounts(weblog, tagCounts);
         }
         
         // remove attributes
@@ -289,6 +316,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         // update weblog last modified date.  date updated by saveWebsite()
         if (entry.isPublished()) {
             roller.getWeblogManager().saveWeblog(weblog);
+            archiveIndex.invalidate(weblog);
         }
         
         // remove entry from cache mapping
@@ -474,6 +502,33 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return query.getResultList();
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<WeblogEntry> getPublishedWeblogEntriesAfter(Weblog weblog, String afterId, int maxEntries)
+    throws WebloggerException {
+        
+        // every id is greater than the empty string
+        String lastId = (afterId != null) ? afterId : "";
+        
+        TypedQuery<WeblogEntry> query;
+        if (weblog != null) {
+            query = strategy.getNamedQuery(
+                    "WeblogEntry.getByWebsite&Status&IdGreaterOrderById", WeblogEntry.class);
+            query.setParameter(1, weblog);
+            query.setParameter(2, PubStatus.PUBLISHED);
+            query.setParameter(3, lastId);
+        } else {
+            query = strategy.getNamedQuery(
+                    "WeblogEntry.getByStatus&IdGreaterOrderById", WeblogEntry.class);
+            query.setParameter(1, PubStatus.PUBLISHED);
+            query.setParameter(2, lastId);
+        }
+        query.setMaxResults(maxEntries);
+        return query.getResultList();
+    }
+    
     /**
      * @inheritDoc
      */
@@ -509,9 +564,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         }
     }
     
-    private void removeWeblogEntryTag(WeblogEntryTag tag) throws WebloggerException {
+    private void removeWeblogEntryTag(WeblogEntryTag tag, Map<String, Integer> tagCounts)
+    throws WebloggerException {
         if (tag.getWeblogEntry().isPublished()) {
-            updateTagCount(tag.getName(), tag.getWeblogEntry().getWebsite(), -1);
+            tagCounts.merge(tag.getName(), -1, Integer::sum);
         }
         this.strategy.remove(tag);
     }
@@ -684,6 +740,34 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     }
     
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<String> getCommentSubscribers(WeblogEntry entry) throws WebloggerException {
+        TypedQuery<Object[]> q = strategy.getNamedQuery(
+                "WeblogEntryComment.getEmail&NotifyByWeblogEntry&StatusOrderByPostTime", Object[].class);
+        q.setParameter(1, entry);
+        q.setParameter(2, ApprovalStatus.APPROVED);
+        
+        // later comments override the notify setting of earlier ones
+        Map<String, Boolean> notifyByEmail = new LinkedHashMap<>();
+        for (Object[] row : q.getResultList()) {
+            String email = (String) row[0];
+            if (!StringUtils.isEmpty(email)) {
+                notifyByEmail.put(email, Boolean.TRUE.equals(row[1]));
+            }
+        }
+        
+        List<String> subscribers = new ArrayList<>();
+        for (Map.Entry<String, Boolean> notify : notifyByEmail.entrySet()) {
+            if (notify.getValue()) {
+                subscribers.add(notify.getKey());
+            }
+        }
+        return subscribers;
+    }
+    
     /**
      * @inheritDoc
      */
@@ -709,14 +793,41 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         csc.setStatus(status);
 
         List<WeblogEntryComment> comments = getComments(csc);
+        Set<WeblogEntry> entries = new HashSet<>();
+        Set<Weblog> weblogs = new HashSet<>();
         int count = 0;
         for (WeblogEntryComment comment : comments) {
-            removeComment(comment);
+            this.strategy.remove(comment);
+            entries.add(comment.getWeblogEntry());
+            weblogs.add(comment.getWeblogEntry().getWebsite());
             count++;
         }
+        
+        // count once per entry rather than once per comment
+        for (WeblogEntry commentedEntry : entries) {
+            updateCommentCount(commentedEntry);
+        }
+        
+        // update weblog last modified date.  date updated by saveWebsite()
+        for (Weblog commentedWeblog : weblogs) {
+            roller.getWeblogManager().saveWeblog(commentedWeblog);
+        }
         return count;
     }
     
+    /**
+     * Set the approved comment count of an entry from the comments table,
+     * after flushing pending comment changes.  Counting is simpler than
+     * keeping track of which saves changed the approval status of a comment.
+     */
+    private void updateCommentCount(WeblogEntry entry) throws WebloggerException {
+        TypedQuery<Long> q = strategy.getNamedQueryCommitFirst(
+                "WeblogEntryComment.getCountDistinctByWeblogEntry&Status", Long.class);
+        q.setParameter(1, entry);
+        q.setParameter(2, ApprovalStatus.APPROVED);
+        entry.setCommentCount(q.getSingleResult().intValue());
+    }
+    
     
     /**
      * @inheritDoc
@@ -770,6 +881,13 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     public Map<Date, List<WeblogEntry>> getWeblogEntryObjectMap(WeblogEntrySearchCriteria wesc) throws WebloggerException {
         TreeMap<Date, List<WeblogEntry>> map = new TreeMap<>(Collections.reverseOrder());
 
+        // no need to look for published entries on days without any
+        if (wesc.getWeblog() != null && PubStatus.PUBLISHED.equals(wesc.getStatus())
+                && archiveIndex.getDays(wesc.getWeblog(), wesc.getCatName(),
+                        wesc.getStartDate(), wesc.getEndDate()).isEmpty()) {
+            return map;
+        }
+
         List<WeblogEntry> entries = getWeblogEntries(wesc);
 
         Calendar cal = Calendar.getInstance();
@@ -792,14 +910,25 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     public Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc) throws WebloggerException {
         TreeMap<Date, String> map = new TreeMap<>(Collections.reverseOrder());
 
+        SimpleDateFormat formatter = DateUtil.get8charDateFormat();
+        if (wesc.getWeblog() != null) {
+            formatter.setTimeZone(wesc.getWeblog().getTimeZoneInstance());
+        }
+
+        // published entries of a weblog, such as on calendars, are indexed by day
+        if (isIndexed(wesc)) {
+            for (Date day : archiveIndex.getDays(wesc.getWeblog(), wesc.getCatName(),
+                    wesc.getStartDate(), wesc.getEndDate())) {
+                map.put(day, formatter.format(day));
+            }
+            return map;
+        }
+
         List<WeblogEntry> entries = getWeblogEntries(wesc);
 
         Calendar cal = Calendar.getInstance();
-        SimpleDateFormat formatter = DateUtil.get8charDateFormat();
         if (wesc.getWeblog() != null) {
-            TimeZone tz = wesc.getWeblog().getTimeZoneInstance();
-            cal.setTimeZone(tz);
-            formatter.setTimeZone(tz);
+            cal.setTimeZone(wesc.getWeblog().getTimeZoneInstance());
         }
 
         for (WeblogEntry entry : entries) {
@@ -811,6 +940,66 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return map;
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Date getPreviousPublishedMonth(Weblog weblog, String catName, String locale, Date date)
+            throws WebloggerException {
+        if (locale == null) {
+            return archiveIndex.getPreviousMonth(weblog, catName, date);
+        }
+
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        // since we need an entry.pubTime < start of month, but the method uses endDate
+        wesc.setEndDate(new Date(DateUtil.getStartOfMonth(date, cal).getTime() - 1));
+        wesc.setCatName(catName);
+        wesc.setStatus(PubStatus.PUBLISHED);
+        wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.DESCENDING);
+        wesc.setLocale(locale);
+        wesc.setMaxResults(1);
+        List<WeblogEntry> entries = getWeblogEntries(wesc);
+        return entries.isEmpty() ? null : DateUtil.getStartOfMonth(entries.get(0).getPubTime(), cal);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Date getNextPublishedMonth(Weblog weblog, String catName, String locale, Date date)
+            throws WebloggerException {
+        if (locale == null) {
+            return archiveIndex.getNextMonth(weblog, catName, date);
+        }
+
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        // since we need an entry.pubTime > end of month, but the method uses startDate
+        wesc.setStartDate(new Date(DateUtil.getEndOfMonth(date, cal).getTime() + 1));
+        wesc.setCatName(catName);
+        wesc.setStatus(PubStatus.PUBLISHED);
+        wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
+        wesc.setLocale(locale);
+        wesc.setMaxResults(1);
+        List<WeblogEntry> entries = getWeblogEntries(wesc);
+        return entries.isEmpty() ? null : DateUtil.getStartOfMonth(entries.get(0).getPubTime(), cal);
+    }
+
+    // true if the days of entries matching the criteria can be had from the archive index
+    private static boolean isIndexed(WeblogEntrySearchCriteria wesc) {
+        return wesc.getWeblog() != null
+                && PubStatus.PUBLISHED.equals(wesc.getStatus())
+                && wesc.getUser() == null
+                && (wesc.getTags() == null || wesc.getTags().isEmpty())
+                && StringUtils.isEmpty(wesc.getText())
+                && wesc.getLocale() == null
+                && wesc.getOffset() == 0
+                && wesc.getMaxResults() < 0;
+    }
+
     /**
      * @inheritDoc
      */
@@ -933,51 +1122,26 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     @Override
     public List<TagStat> getPopularTags(Weblog website, Date startDate, int offset, int limit)
     throws WebloggerException {
-        TypedQuery<TagStat> query;
-        List<TagStat> queryResults;
         
-        if (website != null) {
-            if (startDate != null) {
-                Timestamp start = new Timestamp(startDate.getTime());
-                query = strategy.getNamedQuery(
-                        "WeblogEntryTagAggregate.getPopularTagsByWebsite&StartDate", TagStat.class);
-                query.setParameter(1, website);
-                query.setParameter(2, start);
-            } else {
-                query = strategy.getNamedQuery(
-                        "WeblogEntryTagAggregate.getPopularTagsByWebsite", TagStat.class);
-                query.setParameter(1, website);
-            }
-        } else {
-            if (startDate != null) {
-                Timestamp start = new Timestamp(startDate.getTime());
-                query = strategy.getNamedQuery(
-                        "WeblogEntryTagAggregate.getPopularTagsByWebsiteNull&StartDate", TagStat.class);
-                query.setParameter(1, start);
-            } else {
-                query = strategy.getNamedQuery(
-                        "WeblogEntryTagAggregate.getPopularTagsByWebsiteNull", TagStat.class);
+        // most used tags first, from the counts kept in memory
+        List<TagStat> queryResults = new ArrayList<>();
+        for (JPATagStatsManager.TagCount count : tagStats.getTags(website)) {
+            if (startDate == null || count.getLastUsed() >= startDate.getTime()) {
+                TagStat t = new TagStat();
+                t.setName(count.getName());
+                t.setCount(count.getTotal());
+                queryResults.add(t);
             }
         }
-        setFirstMax( query, offset, limit);
-        queryResults = query.getResultList();
+        queryResults.sort(TAG_STAT_COUNT_REVERSE_COMPARATOR);
+        List<TagStat> results = page(queryResults, offset, limit);
         
         double min = Integer.MAX_VALUE;
         double max = Integer.MIN_VALUE;
         
-        List<TagStat> results = new ArrayList<>(limit >= 0 ? limit : 25);
-        
-        if (queryResults != null) {
-            for (Object obj : queryResults) {
-                Object[] row = (Object[]) obj;
-                TagStat t = new TagStat();
-                t.setName((String) row[0]);
-                t.setCount(((Number) row[1]).intValue());
-
-                min = Math.min(min, t.getCount());
-                max = Math.max(max, t.getCount());
-                results.add(t);
-            }
+        for (TagStat t : results) {
+            min = Math.min(min, t.getCount());
+            max = Math.max(max, t.getCount());
         }
 
         min = Math.log(1+min);
@@ -989,7 +1153,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             t.setIntensity((int) (1 + Math.floor(5 * (Math.log(1+t.getCount()) - min) / range)));
         }
 
-        // sort results by name, because query had to sort by total
+        // sort results by name, because they had to be sorted by total
         results.sort(TAG_STAT_NAME_COMPARATOR);
         
         return results;
@@ -1001,49 +1165,14 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     @Override
     public List<TagStat> getTags(Weblog website, String sortBy,
             String startsWith, int offset, int limit) throws WebloggerException {
-        Query query;
-        List<?> queryResults;
         boolean sortByName = sortBy == null || !sortBy.equals("count");
-                
-        List<Object> params = new ArrayList<>();
-        int size = 0;
-        StringBuilder queryString = new StringBuilder();
-        queryString.append("SELECT w.name, SUM(w.total) FROM WeblogEntryTagAggregate w WHERE ");
-                
-        if (website != null) {
-            params.add(size++, website.getId());
-            queryString.append(" w.weblog.id = ?").append(size);
-        } else {
-            queryString.append(" w.weblog IS NULL"); 
-        }
-                       
-        if (startsWith != null && startsWith.length() > 0) {
-            params.add(size++, startsWith + '%');
-            queryString.append(" AND w.name LIKE ?").append(size);
-        }
-                    
-        if (sortBy != null && sortBy.equals("count")) {
-            sortBy = "w.total DESC";
-        } else {
-            sortBy = "w.name";
-        }
-        queryString.append(" GROUP BY w.name, w.total ORDER BY ").append(sortBy);
-
-        query = strategy.getDynamicQuery(queryString.toString());
-        for (int i=0; i<params.size(); i++) {
-            query.setParameter(i+1, params.get(i));
-        }
-        setFirstMax( query, offset, limit);
-        queryResults = query.getResultList();
         
         List<TagStat> results = new ArrayList<>();
-        if (queryResults != null) {
-            for (Object obj : queryResults) {
-                Object[] row = (Object[]) obj;
+        for (JPATagStatsManager.TagCount count : tagStats.getTags(website)) {
+            if (startsWith == null || count.getName().startsWith(startsWith)) {
                 TagStat ce = new TagStat();
-                ce.setName((String) row[0]);
-                // The JPA query retrieves SUM(w.total) always as long
-                ce.setCount(((Long) row[1]).intValue());
+                ce.setName(count.getName());
+                ce.setCount(count.getTotal());
                 results.add(ce);
             }
         }
@@ -1054,7 +1183,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             results.sort(TAG_STAT_COUNT_REVERSE_COMPARATOR);
         }
         
-        return results;
+        return page(results, offset, limit);
     }
     
     
@@ -1067,123 +1196,16 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         if (tags == null || tags.isEmpty()) {
             return false;
         }
-        
-        StringBuilder queryString = new StringBuilder();
-        queryString.append("SELECT DISTINCT w.name ");
-        queryString.append("FROM WeblogEntryTagAggregate w WHERE w.name IN (");
-        // Append tags as parameter markers to avoid potential escaping issues
-        // The IN clause would be of form (?1, ?2, ?3, ..)
-        List<Object> params = new ArrayList<>(tags.size() + 1);
-        final String paramSeparator = ", ";
-        int i;
-        for (i=0; i < tags.size(); i++) {
-            queryString.append('?').append(i+1).append(paramSeparator);
-            params.add(tags.get(i));
-        }
-        
-        // Remove the trailing paramSeparator
-        queryString.delete(queryString.length() - paramSeparator.length(),
-                queryString.length());
-        // Close the brace of IN clause
-        queryString.append(')');
-        
-        if(weblog != null) {
-            queryString.append(" AND w.weblog = ?").append(i+1);
-            params.add(weblog);
-        } else {
-            queryString.append(" AND w.weblog IS NULL");
-        }
-        
-        TypedQuery<String> q = strategy.getDynamicQuery(queryString.toString(), String.class);
-        for (int j=0; j<params.size(); j++) {
-            q.setParameter(j+1, params.get(j));
-        }
-        List<String> results = q.getResultList();
-        
-        //TODO: DatamapperPort: Since we are only interested in knowing whether
-        //results.size() == tags.size(). This query can be optimized to just fetch COUNT
-        //instead of objects as done currently
-        return (results != null && results.size() == tags.size());
-    }
-
-    /**
-     * This method maintains the tag aggregate table up-to-date with total counts. More
-     * specifically every time this method is called it will act upon exactly two rows
-     * in the database (tag,website,count), one with website matching the argument passed
-     * and one where website is null. If the count ever reaches zero, the row must be deleted.
-     *
-     * @param name      The tag name
-     * @param website   The website to used when updating the stats.
-     * @param amount    The amount to increment the tag count (it can be positive or negative).
-     * @throws WebloggerException
-     */
-    private void updateTagCount(String name, Weblog website, int amount)
-    throws WebloggerException {
-        if (amount == 0) {
-            throw new WebloggerException("Tag increment amount cannot be zero.");
-        }
-        
-        if (website == null) {
-            throw new WebloggerException("Website cannot be NULL.");
-        }
-        
-        // The reason why add order lastUsed desc is to make sure we keep picking the most recent
-        // one in the case where we have multiple rows (clustered environment)
-        // eventually that second entry will have a very low total (most likely 1) and
-        // won't matter
-        TypedQuery<WeblogEntryTagAggregate> weblogQuery = strategy.getNamedQuery(
-                "WeblogEntryTagAggregate.getByName&WebsiteOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
-        weblogQuery.setParameter(1, name);
-        weblogQuery.setParameter(2, website);
-        WeblogEntryTagAggregate weblogTagData;
-        try {
-            weblogTagData = weblogQuery.getSingleResult();
-        } catch (NoResultException e) {
-            weblogTagData = null;
-        }
-
-        TypedQuery<WeblogEntryTagAggregate> siteQuery = strategy.getNamedQuery(
-                "WeblogEntryTagAggregate.getByName&WebsiteNullOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
-        siteQuery.setParameter(1, name);
-        WeblogEntryTagAggregate siteTagData;
-        try {
-            siteTagData = siteQuery.getSingleResult();
-        } catch (NoResultException e) {
-            siteTagData = null;
-        }
-        Timestamp lastUsed = new Timestamp((new Date()).getTime());
-        
-        // create it only if we are going to need it.
-        if (weblogTagData == null && amount > 0) {
-            weblogTagData = new WeblogEntryTagAggregate(null, website, name, amount);
-            weblogTagData.setLastUsed(lastUsed);
-            strategy.store(weblogTagData);
-            
-        } else if (weblogTagData != null) {
-            weblogTagData.setTotal(weblogTagData.getTotal() + amount);
-            weblogTagData.setLastUsed(lastUsed);
-            strategy.store(weblogTagData);
-        }
-        
-        // create it only if we are going to need it.
-        if (siteTagData == null && amount > 0) {
-            siteTagData = new WeblogEntryTagAggregate(null, null, name, amount);
-            siteTagData.setLastUsed(lastUsed);
-            strategy.store(siteTagData);
-            
-        } else if (siteTagData != null) {
-            siteTagData.setTotal(siteTagData.getTotal() + amount);
-            siteTagData.setLastUsed(lastUsed);
-            strategy.store(siteTagData);
-        }
-        
-        // delete all bad counts
-        Query removeq = strategy.getNamedUpdate(
-                "WeblogEntryTagAggregate.removeByTotalLessEqual");
-        removeq.setParameter(1, 0);
-        removeq.executeUpdate();
+        return tagStats.containsAll(weblog, tags);
     }
     
+    // the part of a sorted list a query with the given offset and limit would return
+    private static <T> List<T> page(List<T> list, int offset, int length) {
+        int from = Math.min(Math.max(offset, 0), list.size());
+        int to = length == -1 ? list.size() : Math.min(from + length, list.size());
+        return new ArrayList<>(list.subList(from, to));
+    }
+
     /**
      * @inheritDoc
      */
@@ -1300,6 +1322,73 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             strategy.store(hitCount);
         }
     }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void incrementHitCounts(Map<String, Long> hitsByHandle)
+    throws WebloggerException {
+
+        if (hitsByHandle == null || hitsByHandle.isEmpty()) {
+            return;
+        }
+
+        // keep IN lists to a size every database accepts
+        List<String> handles = new ArrayList<>(hitsByHandle.keySet());
+        for (int i = 0; i < handles.size(); i += MAX_IN_LIST_SIZE) {
+            List<String> batch = handles.subList(i, Math.min(i + MAX_IN_LIST_SIZE, handles.size()));
+            incrementHitCounts(batch, hitsByHandle);
+        }
+    }
+
+    private void incrementHitCounts(List<String> handles, Map<String, Long> hitsByHandle)
+    throws WebloggerException {
+
+        TypedQuery<Weblog> weblogQuery = strategy.getNamedQuery(
+                "Weblog.getByHandleList&VisibleTrue", Weblog.class);
+        weblogQuery.setParameter(1, handles);
+        List<Weblog> weblogs = weblogQuery.getResultList();
+        if (weblogs.isEmpty()) {
+            return;
+        }
+
+        List<String> weblogIds = new ArrayList<>(weblogs.size());
+        for (Weblog weblog : weblogs) {
+            weblogIds.add(weblog.getId());
+        }
+        TypedQuery<String> existingQuery = strategy.getNamedQuery(
+                "WeblogHitCount.getWeblogIdByWeblogIdList", String.class);
+        existingQuery.setParameter(1, weblogIds);
+        Set<String> existing = new HashSet<>(existingQuery.getResultList());
+
+        // most weblogs get only a few hits per interval, so grouping the
+        // existing counts by amount leaves just a handful of updates to run
+        Map<Integer, List<String>> idsByAmount = new HashMap<>();
+        for (Weblog weblog : weblogs) {
+            Long hits = hitsByHandle.get(weblog.getHandle());
+            if (hits == null || hits <= 0) {
+                continue;
+            }
+            int amount = hits.intValue();
+
+            if (existing.contains(weblog.getId())) {
+                idsByAmount.computeIfAbsent(amount, k -> new ArrayList<>()).add(weblog.getId());
+            } else {
+                WeblogHitCount hitCount = new WeblogHitCount();
+                hitCount.setWeblog(weblog);
+                hitCount.setDailyHits(amount);
+                strategy.store(hitCount);
+            }
+        }
+
+        for (Map.Entry<Integer, List<String>> entry : idsByAmount.entrySet()) {
+            Query q = strategy.getNamedUpdate("WeblogHitCount.updateDailyHitsIncrementByWeblogIdList");
+            q.setParameter(1, entry.getKey());
+            q.setParameter(2, entry.getValue());
+            q.executeUpdate();
+        }
+    }
     
     /**
      * @inheritDoc
@@ -1351,6 +1440,68 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return q.getResultList().get(0);
     }
     
+    // approved comment counts of at most MAX_IN_LIST_SIZE entries
+    private Map<String, Long> getCommentCountsById(List<String> ids)
+    throws WebloggerException {
+        Map<String, Long> counts = new HashMap<>();
+        if (ids.isEmpty()) {
+            return counts;
+        }
+        for (String id : ids) {
+            counts.put(id, 0L);
+        }
+        TypedQuery<Object[]> q = strategy.getNamedQuery(
+                "WeblogEntryComment.getCountByWeblogEntryIdList&StatusGroupByWeblogEntryId", Object[].class);
+        q.setParameter(1, ids);
+        q.setParameter(2, ApprovalStatus.APPROVED);
+        for (Object[] row : q.getResultList()) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+    
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int recountComments() throws WebloggerException {
+        int repaired = 0;
+        String lastId = "";
+        List<Object[]> rows;
+        do {
+            TypedQuery<Object[]> q = strategy.getNamedQuery(
+                    "WeblogEntry.getIdAndCommentCountByIdGreaterOrderById", Object[].class);
+            q.setParameter(1, lastId);
+            q.setMaxResults(MAX_IN_LIST_SIZE);
+            rows = q.getResultList();
+            if (rows.isEmpty()) {
+                break;
+            }
+            
+            List<String> ids = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                ids.add((String) row[0]);
+            }
+            Map<String, Long> counts = getCommentCountsById(ids);
+            for (Object[] row : rows) {
+                int count = counts.get((String) row[0]).intValue();
+                if (count != ((Number) row[1]).intValue()) {
+                    Query update = strategy.getNamedUpdate("WeblogEntry.updateCommentCountById");
+                    update.setParameter(1, count);
+                    update.setParameter(2, row[0]);
+                    update.executeUpdate();
+                    repaired++;
+                }
+            }
+            lastId = ids.get(ids.size() - 1);
+        } while (rows.size() == MAX_IN_LIST_SIZE);
+        
+        if (repaired > 0) {
+            LOG.info("Corrected the comment count of " + repaired + " entries");
+        }
+        return repaired;
+    }
+    
     /**
      * @inheritDoc
      */
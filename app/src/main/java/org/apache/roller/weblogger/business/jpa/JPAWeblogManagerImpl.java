@@ -37,7 +37,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.apache.roller.weblogger.business.MediaFileManager;
 import org.apache.roller.weblogger.business.UserManager;
@@ -79,15 +78,24 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     
     private final Weblogger roller;
     private final JPAPersistenceStrategy strategy;
+    private final JPATagStatsManager tagStats;
+    private final JPAArchiveIndex archiveIndex;
     
     // cached mapping of weblogHandles -> weblogIds
     private final Map<String, String> weblogHandleToIdMap = Collections.synchronizedMap(new HashMap<>());
+    
+    // weblog counts by first letter of the handle
+    private final JPALetterCounts handleLetterCounts;
 
     @com.google.inject.Inject
-    protected JPAWeblogManagerImpl(Weblogger roller, JPAPersistenceStrategy strat) {
+    protected JPAWeblogManagerImpl(Weblogger roller, JPAPersistenceStrategy strat,
+            JPATagStatsManager tagStats, JPAArchiveIndex archiveIndex) {
         log.debug("Instantiating JPA Weblog Manager");
         this.roller = roller;
         this.strategy = strat;
+        this.tagStats = tagStats;
+        this.archiveIndex = archiveIndex;
+        this.handleLetterCounts = new JPALetterCounts(strat, "Weblog.getHandleLetter&CountGroupByHandleLetter");
     }
     
     
@@ -114,6 +122,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         
         // remove entry from cache mapping
         this.weblogHandleToIdMap.remove(weblog.getHandle());
+        this.handleLetterCounts.invalidate();
     }
     
     /**
@@ -154,6 +163,8 @@ public class JPAWeblogManagerImpl implements WeblogManager {
                 "WeblogEntryTagAggregate.removeByTotalLessEqual");
         removeCounts.setParameter(1, 0);
         removeCounts.executeUpdate();
+        tagStats.invalidate(weblog);
+        archiveIndex.invalidate(weblog);
         
         // Remove the weblog's ping queue entries
         TypedQuery<PingQueueEntry> q = strategy.getNamedQuery("PingQueueEntry.getByWebsite", PingQueueEntry.class);
@@ -265,6 +276,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     
     @Override
     public void addWeblog(Weblog newWeblog) throws WebloggerException {
+        this.handleLetterCounts.invalidate();
         this.strategy.store(newWeblog);
         this.strategy.flush();
         this.addWeblogContents(newWeblog);
@@ -613,18 +625,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     
     @Override
     public Map<String, Long> getWeblogHandleLetterMap() throws WebloggerException {
-        String lc = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        Map<String, Long> results = new TreeMap<>();
-        TypedQuery<Long> query = strategy.getNamedQuery(
-                "Weblog.getCountByHandleLike", Long.class);
-        for (int i=0; i<26; i++) {
-            char currentChar = lc.charAt(i);
-            query.setParameter(1, currentChar + "%");
-            List<Long> row = query.getResultList();
-            Long count = row.get(0);
-            results.put(String.valueOf(currentChar), count);
-        }
-        return results;
+        return handleLetterCounts.getCounts();
     }
     
     @Override
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.pings;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.pojos.PingQueueEntry;
+
+
+/**
+ * Sends the pings of one pass through the ping queue concurrently.
+ *
+ * Pings are grouped by ping target, each target gets a few threads of its own
+ * so that one slow target doesn't hold up pings to all the others, and no
+ * target gets more than a few pings at a time.  Once a target fails, the rest
+ * of its pings in the pass are skipped without being sent, and the target is
+ * left alone for a while, longer with every failure in a row.
+ *
+ * Only the ping itself happens on the dispatcher's threads, all persistent
+ * objects are read before and updated after by the calling thread.
+ */
+final class PingDispatcher {
+
+    private static final Log LOGGER = LogFactory.getLog(PingDispatcher.class);
+
+    /**
+     * What became of a ping.  Skipped pings weren't sent, because their target
+     * is backing off or failed earlier in the pass or time ran out, and should
+     * be tried again later.
+     */
+    enum Outcome { SENT, FAILED, SKIPPED }
+
+    /**
+     * Sends a single ping, throwing an exception if it failed.
+     */
+    interface Sender {
+        void send(Ping ping) throws Exception;
+    }
+
+    /**
+     * A queue entry and everything needed to send its ping.
+     */
+    static final class Ping {
+
+        private final PingQueueEntry entry;
+        private final String targetUrl;
+        private final String weblogName;
+        private final String weblogUrl;
+
+        private volatile Outcome outcome = Outcome.SKIPPED;
+        private volatile Exception error;
+
+        Ping(PingQueueEntry entry, String targetUrl, String weblogName, String weblogUrl) {
+            this.entry = entry;
+            this.targetUrl = targetUrl;
+            this.weblogName = weblogName;
+            this.weblogUrl = weblogUrl;
+        }
+
+        PingQueueEntry getEntry() {
+            return entry;
+        }
+
+        String getTargetUrl() {
+            return targetUrl;
+        }
+
+        String getWeblogName() {
+            return weblogName;
+        }
+
+        String getWeblogUrl() {
+            return weblogUrl;
+        }
+
+        Outcome getOutcome() {
+            return outcome;
+        }
+
+        Exception getError() {
+            return error;
+        }
+
+        private void sent() {
+            this.outcome = Outcome.SENT;
+        }
+
+        private void failed(Exception ex) {
+            this.error = ex;
+            this.outcome = Outcome.FAILED;
+        }
+    }
+
+    // consecutive failures of a ping target and when to try it again
+    private static final class Backoff {
+        private int failures;
+        private long until;
+    }
+
+    // backoff of failing ping targets, by ping url
+    private final Map<String, Backoff> backoffs = new ConcurrentHashMap<>();
+
+    private final Sender sender;
+    private final int threads;
+    private final int threadsPerTarget;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+
+    /**
+     * @param sender           sends the pings
+     * @param threads          most pings sent at once
+     * @param threadsPerTarget most pings sent at once to the same target
+     * @param backoffMillis    how long to leave a target alone after it first fails
+     * @param maxBackoffMillis longest to leave a target alone after repeated failures
+     */
+    PingDispatcher(Sender sender, int threads, int threadsPerTarget,
+            long backoffMillis, long maxBackoffMillis) {
+        this.sender = sender;
+        this.threads = Math.max(1, threads);
+        this.threadsPerTarget = Math.max(1, threadsPerTarget);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = Math.max(backoffMillis, maxBackoffMillis);
+    }
+
+
+    /**
+     * Send the given pings, waiting at most the given time for them.  Returns
+     * with the outcome of each ping set.
+     */
+    void dispatch(List<Ping> pings, long timeoutMillis) throws InterruptedException {
+
+        long now = System.currentTimeMillis();
+        Map<String, Target> targets = new LinkedHashMap<>();
+        for (Ping ping : pings) {
+            Backoff backoff = backoffs.get(ping.getTargetUrl());
+            if (backoff != null && backoff.until > now) {
+                continue;
+            }
+            targets.computeIfAbsent(ping.getTargetUrl(), Target::new).pings.add(ping);
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        int workers = 0;
+        for (Target target : targets.values()) {
+            target.workers = Math.min(threadsPerTarget, target.pings.size());
+            workers += target.workers;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, workers), r -> {
+            Thread thread = new Thread(r, "PingDispatcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // pools run tasks in order, so interleave the targets' workers to
+        // get every target started before any target gets a second thread
+        try {
+            for (int i = 0; i < threadsPerTarget; i++) {
+                for (Target target : targets.values()) {
+                    if (i < target.workers) {
+                        executor.execute(target::sendPings);
+                    }
+                }
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Not all pings were sent in time, the rest will be sent later");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Target target : targets.values()) {
+            if (target.failure.get() != null) {
+                backOff(target.url);
+            } else if (target.sent.get() > 0) {
+                backoffs.remove(target.url);
+            }
+        }
+    }
+
+
+    /**
+     * True if pings to the given target are being held back because it failed.
+     */
+    boolean isBackingOff(String targetUrl) {
+        Backoff backoff = backoffs.get(targetUrl);
+        return backoff != null && backoff.until > System.currentTimeMillis();
+    }
+
+
+    private void backOff(String targetUrl) {
+        if (backoffMillis <= 0) {
+            return;
+        }
+        Backoff backoff = backoffs.computeIfAbsent(targetUrl, url -> new Backoff());
+        backoff.failures++;
+
+        // double the wait with each failure, then take half of it plus a
+        // random part of the other half so that targets don't fall in step
+        long delay = backoffMillis << Math.min(backoff.failures - 1, 20);
+        delay = Math.min(delay, maxBackoffMillis);
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        backoff.until = System.currentTimeMillis() + delay;
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Ping target " + targetUrl + " failed " + backoff.failures
+                    + " time(s) in a row, not pinging it for " + delay + "ms");
+        }
+    }
+
+
+    /**
+     * The pings of a pass for one target, shared by that target's workers.
+     */
+    private final class Target {
+
+        private final String url;
+        private final Queue<Ping> pings = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final AtomicInteger sent = new AtomicInteger();
+        private int workers;
+
+        Target(String url) {
+            this.url = url;
+        }
+
+        void sendPings() {
+            Ping ping;
+            while (!Thread.currentThread().isInterrupted() && (ping = pings.poll()) != null) {
+                if (failure.get() != null) {
+                    // not sent, so left queued for the next pass without using
+                    // up an attempt, the target backing off takes care of the rest
+                    continue;
+                }
+                try {
+                    sender.send(ping);
+                    sent.incrementAndGet();
+                    ping.sent();
+                } catch (InterruptedException ex) {
+                    // out of time, leave the ping to the next pass
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    failure.compareAndSet(null, ex);
+                    ping.failed(ex);
+                }
+            }
+        }
+    }
+
+}
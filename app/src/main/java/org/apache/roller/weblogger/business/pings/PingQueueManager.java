@@ -59,6 +59,15 @@ public interface PingQueueManager {
     void removeQueueEntry(PingQueueEntry pingQueueEntry) throws WebloggerException;
     
     
+    /**
+     * Remove a number of queue entries at once.
+     *
+     * @param pingQueueEntries the entries to be removed.
+     * @throws WebloggerException
+     */
+    void removeQueueEntries(List<PingQueueEntry> pingQueueEntries) throws WebloggerException;
+    
+    
     /**
      * Retrieve an entry from the queue.
      *
@@ -18,7 +18,9 @@
 
 package org.apache.roller.weblogger.business.pings;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
@@ -43,6 +45,8 @@ public final class PingQueueProcessor {
     
     private PingQueueManager pingQueueMgr;
     
+    private final PingDispatcher dispatcher;
+    
     
     public static PingQueueProcessor getInstance() {
         return theInstance;
@@ -51,6 +55,13 @@ public final class PingQueueProcessor {
     
     private PingQueueProcessor() throws WebloggerException {
         pingQueueMgr = WebloggerFactory.getWeblogger().getPingQueueManager();
+        int timeoutMillis = PingConfig.getPingTimeoutSecs() * 1000;
+        dispatcher = new PingDispatcher(
+                ping -> WeblogUpdatePinger.sendPing(ping.getTargetUrl(), ping.getWeblogName(), ping.getWeblogUrl(), timeoutMillis),
+                PingConfig.getPingThreads(),
+                PingConfig.getPingThreadsPerTarget(),
+                TimeUnit.MINUTES.toMillis(PingConfig.getPingBackoffMins()),
+                TimeUnit.MINUTES.toMillis(PingConfig.getPingBackoffMaxMins()));
     }
     
     
@@ -74,7 +85,7 @@ public final class PingQueueProcessor {
     /**
      * Process the ping queue.  Performs one pass through the ping queue, processing every entry once.  On ping failure
      * an entry is requeued for processing on subsequent passes until the configured maximum number of attempts is
-     * reached.
+     * reached.  Pings are sent concurrently, grouped by ping target, see {@link PingDispatcher}.
      */
     public synchronized void processQueue() {
         if (PingConfig.getSuspendPingProcessing()) {
@@ -88,11 +99,6 @@ public final class PingQueueProcessor {
             return;
         }
         
-        // TODO: Group by ping target and ping all sites for that target?
-        // We're currently not taking advantage of grouping by ping target site and then sending
-        // all of the pings for that target at once.  If it becomes an efficiency issue, we should do
-        // that.
-        
         try {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Started processing ping queue.");
@@ -100,14 +106,27 @@ public final class PingQueueProcessor {
             // Get all of the entries
             List<PingQueueEntry> entries = pingQueueMgr.getAllQueueEntries();
             
-            // Process each entry
-            for (PingQueueEntry pingQueueEntry : entries) {
-                processQueueEntry(pingQueueEntry);
+            List<PingQueueEntry> processed = new ArrayList<>();
+            if (PingConfig.getLogPingsOnly()) {
+                // Just log the pings and pretend they succeeded.
+                for (PingQueueEntry pingQueueEntry : entries) {
+                    LOGGER.info("Logging simulated ping for ping queue entry " + pingQueueEntry);
+                    processed.add(pingQueueEntry);
+                }
+            } else {
+                processed = sendPings(entries);
+            }
+            
+            if (!processed.isEmpty()) {
+                pingQueueMgr.removeQueueEntries(processed);
             }
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Finished processing ping queue.");
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted processing ping queue!  Aborting this pass of ping queue processing.");
         } catch (Exception ex) {
             LOGGER.error("Unexpected exception processing ping queue!  Aborting this pass of ping queue processing.", ex);
         }
@@ -115,44 +134,56 @@ public final class PingQueueProcessor {
     
     
     /**
-     * Process an individual ping queue entry.
+     * Send the pings for the given queue entries, giving up on any which aren't sent before the next pass is due.
      *
-     * @param pingQueueEntry     the ping queue entry
+     * @param entries the ping queue entries
+     * @return the entries which are done with and should be removed from the queue.  Failed entries which will be
+     *         retried are updated, and entries which weren't sent are left as they are.
      * @throws WebloggerException only if there are problems processing the queue.  Exceptions from sending pings are
      *                         handled, not thrown.
      */
-    private void processQueueEntry(PingQueueEntry pingQueueEntry) throws WebloggerException {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Processing ping queue entry: " + pingQueueEntry);
-        }
+    private List<PingQueueEntry> sendPings(List<PingQueueEntry> entries)
+            throws WebloggerException, InterruptedException {
         
-        PingTarget pingTarget = pingQueueEntry.getPingTarget();
-        Weblog website = pingQueueEntry.getWebsite();
-        boolean pingSucceeded = false;
-        if (PingConfig.getLogPingsOnly()) {
-            // Just log the ping and pretend it succeeded.
-            LOGGER.info("Logging simulated ping for ping queue entry " + pingQueueEntry);
-            pingSucceeded = true;
-        } else {
-            // Actually process the ping
-            try {
-                // Send the ping
-                WeblogUpdatePinger.sendPing(pingTarget, website);
-                // Consider successful ping transmission if we didn't get an exception.  We don't care here
-                // about the result of the ping if it was transmitted.
-                pingSucceeded = true;
-            } catch (Exception ex) {
-                // Handle the ping error, either removing or requeuing the ping queue entry.
-                handlePingError(pingQueueEntry, ex);
+        // read everything the pings need while we are on the thread owning the persistence session
+        List<PingDispatcher.Ping> pings = new ArrayList<>(entries.size());
+        for (PingQueueEntry pingQueueEntry : entries) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Processing ping queue entry: " + pingQueueEntry);
             }
+            PingTarget pingTarget = pingQueueEntry.getPingTarget();
+            Weblog website = pingQueueEntry.getWebsite();
+            pings.add(new PingDispatcher.Ping(pingQueueEntry, pingTarget.getPingUrl(),
+                    website.getName(), website.getAbsoluteURL()));
         }
-        // We do this outside of the previous try-catch because we don't want an exception here to be considered a ping error.
-        if (pingSucceeded) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Processed ping: " + pingQueueEntry);
+        
+        long passMillis = TimeUnit.MINUTES.toMillis(Math.max(1, PingConfig.getQueueProcessingIntervalMins()));
+        dispatcher.dispatch(pings, passMillis);
+        
+        List<PingQueueEntry> processed = new ArrayList<>();
+        for (PingDispatcher.Ping ping : pings) {
+            switch (ping.getOutcome()) {
+                case SENT:
+                    // Consider successful ping transmission if we didn't get an exception.  We don't care here
+                    // about the result of the ping if it was transmitted.
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Processed ping: " + ping.getEntry());
+                    }
+                    processed.add(ping.getEntry());
+                    break;
+                case FAILED:
+                    // Handle the ping error, either removing or requeuing the ping queue entry.
+                    if (handlePingError(ping.getEntry(), ping.getError())) {
+                        processed.add(ping.getEntry());
+                    }
+                    break;
+                default:
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Ping not sent this time, leaving it queued: " + ping.getEntry());
+                    }
             }
-            pingQueueMgr.removeQueueEntry(pingQueueEntry);
         }
+        return processed;
     }
     
     
@@ -161,9 +192,10 @@ public final class PingQueueProcessor {
      *
      * @param pingQueueEntry the ping queue entry
      * @param ex             the exception that occurred on the ping attempt
+     * @return true if the entry should be removed from the queue
      * @throws WebloggerException
      */
-    private void handlePingError(PingQueueEntry pingQueueEntry, Exception ex)
+    private boolean handlePingError(PingQueueEntry pingQueueEntry, Exception ex)
             throws WebloggerException {
         
         if ((pingQueueEntry.incrementAttempts() < PingConfig.getMaxPingAttempts()) && WeblogUpdatePinger.shouldRetry(ex)) {
@@ -172,12 +204,13 @@ public final class PingQueueProcessor {
             LOGGER.debug("Error on ping attempt (" + pingQueueEntry.getAttempts() + ") for " + pingQueueEntry + ": [" + ex.getMessage() + "]. Will re-queue for later attempts.");
             LOGGER.debug("Error on last ping attempt was: ", ex);
             pingQueueMgr.saveQueueEntry(pingQueueEntry);
+            return false;
         } else {
             // Remove the entry
             LOGGER.warn("Error on ping attempt (" + pingQueueEntry.getAttempts() + ") for " + pingQueueEntry + ": [" + ex.getMessage() + "].  Entry will be REMOVED from ping queue.");
             LOGGER.debug("Error on last ping attempt was: ", ex);
-            pingQueueMgr.removeQueueEntry(pingQueueEntry);
             // TODO: mark ping target invalid?
+            return true;
         }
     }
     
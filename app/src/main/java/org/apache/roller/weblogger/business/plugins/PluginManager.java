@@ -59,6 +59,20 @@ public interface PluginManager {
     String applyWeblogEntryPlugins(Map<String, WeblogEntryPlugin> pagePlugins, WeblogEntry entry, String str);
     
     
+    /**
+     * Apply the weblog entry plugins enabled for an entry to its text or
+     * summary, in the order plugins are configured, and sanitize the
+     * results.  Results for published entries are cached until the entry is
+     * updated.
+     *
+     * @param entry       Weblog entry being rendered
+     * @param part        Name of the part of the entry, e.g. "text" or "summary"
+     * @param str         Content of that part
+     * @return        the transformed text, or null if str is null
+     */
+    String renderWeblogEntry(WeblogEntry entry, String part, String str);
+    
+    
     /**
      * Get the list of WeblogEntryCommentPlugin classes configured.
      *
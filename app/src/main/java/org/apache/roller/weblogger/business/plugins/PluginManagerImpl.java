@@ -19,15 +19,20 @@
 package org.apache.roller.weblogger.business.plugins;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.roller.weblogger.WebloggerException;
@@ -35,6 +40,8 @@ import org.apache.roller.weblogger.business.plugins.comment.WeblogEntryCommentPl
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.util.HTMLSanitizer;
 import org.apache.roller.weblogger.util.Reflection;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 
 /**
@@ -47,9 +54,33 @@ public class PluginManagerImpl implements PluginManager {
     // Plugin classes keyed by plugin name
     private static final Map<String, Class<? extends WeblogEntryPlugin>> mPagePlugins = new LinkedHashMap<>();
     
+    // a unique identifier for the cache of transformed entry text, this is
+    // used as the prefix for roller config properties that apply to it
+    public static final String TRANSFORMED_TEXT_CACHE_ID = "cache.transformedtext";
+    
     // Comment plugins
     private final List<WeblogEntryCommentPlugin> commentPlugins = new ArrayList<>();
     
+    // initialized page plugins of each weblog, by weblog id
+    private final Map<String, PluginChain> pluginChains = new ConcurrentHashMap<>();
+    
+    // text and summaries of published entries as transformed by plugins,
+    // null if disabled
+    private Cache transformedTextCache = null;
+    
+    
+    // the page plugins of a weblog, initialized as of a last modified time of
+    // the weblog
+    private static final class PluginChain {
+        private final long lastModified;
+        private final Map<String, WeblogEntryPlugin> plugins;
+        
+        PluginChain(long lastModified, Map<String, WeblogEntryPlugin> plugins) {
+            this.lastModified = lastModified;
+            this.plugins = plugins;
+        }
+    }
+    
     
     /**
      * Creates a new instance of PluginManagerImpl
@@ -60,6 +91,20 @@ public class PluginManagerImpl implements PluginManager {
         
         // load weblog entry comment plugins
         loadCommentPlugins();
+        
+        if (WebloggerConfig.getBooleanProperty(TRANSFORMED_TEXT_CACHE_ID + ".enabled")) {
+            Map<String, String> cacheProps = new HashMap<>();
+            cacheProps.put("id", TRANSFORMED_TEXT_CACHE_ID);
+            Enumeration<Object> allProps = WebloggerConfig.keys();
+            while (allProps.hasMoreElements()) {
+                String prop = (String) allProps.nextElement();
+                if (prop.startsWith(TRANSFORMED_TEXT_CACHE_ID + ".")) {
+                    cacheProps.put(prop.substring(TRANSFORMED_TEXT_CACHE_ID.length() + 1),
+                            WebloggerConfig.getProperty(prop));
+                }
+            }
+            transformedTextCache = CacheManager.constructCache(null, cacheProps);
+        }
     }
     
     
@@ -71,11 +116,35 @@ public class PluginManagerImpl implements PluginManager {
     
     
     /**
-     * Create and init plugins for processing entries in a specified website.
+     * Get the plugins for processing entries in a specified website.
+     *
+     * Plugins are created and initialized once per weblog and shared by all
+     * threads until the weblog is modified, which covers changes to anything
+     * a plugin may have read from the weblog in init().
      */
     @Override
     public Map<String, WeblogEntryPlugin> getWeblogEntryPlugins(Weblog website) {
         
+        if (website == null || website.getId() == null) {
+            return initWeblogEntryPlugins(website);
+        }
+        
+        long lastModified = website.getLastModified() != null ? website.getLastModified().getTime() : 0;
+        PluginChain chain = pluginChains.get(website.getId());
+        if (chain == null || chain.lastModified != lastModified) {
+            chain = new PluginChain(lastModified,
+                    Collections.unmodifiableMap(initWeblogEntryPlugins(website)));
+            pluginChains.put(website.getId(), chain);
+        }
+        return chain.plugins;
+    }
+    
+    
+    /**
+     * Create and init plugins for processing entries in a specified website.
+     */
+    private Map<String, WeblogEntryPlugin> initWeblogEntryPlugins(Weblog website) {
+        
         Map<String, WeblogEntryPlugin> ret = new LinkedHashMap<>();
         
         for (Class<? extends WeblogEntryPlugin> pluginClass : mPagePlugins.values()) {
@@ -109,6 +178,56 @@ public class PluginManagerImpl implements PluginManager {
     }
     
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String renderWeblogEntry(WeblogEntry entry, String part, String str) {
+        
+        if (str == null) {
+            return null;
+        }
+        
+        // published entries only change along with their update time, and
+        // the text is only sanitized while weblog admins aren't trusted
+        String key = null;
+        if (transformedTextCache != null && entry.getId() != null
+                && entry.getUpdateTime() != null && PubStatus.PUBLISHED.equals(entry.getStatus())) {
+            key = entry.getId() + ":" + part + ":" + entry.getUpdateTime().getTime()
+                    + ":" + entry.getPlugins() + ":" + HTMLSanitizer.xssEnabled;
+            String cached = (String) transformedTextCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        String ret = str;
+        List<String> entryPlugins = entry.getPluginsList();
+        
+        // if no Entry plugins, don't bother looping.
+        if (!entryPlugins.isEmpty()) {
+            
+            // loop over the weblog's plugins, in the order they are
+            // configured, applying those enabled for the entry
+            for (WeblogEntryPlugin pagePlugin : getWeblogEntryPlugins(entry.getWebsite()).values()) {
+                if (entryPlugins.contains(pagePlugin.getName())) {
+                    try {
+                        ret = pagePlugin.render(entry, ret);
+                    } catch (Exception e) {
+                        log.error("ERROR from plugin: " + pagePlugin.getName(), e);
+                    }
+                }
+            }
+        }
+        ret = HTMLSanitizer.conditionallySanitize(ret);
+        
+        if (key != null) {
+            transformedTextCache.put(key, ret);
+        }
+        return ret;
+    }
+    
+    
     /**
      * @inheritDoc
      */
@@ -28,6 +28,11 @@ import org.apache.roller.weblogger.pojos.Weblog;
  *
  * Weblog entry plugins are used to make transformations to the entry text.
  * These plugins affect both the entry summary and entry body.
+ *
+ * Plugins are initialized once per weblog and then shared by all threads
+ * rendering its entries, so render() must be thread-safe.  The results of
+ * render() for published entries are cached until the entry is updated, so
+ * they should only depend on the entry and the weblog.
  */
 public interface WeblogEntryPlugin {
     
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.Date;
+
+
+/**
+ * Run counts and timings of a scheduled task on this server.
+ *
+ * Lag is the time between when the scheduler meant to launch a run and when
+ * the run actually started, durations are how long runs took.  Runs skipped
+ * because the previous run was still going are counted separately.
+ */
+public class TaskMetrics {
+
+    private final String name;
+
+    private long runs = 0;
+    private long skipped = 0;
+    private Date lastStart = null;
+    private long lastDuration = 0;
+    private long maxDuration = 0;
+    private long totalDuration = 0;
+    private long lastLag = 0;
+    private long maxLag = 0;
+
+
+    public TaskMetrics(String name) {
+        this.name = name;
+    }
+
+
+    synchronized void recordRun(long start, long lag, long duration) {
+        runs++;
+        lastStart = new Date(start);
+        lastDuration = duration;
+        maxDuration = Math.max(maxDuration, duration);
+        totalDuration += duration;
+        lastLag = lag;
+        maxLag = Math.max(maxLag, lag);
+    }
+
+    synchronized void recordSkip() {
+        skipped++;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Number of runs completed, successfully or not.
+     */
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Number of runs skipped because the task was still running.
+     */
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * When the last completed run started, or null if there was none.
+     */
+    public synchronized Date getLastStart() {
+        return lastStart;
+    }
+
+    public synchronized long getLastDurationMillis() {
+        return lastDuration;
+    }
+
+    public synchronized long getMaxDurationMillis() {
+        return maxDuration;
+    }
+
+    public synchronized long getAverageDurationMillis() {
+        return runs > 0 ? totalDuration / runs : 0;
+    }
+
+    public synchronized long getLastLagMillis() {
+        return lastLag;
+    }
+
+    public synchronized long getMaxLagMillis() {
+        return maxLag;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": runs=" + runs + ", skipped=" + skipped
+                + ", lastDuration=" + lastDuration + "ms, maxDuration=" + maxDuration
+                + "ms, lastLag=" + lastLag + "ms, maxLag=" + maxLag + "ms";
+    }
+
+}
@@ -18,11 +18,18 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -39,19 +46,52 @@ import static org.apache.roller.util.RollerConstants.GRACEFUL_SHUTDOWN_WAIT_IN_S
  * Manages scheduling of periodic tasks.
  * 
  * This scheduler is meant to be run on a single thread and once started it will
- * run continuously until the thread is interrupted.  The basic logic of the
- * scheduler is to accept some number of tasks to be run and once per minute
- * the scheduler will launch any tasks that need to be executed.  
+ * run continuously until the thread is interrupted.  The scheduler keeps the
+ * next time each task needs to be looked at in a delay queue and sleeps until
+ * the earliest of them, then reads the task locks of all the tasks due at
+ * once and launches those which need to be executed.  Tasks are looked at on
+ * minute boundaries, so a task with a lease at the start of its day or hour
+ * is only looked at around then, not every minute.
  * 
  * Tasks are executed each on their own thread, so this scheduler does not run
- * serially like a TimerTask.  The threads used for running tasks are managed
- * by an instance of a ThreadPoolExecutor.
+ * serially like a TimerTask.  Each task has a single thread of its own, and a
+ * run is skipped if the previous one has not finished yet.
  */
 public class TaskScheduler implements Runnable {
     
     private static Log log = LogFactory.getLog(TaskScheduler.class);
-    private final ExecutorService pool;
+
+    // we add 50ms of adjustment time to make sure we awaken during the
+    // minute, and not before.  awakening at exactly the .000ms is not of
+    // any concern to us
+    private static final long MINUTE_ADJUSTMENT = 50;
+
     private final List<RollerTask> tasks;
+    private final DelayQueue<Firing> queue = new DelayQueue<>();
+    private final Map<String, ThreadPoolExecutor> executors = new HashMap<>();
+    private final Map<String, TaskMetrics> metrics = new LinkedHashMap<>();
+    
+    
+    // a task and when it is next looked at
+    private static final class Firing implements Delayed {
+        private final RollerTask task;
+        private final long time;
+
+        Firing(RollerTask task, long time) {
+            this.task = task;
+            this.time = time;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(time, ((Firing) other).time);
+        }
+    }
     
     
     public TaskScheduler(List<RollerTask> webloggerTasks) {
@@ -59,73 +99,60 @@ public class TaskScheduler implements Runnable {
         // store list of tasks available to run
         tasks = webloggerTasks;
         
-        // use an expanding thread executor pool
-        pool = Executors.newCachedThreadPool();
+        for (RollerTask task : tasks) {
+            executors.put(task.getName(), newExecutor(task.getName()));
+            metrics.put(task.getName(), new TaskMetrics(task.getName()));
+        }
+    }
+    
+    
+    /**
+     * Get the metrics of each task, in the order tasks were configured.
+     */
+    public List<TaskMetrics> getMetrics() {
+        return Collections.unmodifiableList(new ArrayList<>(metrics.values()));
     }
     
     
     @Override
     public void run() {
         
-        boolean firstRun = true;
+        // add a slight delay to scheduler start, tasks are first looked at
+        // during the next minute
+        long start = atMinute(System.currentTimeMillis() + 1);
+        log.debug("Start time = " + new Date(start));
+        for (RollerTask task : tasks) {
+            queue.add(new Firing(task, start));
+        }
         
         // run forever, or until we get interrupted
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                // get current time
-                Date now = new Date();
-                log.debug("Current time = "+now);
-                
-                // run tasks, skip run on first pass
-                if(firstRun) {
-                    // add a slight delay to scheduler start
-                    Calendar cal = Calendar.getInstance();
-                    cal.setTime(now);
-                    cal.add(Calendar.MINUTE, 1);
-                    cal.set(Calendar.SECOND, cal.getMinimum(Calendar.SECOND));
-                    cal.set(Calendar.MILLISECOND, cal.getMinimum(Calendar.MILLISECOND));
-                    now = cal.getTime();
-                    log.debug("Start time = "+now);
-                    
-                    firstRun = false;
-                } else {
-                    try {
-                        runTasks(now);
-                    } finally {
-                        // always release session after each pass
-                        WebloggerFactory.getWeblogger().release();
-                    }
-                }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // wait for the next task which is due, then take all of them
+                List<Firing> due = new ArrayList<>();
+                due.add(queue.take());
+                queue.drainTo(due);
                 
-                // wait 'til next minute
-                // NOTE: we add 50ms of adjustment time to make sure we awaken
-                //       during the next minute, and not before.  awakening at
-                //       exactly the .000ms is not of any concern to us
-                Date endOfMinute = DateUtil.getEndOfMinute(now);
-                long sleepTime = (endOfMinute.getTime() + 50) - System.currentTimeMillis();
-                if(sleepTime > 0) {
-                    log.debug("sleeping - "+sleepTime);
-                    Thread.sleep(sleepTime);
-                } else {
-                    // it's taken us more than 1 minute for the last loop
-                    // so recalculate to sleep 'til the end of the current minute
-                    endOfMinute = DateUtil.getEndOfMinute(new Date());
-                    sleepTime = (endOfMinute.getTime() + 50) - System.currentTimeMillis();
-                    log.debug("sleeping - "+sleepTime);
-                    Thread.sleep(sleepTime);
+                try {
+                    runTasks(due);
+                } finally {
+                    // always release session after each pass
+                    WebloggerFactory.getWeblogger().release();
                 }
-                
-            } catch (InterruptedException ex) {
-                log.debug("Thread interrupted, scheduler is stopping");
-                break;
             }
+        } catch (InterruptedException ex) {
+            log.debug("Thread interrupted, scheduler is stopping");
         }
 
         // thread interrupted
-        pool.shutdownNow();
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdownNow();
+        }
         try {
-            pool.awaitTermination(GRACEFUL_SHUTDOWN_WAIT_IN_SECONDS, TimeUnit.SECONDS);
-            log.debug("TaskScheduler executor was terminated successfully");
+            for (ThreadPoolExecutor executor : executors.values()) {
+                executor.awaitTermination(GRACEFUL_SHUTDOWN_WAIT_IN_SECONDS, TimeUnit.SECONDS);
+            }
+            log.debug("TaskScheduler executors were terminated successfully");
         } catch (InterruptedException e) {
             log.debug(e.getMessage(), e);
         }
@@ -133,70 +160,169 @@ public class TaskScheduler implements Runnable {
     
     
     /**
-     * Run the necessary tasks given a specific currentTime to work from.
+     * Run the tasks which are due and put them back in the queue for when
+     * they are next due.
      */
-    private void runTasks(Date currentTime) {
+    private void runTasks(List<Firing> due) {
         
-        log.debug("Started - "+currentTime);
+        long now = System.currentTimeMillis();
+        log.debug("Started - " + new Date(now));
         
-        ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+        // read the tasklocks of all due tasks in one go
+        Map<String, TaskLock> tasklocks = new HashMap<>();
+        try {
+            List<String> names = new ArrayList<>(due.size());
+            for (Firing firing : due) {
+                names.add(firing.task.getName());
+            }
+            ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+            for (TaskLock tasklock : tmgr.getTaskLocksByName(names)) {
+                tasklocks.put(tasklock.getName(), tasklock);
+            }
+        } catch (Exception e) {
+            log.warn("Error reading task locks, trying again next minute", e);
+            for (Firing firing : due) {
+                queue.add(new Firing(firing.task, atMinute(now)));
+            }
+            return;
+        }
         
-        for (RollerTask task : tasks) {
+        for (Firing firing : due) {
+            long next;
             try {
-                // get tasklock for the task
-                TaskLock tasklock = tmgr.getTaskLockByName(task.getName());
-                
-                // TODO: check if task is enabled, otherwise skip
-                if (tasklock == null) {
-                    continue;
-                }
-                
-                // first, calculate the next allowed run time for the task
-                // based on when the task was last run
-                Date nextRunTime = tasklock.getNextAllowedRun(task.getInterval());
-                log.debug(task.getName()+": next allowed run time = "+nextRunTime);
-                
-                // if we missed the last scheduled run time then see when the
-                // most appropriate next run time should be and wait 'til then
-                boolean needToWait = false;
-                if(currentTime.getTime() > (nextRunTime.getTime() + RollerConstants.MIN_IN_MS)) {
-                    
-                    log.debug("MISSED last run, checking if waiting is necessary");
-                    // add delays if task is non-immediate
-                    if ("startOfDay".equals(task.getStartTimeDesc())) {
-                        // for daily tasks we only run during the first 
-                        // couple minutes of the day
-                        Date startOfDay = DateUtil.getStartOfDay(currentTime);
-                        if(currentTime.getTime() > startOfDay.getTime() + (2 * RollerConstants.MIN_IN_MS)) {
-                            needToWait = true;
-                            log.debug("WAITING for next reasonable run time");
-                        }
-                    } else if("startOfHour".equals(task.getStartTimeDesc())) {
-                        // for hourly tasks we only run during the first
-                        // couple minutes of the hour
-                        Date startOfHour = DateUtil.getStartOfHour(currentTime);
-                        if(currentTime.getTime() > startOfHour.getTime() + (2 * RollerConstants.MIN_IN_MS)) {
-                            needToWait = true;
-                            log.debug("WAITING for next reasonable run time");
-                        }
-                    }
-                }
-                
-                // if we are within 1 minute of run time then execute,
-                // otherwise we do nothing
-                long differential = currentTime.getTime() - nextRunTime.getTime();
-                if (differential >= 0 && !needToWait) {
-                    log.debug(task.getName()+": LAUNCHING task");
-                    pool.submit(task);
-                }
+                next = runTask(firing, tasklocks.get(firing.task.getName()), now);
             } catch (ThreadDeath t) {
                 throw t;
             } catch (Throwable t) {
-                log.warn(task.getName() + ": Unhandled exception caught", t);
+                log.warn(firing.task.getName() + ": Unhandled exception caught", t);
+                next = atMinute(now);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(firing.task.getName() + ": next looked at " + new Date(next));
             }
+            queue.add(new Firing(firing.task, next));
         }
         
         log.debug("Finished");
     }
     
+    
+    /**
+     * Launch a task if it needs to be executed.
+     *
+     * @return when the task should next be looked at.
+     */
+    private long runTask(Firing firing, TaskLock tasklock, long now) {
+        
+        RollerTask task = firing.task;
+        Date currentTime = new Date(now);
+        
+        // TODO: check if task is enabled, otherwise skip
+        if (tasklock == null) {
+            return atMinute(now);
+        }
+        
+        // first, calculate the next allowed run time for the task
+        // based on when the task was last run
+        Date nextRunTime = tasklock.getNextAllowedRun(task.getInterval());
+        log.debug(task.getName()+": next allowed run time = "+nextRunTime);
+        
+        // not due yet, possibly because another server in the cluster ran it
+        if (now < nextRunTime.getTime()) {
+            return atMinute(nextRunTime.getTime());
+        }
+        
+        // if we missed the last scheduled run time then see when the
+        // most appropriate next run time should be and wait 'til then
+        if (now > (nextRunTime.getTime() + RollerConstants.MIN_IN_MS)) {
+            
+            log.debug("MISSED last run, checking if waiting is necessary");
+            // add delays if task is non-immediate
+            if ("startOfDay".equals(task.getStartTimeDesc())) {
+                // for daily tasks we only run during the first 
+                // couple minutes of the day
+                Date startOfDay = DateUtil.getStartOfDay(currentTime);
+                if (now > startOfDay.getTime() + (2 * RollerConstants.MIN_IN_MS)) {
+                    log.debug("WAITING for next reasonable run time");
+                    return atMinute(DateUtil.getEndOfDay(currentTime).getTime() + 1);
+                }
+            } else if ("startOfHour".equals(task.getStartTimeDesc())) {
+                // for hourly tasks we only run during the first
+                // couple minutes of the hour
+                Date startOfHour = DateUtil.getStartOfHour(currentTime);
+                if (now > startOfHour.getTime() + (2 * RollerConstants.MIN_IN_MS)) {
+                    log.debug("WAITING for next reasonable run time");
+                    return atMinute(DateUtil.getEndOfHour(currentTime).getTime() + 1);
+                }
+            }
+        }
+        
+        log.debug(task.getName()+": LAUNCHING task");
+        if (!launch(task, firing.time)) {
+            return atMinute(now);
+        }
+        
+        // the lease records the run at the start of its day, hour or minute,
+        // see JPAThreadManagerImpl.registerLease()
+        Date runTime;
+        if ("startOfDay".equals(task.getStartTimeDesc())) {
+            runTime = DateUtil.getStartOfDay(currentTime);
+        } else if ("startOfHour".equals(task.getStartTimeDesc())) {
+            runTime = DateUtil.getStartOfHour(currentTime);
+        } else {
+            runTime = DateUtil.getStartOfMinute(currentTime);
+        }
+        return atMinute(runTime.getTime() + task.getInterval() * (long) RollerConstants.MIN_IN_MS);
+    }
+    
+    
+    /**
+     * Hand a task to its executor, unless it is still running.
+     */
+    private boolean launch(RollerTask task, long scheduledTime) {
+        TaskMetrics taskMetrics = metrics.get(task.getName());
+        try {
+            executors.get(task.getName()).execute(() -> {
+                long started = System.currentTimeMillis();
+                try {
+                    task.run();
+                } finally {
+                    taskMetrics.recordRun(started, started - scheduledTime,
+                            System.currentTimeMillis() - started);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            taskMetrics.recordSkip();
+            log.warn(task.getName() + ": still running, skipping this run");
+            return false;
+        }
+    }
+    
+    
+    private static ThreadPoolExecutor newExecutor(String taskName) {
+        // a single thread and no queue, so a task never runs twice at once
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                RollerConstants.FIFTEEN_MIN_IN_MS, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "RollerTask-" + taskName);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    
+    /**
+     * The start of the minute of the given time, or of the next minute if
+     * the time is within a minute, plus our adjustment time.
+     */
+    private static long atMinute(long time) {
+        long startOfMinute = DateUtil.getStartOfMinute(new Date(time)).getTime();
+        long minute = startOfMinute == time
+                ? time : DateUtil.getEndOfMinute(new Date(time)).getTime() + 1;
+        return minute + MINUTE_ADJUSTMENT;
+    }
+    
 }
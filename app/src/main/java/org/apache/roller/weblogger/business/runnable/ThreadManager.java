@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
+import java.util.List;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.pojos.TaskLock;
@@ -64,6 +65,16 @@ public interface ThreadManager {
      */
     TaskLock getTaskLockByName(String name) throws WebloggerException;
 
+
+    /**
+     * Lookup the TaskLocks of several tasks at once.
+     *
+     * @param names The names of the tasks.
+     * @return The TaskLocks found, in no particular order.
+     * @throws WebloggerException If there is an error looking up the TaskLocks.
+     */
+    List<TaskLock> getTaskLocksByName(List<String> names) throws WebloggerException;
+
     
     /**
      * Save a TaskLock.
@@ -90,6 +101,14 @@ public interface ThreadManager {
      * @return boolean True if lease was unregistered (or was not leased), False otherwise.
      */
     boolean unregisterLease(RollerTask task);
+
+    
+    /**
+     * Get run counts, durations and lags of the scheduled tasks.
+     *
+     * @return The metrics of each scheduled task, empty if none are scheduled.
+     */
+    List<TaskMetrics> getTaskMetrics();
     
     
     /**
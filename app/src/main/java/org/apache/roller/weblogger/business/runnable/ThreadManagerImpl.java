@@ -19,9 +19,11 @@
 package org.apache.roller.weblogger.business.runnable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -29,7 +31,6 @@ import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -50,6 +51,9 @@ public abstract class ThreadManagerImpl implements ThreadManager {
     // our own scheduler thread
     private Thread schedulerThread = null;
     
+    // the scheduler running on it
+    private TaskScheduler scheduler = null;
+    
     // a simple thread executor
     private final ExecutorService serviceScheduler;
     
@@ -108,12 +112,10 @@ public abstract class ThreadManagerImpl implements ThreadManager {
             }
         }
         
-        // create scheduler
-        TaskScheduler scheduler = new TaskScheduler(webloggerTasks);
-        
         // start scheduler thread, but only if it's not already running
         if (schedulerThread == null) {
             LOG.debug("Starting scheduler thread");
+            scheduler = new TaskScheduler(webloggerTasks);
             schedulerThread = new Thread(scheduler, "Roller Weblogger Task Scheduler");
             // set thread priority between MAX and NORM so we get slightly preferential treatment
             schedulerThread.setPriority((Thread.MAX_PRIORITY + Thread.NORM_PRIORITY)/2);
@@ -135,14 +137,22 @@ public abstract class ThreadManagerImpl implements ThreadManager {
         Future<?> task = serviceScheduler.submit(runnable);
         
         // since this task is really meant to be executed within this calling 
-        // thread, here we can add a little code here to loop until it realizes 
-        // the task is done
-        while(!task.isDone()) {
-            Thread.sleep(RollerConstants.HALF_SEC_IN_MS);
+        // thread, we wait right here until it is done
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            LOG.error("Error executing task in foreground", e.getCause());
         }
     }
     
     
+    @Override
+    public List<TaskMetrics> getTaskMetrics() {
+        TaskScheduler taskScheduler = scheduler;
+        return taskScheduler != null ? taskScheduler.getMetrics() : Collections.emptyList();
+    }
+    
+    
     @Override
     public void shutdown() {
         
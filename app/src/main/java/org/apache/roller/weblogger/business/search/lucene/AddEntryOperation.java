@@ -82,7 +82,6 @@ public class AddEntryOperation extends WriteToIndexOperation {
             if (roller != null) {
                 roller.release();
             }
-            endWriting();
         }
     }   
 }
@@ -20,19 +20,14 @@
 
 package org.apache.roller.weblogger.business.search.lucene;
 
-import java.io.IOException;
 import java.util.List;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.util.BytesRef;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
@@ -50,13 +45,9 @@ import org.apache.roller.weblogger.pojos.WeblogEntryComment;
  */
 public abstract class IndexOperation implements Runnable {
 
-    private static Log logger = LogFactory.getFactory().getInstance(
-            IndexOperation.class);
-
     // ~ Instance fields
     // ========================================================
     protected LuceneIndexManager manager;
-    private IndexWriter writer;
 
     // ~ Constructors
     // ===========================================================
@@ -164,39 +155,13 @@ public abstract class IndexOperation implements Runnable {
     }
 
     /**
-     * Begin writing.
+     * Begin writing.  The writer is shared and stays open, changes become
+     * visible to searches with the next refresh of the index manager.
      * 
-     * @return the index writer
+     * @return the index writer, or null if the index isn't open
      */
     protected IndexWriter beginWriting() {
-        try {
-
-            LimitTokenCountAnalyzer analyzer = new LimitTokenCountAnalyzer(
-                    LuceneIndexManager.getAnalyzer(),
-                    WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount"));
-
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-
-            writer = new IndexWriter(manager.getIndexDirectory(), config);
-
-        } catch (IOException e) {
-            logger.error("ERROR creating writer", e);
-        }
-
-        return writer;
-    }
-
-    /**
-     * End writing.
-     */
-    protected void endWriting() {
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                logger.error("ERROR closing writer", e);
-            }
-        }
+        return manager.getSharedIndexWriter();
     }
 
     /**
@@ -39,10 +39,12 @@ import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -63,6 +65,12 @@ import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 /**
  * Lucene implementation of IndexManager. This is the central entry point into
  * the Lucene searching API.
+ *
+ * A single IndexWriter stays open for the lifetime of the manager and is
+ * shared by all write operations.  Searches get their IndexSearcher from a
+ * near-real-time SearcherManager on top of that writer, which a background
+ * thread refreshes so that changes become searchable within
+ * search.index.maxStaleSec seconds, without searches ever waiting for writes.
  * 
  * @author Mindaugas Idzelis (min@idzelis.com)
  * @author mraible (formatting and making indexDir configurable)
@@ -70,7 +78,6 @@ import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 @com.google.inject.Singleton
 public class LuceneIndexManager implements IndexManager {
 
-    private IndexReader reader;
     private final Weblogger roller;
 
     private final static Log logger = LogFactory.getFactory().getInstance(LuceneIndexManager.class);
@@ -85,6 +92,14 @@ public class LuceneIndexManager implements IndexManager {
 
     private final ReadWriteLock rwl = new ReentrantReadWriteLock();
 
+    // how stale a search may be, in seconds
+    private final double maxStaleSec;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
 
     /**
      * Creates a new lucene index manager. This should only be created once.
@@ -115,6 +130,17 @@ public class LuceneIndexManager implements IndexManager {
 
         String test = indexDir + File.separator + ".index-inconsistent";
         indexConsistencyMarker = new File(test);
+
+        double maxStale = 1.0;
+        String maxStaleProp = WebloggerConfig.getProperty("search.index.maxStaleSec");
+        if (maxStaleProp != null) {
+            try {
+                maxStale = Double.parseDouble(maxStaleProp.trim());
+            } catch (NumberFormatException ex) {
+                logger.warn("Invalid search.index.maxStaleSec: " + maxStaleProp);
+            }
+        }
+        this.maxStaleSec = Math.max(0.01, maxStale);
     }
 
     /**
@@ -145,23 +171,25 @@ public class LuceneIndexManager implements IndexManager {
                 }
             }
 
-            if (indexExists()) {
-
-                // test if the index is readable, if the version is outdated or it fails we rebuild.
-                try {
-                    synchronized(this) {
-                        reader = DirectoryReader.open(getIndexDirectory());
-                    }
-                } catch (IOException | IllegalArgumentException ex) {  // IAE for incompatible codecs
-                    logger.warn("Failed to open search index, scheduling rebuild.", ex);
-                    inconsistentAtStartup = true;
-                    deleteIndex();
-                }
-            } else {
+            if (!indexExists()) {
                 logger.debug("Creating index");
                 inconsistentAtStartup = true;
                 deleteIndex();
-                createIndex(getIndexDirectory());
+            }
+
+            // test if the index is readable, if the version is outdated or it fails we rebuild.
+            try {
+                openIndex();
+            } catch (IOException | IllegalArgumentException ex) {  // IAE for incompatible codecs
+                logger.warn("Failed to open search index, scheduling rebuild.", ex);
+                inconsistentAtStartup = true;
+                closeIndex();
+                deleteIndex();
+                try {
+                    openIndex();
+                } catch (IOException | IllegalArgumentException ex2) {
+                    throw new InitializationException("Unable to create search index", ex2);
+                }
             }
 
             if (inconsistentAtStartup) {
@@ -232,17 +260,23 @@ public class LuceneIndexManager implements IndexManager {
         }
 
         executeIndexOperationNow(search);
-        if (search.getResultsCount() >= 0) {
-            TopFieldDocs docs = search.getResults();
-            ScoreDoc[] hitsArr = docs.scoreDocs;
-            return convertHitsToEntryList(
-                hitsArr,
-                search,
-                pageNum,
-                entryCount,
-                weblogHandle,
-                weblogSpecific,
-                urlStrategy);
+        try {
+            if (search.getResultsCount() >= 0) {
+                TopFieldDocs docs = search.getResults();
+                ScoreDoc[] hitsArr = docs.scoreDocs;
+                return convertHitsToEntryList(
+                    hitsArr,
+                    search,
+                    pageNum,
+                    entryCount,
+                    weblogHandle,
+                    weblogSpecific,
+                    urlStrategy);
+            }
+        } finally {
+            // hits are only valid for the searcher they came from, so
+            // hold on to it until they have been converted
+            search.releaseSearcher();
         }
         throw new WebloggerException("Error executing search");
     }
@@ -311,20 +345,142 @@ public class LuceneIndexManager implements IndexManager {
         }
     }
 
-    public synchronized void resetSharedReader() {
-        reader = null;
+    /**
+     * Get the IndexWriter shared by all write operations, it must not be
+     * closed by the caller.
+     */
+    public IndexWriter getSharedIndexWriter() {
+        return writer;
+    }
+
+    /**
+     * Acquire a searcher on a recent view of the index, every searcher
+     * acquired must be handed back to {@link #releaseSearcher(IndexSearcher)}.
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        if (searcherManager == null) {
+            throw new IOException("Search index is not open");
+        }
+        return searcherManager.acquire();
+    }
+
+    public void releaseSearcher(IndexSearcher searcher) {
+        if (searcher != null && searcherManager != null) {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException ex) {
+                logger.error("Error releasing IndexSearcher", ex);
+            }
+        }
+    }
+
+    /**
+     * Configuration for writers on the index, or on an index which is going
+     * to replace it.
+     */
+    public IndexWriterConfig newIndexWriterConfig() {
+        return new IndexWriterConfig(
+                new LimitTokenCountAnalyzer(
+                        LuceneIndexManager.getAnalyzer(),
+                        WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount")));
+    }
+
+    /**
+     * Location where a full rebuild builds the index which then replaces the
+     * current one, next to the index directory.
+     */
+    public Path getRebuildDirectory() {
+        return Path.of(indexDir + ".rebuild");
+    }
+
+    /**
+     * Replace the contents of the index with the index built in the given
+     * directory.  Searches keep using the old index until the new one is
+     * completely in place, and never see a partial index in between.
+     */
+    public synchronized void replaceIndex(Path rebuildDir) throws IOException {
+
+        // a refresh between deleting and adding would expose an empty index
+        stopRefreshing();
+
+        try (Directory rebuilt = FSDirectory.open(rebuildDir)) {
+            writer.deleteAll();
+            writer.addIndexes(rebuilt);
+            writer.commit();
+
+        } catch (IOException | RuntimeException ex) {
+            // back to the last commit, which is the old index
+            logger.error("Error replacing index, keeping the old one", ex);
+            writer.rollback();
+            writer = null;
+            closeIndex();
+            openIndex();
+            throw ex;
+        }
+
+        searcherManager.maybeRefreshBlocking();
+        startRefreshing();
+    }
+
+    /**
+     * Open the shared writer and start refreshing searchers from it.
+     */
+    private synchronized void openIndex() throws IOException {
+
+        directory = FSDirectory.open(Path.of(indexDir));
+        writer = new IndexWriter(directory, newIndexWriterConfig());
+
+        // make sure a new index exists on disk right away
+        writer.commit();
+
+        searcherManager = new SearcherManager(writer, null);
+
+        startRefreshing();
     }
 
-    public synchronized IndexReader getSharedIndexReader() {
-        if (reader == null) {
+    private void startRefreshing() {
+        reopenThread = new ControlledRealTimeReopenThread<>(
+                writer, searcherManager, maxStaleSec, Math.min(0.1, maxStaleSec));
+        reopenThread.setName("Roller search index refresh");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+    }
+
+    private void stopRefreshing() {
+        if (reopenThread != null) {
+            reopenThread.close();
+            reopenThread = null;
+        }
+    }
+
+    private synchronized void closeIndex() {
+
+        stopRefreshing();
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException ex) {
+                logger.error("Unable to close SearcherManager.", ex);
+            }
+            searcherManager = null;
+        }
+        if (writer != null) {
+            try {
+                // commits pending changes
+                writer.close();
+            } catch (IOException ex) {
+                logger.error("Unable to close IndexWriter.", ex);
+            }
+            writer = null;
+        }
+        if (directory != null) {
             try {
-                reader = DirectoryReader.open(getIndexDirectory());
+                directory.close();
             } catch (IOException ex) {
-                logger.error("Error opening DirectoryReader", ex);
-                throw new RuntimeException(ex);
+                logger.error("Unable to close index directory.", ex);
             }
+            directory = null;
         }
-        return reader;
     }
 
     /**
@@ -367,30 +523,6 @@ public class LuceneIndexManager implements IndexManager {
 
     }
 
-    private void createIndex(Directory dir) {
-        IndexWriter writer = null;
-
-        try {
-
-            IndexWriterConfig config = new IndexWriterConfig(
-                    new LimitTokenCountAnalyzer(
-                            LuceneIndexManager.getAnalyzer(), 128));
-
-            writer = new IndexWriter(dir, config);
-
-        } catch (IOException e) {
-            logger.error("Error creating index", e);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException ex) {
-                    logger.warn("Unable to close IndexWriter.", ex);
-                }
-            }
-        }
-    }
-
     @Override
     public void release() {
         // no-op
@@ -398,16 +530,10 @@ public class LuceneIndexManager implements IndexManager {
 
     @Override
     public void shutdown() {
-        
-        indexConsistencyMarker.delete();
 
-        if (reader != null) {
-            try {
-                reader.close();
-            } catch (IOException ex) {
-                logger.error("Unable to close reader.", ex);
-            }
-        }
+        closeIndex();
+
+        indexConsistencyMarker.delete();
     }
 
     /**
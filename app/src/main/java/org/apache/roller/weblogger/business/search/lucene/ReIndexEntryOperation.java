@@ -95,7 +95,6 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
             if (roller != null) {
                 roller.release();
             }
-            endWriting();
         }
     }
 }
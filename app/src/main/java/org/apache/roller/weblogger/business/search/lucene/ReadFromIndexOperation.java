@@ -31,16 +31,16 @@ public abstract class ReadFromIndexOperation extends IndexOperation {
     private static Log logger = LogFactory.getFactory().getInstance(
             ReadFromIndexOperation.class);
     
+    /**
+     * Readers work on a point-in-time searcher, so unlike writers they don't
+     * need to lock the index and never wait for a write to finish.
+     */
     @Override
     public final void run() {
         try {
-            manager.getReadWriteLock().readLock().lock();
             doRun();
-
         } catch (Exception e) {
-            logger.error("Error acquiring read lock on index", e);
-        } finally {
-            manager.getReadWriteLock().readLock().unlock();
+            logger.error("Error reading from index", e);
         }
     }
     
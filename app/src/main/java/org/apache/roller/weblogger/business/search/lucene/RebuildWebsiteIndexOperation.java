@@ -18,22 +18,31 @@
 /* Created on Jul 16, 2003 */
 package org.apache.roller.weblogger.business.search.lucene;
 
-import java.text.MessageFormat;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
-import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
-import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 
 /**
  * An index operation that rebuilds a given users index (or all indexes).
@@ -51,6 +60,9 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
     // ~ Instance fields
     // ========================================================
 
+    // how often to report on a long rebuild, in milliseconds
+    private static final long PROGRESS_INTERVAL = 10 * RollerConstants.SEC_IN_MS;
+
     private Weblog website;
     private Weblogger roller;
 
@@ -78,9 +90,6 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
 
         Date start = new Date();
 
-        // since this operation can be run on a separate thread we must treat
-        // the weblog object passed in as a detached object which is proned to
-        // lazy initialization problems, so requery for the object now
         if (this.website != null) {
             logger.debug("Reindexining weblog " + website.getHandle());
             try {
@@ -94,49 +103,23 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
             logger.debug("Reindexining entire site");
         }
 
-        IndexWriter writer = beginWriting();
-
         try {
-            if (writer != null) {
-
-                // Delete Doc
-                Term tWebsite = null;
-                if (website != null) {
-                    tWebsite = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE,
+            if (website != null) {
+                IndexWriter writer = beginWriting();
+                if (writer != null) {
+                    Term tWebsite = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE,
                             website.getHandle(), LuceneIndexManager.getAnalyzer());
+                    if (tWebsite != null) {
+                        writer.deleteDocuments(tWebsite);
+                    }
+                    indexEntries(writer);
                 }
-                if (tWebsite != null) {
-                    writer.deleteDocuments(tWebsite);
-                } else {
-                    Term all = IndexUtil.getTerm(FieldConstants.CONSTANT,
-                            FieldConstants.CONSTANT_V, LuceneIndexManager.getAnalyzer());
-                    writer.deleteDocuments(all);
-                }
-
-                // Add Doc
-                WeblogEntryManager weblogManager = roller
-                        .getWeblogEntryManager();
-                WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-                wesc.setWeblog(website);
-                wesc.setStatus(PubStatus.PUBLISHED);
-                List<WeblogEntry> entries = weblogManager.getWeblogEntries(wesc);
-
-                logger.debug("Entries to index: " + entries.size());
-
-                for (WeblogEntry entry : entries) {
-                    writer.addDocument(getDocument(entry));
-                    logger.debug(MessageFormat.format(
-                            "Indexed entry {0}: {1}",
-                            entry.getPubTime(), entry.getAnchor()));
-                }
-
-                // release the database connection
-                roller.release();
+            } else {
+                rebuildIndex();
             }
         } catch (Exception e) {
             logger.error("ERROR adding/deleting doc to index", e);
         } finally {
-            endWriting();
             if (roller != null) {
                 roller.release();
             }
@@ -153,4 +136,113 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
                     + website.getHandle() + "' in '" + length + "' seconds");
         }
     }
+
+    /**
+     * Build a complete new index next to the current one and swap it in
+     * when it is done, searches use the current index until then.
+     */
+    private void rebuildIndex() throws IOException, WebloggerException {
+
+        Path rebuildDir = manager.getRebuildDirectory();
+
+        // left over from a rebuild that didn't finish
+        IOUtils.rm(rebuildDir);
+
+        try {
+            try (Directory dir = FSDirectory.open(rebuildDir);
+                 IndexWriter writer = new IndexWriter(dir, manager.newIndexWriterConfig())) {
+                indexEntries(writer);
+            }
+            manager.replaceIndex(rebuildDir);
+        } finally {
+            IOUtils.rm(rebuildDir);
+        }
+    }
+
+    /**
+     * Add all published entries of the weblog, or of the whole site, to the
+     * given writer.
+     *
+     * Entries are read in batches, each batch is turned into documents on
+     * this thread, since the entries belong to its persistence session, and
+     * the documents are then analyzed and added to the index by a pool of
+     * workers while the next batch is read.
+     */
+    private void indexEntries(IndexWriter writer) throws IOException, WebloggerException {
+
+        int threads = WebloggerConfig.getIntProperty("search.index.rebuild.threads", 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        int batchSize = Math.max(1, WebloggerConfig.getIntProperty("search.index.rebuild.batchSize", 200));
+
+        WeblogEntryManager weblogManager = roller.getWeblogEntryManager();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+
+        long started = System.currentTimeMillis();
+        long lastReport = started;
+        int indexed = 0;
+
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            String lastId = null;
+            List<WeblogEntry> entries;
+            do {
+                entries = weblogManager.getPublishedWeblogEntriesAfter(website, lastId, batchSize);
+
+                List<Document> docs = new ArrayList<>(entries.size());
+                for (WeblogEntry entry : entries) {
+                    docs.add(getDocument(entry));
+                    lastId = entry.getId();
+                }
+
+                // the documents have all they need, let go of the entries
+                roller.release();
+
+                // at most one batch is being indexed while the next is read
+                waitFor(pending);
+                for (Document doc : docs) {
+                    pending.add(workers.submit(() -> {
+                        writer.addDocument(doc);
+                        return null;
+                    }));
+                }
+                indexed += docs.size();
+
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= PROGRESS_INTERVAL) {
+                    logProgress(indexed, now - started);
+                    lastReport = now;
+                }
+            } while (entries.size() == batchSize);
+
+            waitFor(pending);
+
+        } finally {
+            workers.shutdownNow();
+        }
+
+        logProgress(indexed, System.currentTimeMillis() - started);
+    }
+
+    private static void waitFor(List<Future<?>> pending) throws IOException {
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new IOException("Error adding document to index", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rebuilding index", ex);
+        }
+        pending.clear();
+    }
+
+    private void logProgress(int indexed, long elapsed) {
+        double secs = Math.max(elapsed, 1) / (double) RollerConstants.SEC_IN_MS;
+        logger.info("Rebuilding index" + (website != null ? " for " + website.getHandle() : "")
+                + ": " + indexed + " entries indexed in " + secs + " secs ("
+                + Math.round(indexed / secs) + " entries/sec)");
+    }
 }
@@ -83,8 +83,6 @@ public class RemoveEntryOperation extends WriteToIndexOperation {
             }
         } catch (IOException e) {
             logger.error("Error deleting doc from index", e);
-        } finally {
-            endWriting();
         }
     }
 
@@ -99,8 +99,6 @@ public class RemoveWebsiteIndexOperation extends WriteToIndexOperation {
             }
         } catch (IOException e) {
             logger.info("Problems deleting doc from index", e);
-        } finally {
-            endWriting();
         }
 
         Date end = new Date();
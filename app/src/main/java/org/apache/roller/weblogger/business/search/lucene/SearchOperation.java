@@ -22,7 +22,6 @@ import java.io.IOException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -101,8 +100,7 @@ public class SearchOperation extends ReadFromIndexOperation {
         searcher = null;
 
         try {
-            IndexReader reader = manager.getSharedIndexReader();
-            searcher = new IndexSearcher(reader);
+            searcher = manager.acquireSearcher();
 
             MultiFieldQueryParser multiParser = new MultiFieldQueryParser(
                     SEARCH_FIELDS, LuceneIndexManager.getAnalyzer());
@@ -147,7 +145,17 @@ public class SearchOperation extends ReadFromIndexOperation {
             // who cares?
             parseError = e.getMessage();
         }
-        // don't need to close the reader, since we didn't do any writing!
+        // the searcher stays acquired until releaseSearcher() is called,
+        // since the results can only be read through it
+    }
+
+    /**
+     * Hand the searcher back to the index manager once the results are no
+     * longer needed.
+     */
+    public void releaseSearcher() {
+        manager.releaseSearcher(searcher);
+        searcher = null;
     }
 
     /**
@@ -48,6 +48,5 @@ public abstract class WriteToIndexOperation extends IndexOperation {
         } finally {
             manager.getReadWriteLock().writeLock().unlock();
         }
-        manager.resetSharedReader();
     }
 }
@@ -55,6 +55,33 @@ public final class PingConfig {
     private static final int QUEUE_PROCESSING_INTERVAL_MIN = 0;
     private static final int QUEUE_PROCESSING_INTERVAL_MAX = 120;
 
+    // Config properties for sending pings: threads used in total and per ping target,
+    // connect and reply timeout, and how long to leave a failing ping target alone
+    private static final String PING_THREADS_PROP = "pings.threads";
+    private static final int PING_THREADS_DEFAULT = 8;
+    private static final int PING_THREADS_MIN = 1;
+    private static final int PING_THREADS_MAX = 64;
+
+    private static final String PING_THREADS_PER_TARGET_PROP = "pings.threadsPerTarget";
+    private static final int PING_THREADS_PER_TARGET_DEFAULT = 2;
+    private static final int PING_THREADS_PER_TARGET_MIN = 1;
+    private static final int PING_THREADS_PER_TARGET_MAX = 16;
+
+    private static final String PING_TIMEOUT_PROP = "pings.timeoutSecs";
+    private static final int PING_TIMEOUT_DEFAULT = 20;
+    private static final int PING_TIMEOUT_MIN = 1;
+    private static final int PING_TIMEOUT_MAX = 300;
+
+    private static final String PING_BACKOFF_PROP = "pings.backoffMins";
+    private static final int PING_BACKOFF_DEFAULT = 5;
+    private static final int PING_BACKOFF_MIN = 0;
+    private static final int PING_BACKOFF_MAX = 120;
+
+    private static final String PING_BACKOFF_MAX_PROP = "pings.backoffMaxMins";
+    private static final int PING_BACKOFF_MAX_DEFAULT = 60;
+    private static final int PING_BACKOFF_MAX_MIN = 0;
+    private static final int PING_BACKOFF_MAX_MAX = 1440;
+
     // PingConfig property for logging pings (not actually performing them).  Used for debugging.
     private static final String PINGS_LOG_ONLY_PROP = "pings.logOnly";
     private static final boolean PINGS_LOG_ONLY_DEFAULT = false;
@@ -124,6 +151,56 @@ public final class PingConfig {
                 QUEUE_PROCESSING_INTERVAL_MIN, QUEUE_PROCESSING_INTERVAL_MAX);
     }
 
+    /**
+     * Get the number of threads sending pings during a pass through the ping queue.
+     *
+     * @return the configured (or default) number of ping threads
+     */
+    public static int getPingThreads() {
+        return getIntegerProperty(PING_THREADS_PROP, PING_THREADS_DEFAULT,
+                PING_THREADS_MIN, PING_THREADS_MAX);
+    }
+
+    /**
+     * Get the number of pings which may be sent to the same ping target at the same time.
+     *
+     * @return the configured (or default) number of ping threads per target
+     */
+    public static int getPingThreadsPerTarget() {
+        return getIntegerProperty(PING_THREADS_PER_TARGET_PROP, PING_THREADS_PER_TARGET_DEFAULT,
+                PING_THREADS_PER_TARGET_MIN, PING_THREADS_PER_TARGET_MAX);
+    }
+
+    /**
+     * Get the connect and reply timeout for a ping in seconds.
+     *
+     * @return the configured (or default) ping timeout in seconds
+     */
+    public static int getPingTimeoutSecs() {
+        return getIntegerProperty(PING_TIMEOUT_PROP, PING_TIMEOUT_DEFAULT,
+                PING_TIMEOUT_MIN, PING_TIMEOUT_MAX);
+    }
+
+    /**
+     * Get how long to wait before pinging a target again after it failed, in minutes.  The wait doubles with every
+     * further failure, up to the maximum backoff.
+     *
+     * @return the configured (or default) initial backoff in minutes
+     */
+    public static int getPingBackoffMins() {
+        return getIntegerProperty(PING_BACKOFF_PROP, PING_BACKOFF_DEFAULT,
+                PING_BACKOFF_MIN, PING_BACKOFF_MAX);
+    }
+
+    /**
+     * Get the longest time to wait before pinging a failing target again, in minutes.
+     *
+     * @return the configured (or default) maximum backoff in minutes
+     */
+    public static int getPingBackoffMaxMins() {
+        return getIntegerProperty(PING_BACKOFF_MAX_PROP, PING_BACKOFF_MAX_DEFAULT,
+                PING_BACKOFF_MAX_MIN, PING_BACKOFF_MAX_MAX);
+    }
 
     /**
      * Get the logs only setting.  Get configuration value determining whether pings are to be logged only (not sent).
@@ -59,6 +59,18 @@ public class WebloggerRomeFeedFetcher extends RomeFeedFetcher {
     }
     
     
+    @Override
+    public Subscription fetchSubscription(String feedURL, Date lastModified,
+            String etag, String httpLastModified) throws FetcherException {
+        
+        // local feeds have no validators, they are checked by date instead
+        if(feedURL != null && feedURL.startsWith("weblogger:")) {
+            return fetchSubscription(feedURL, lastModified);
+        }
+        return super.fetchSubscription(feedURL, lastModified, etag, httpLastModified);
+    }
+    
+    
     @Override
     public Subscription fetchSubscription(String feedURL, Date lastModified)
             throws FetcherException {
@@ -31,7 +31,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
@@ -49,7 +48,6 @@ import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.UserManager;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
-import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.util.HTMLSanitizer;
@@ -90,6 +88,9 @@ public class WeblogEntry implements Serializable {
     private String    creatorUserName = null;      
     private String    searchDescription = null;
 
+    // number of approved comments, maintained by the WeblogEntryManager
+    private int       commentCount  = 0;
+
     // set to true when switching between pending/draft/scheduled and published
     // either the aggregate table needs the entry's tags added (for published)
     // or subtracted (anything else)
@@ -734,8 +735,16 @@ public class WeblogEntry implements Serializable {
         return Collections.emptyList();
     }
     
+    /**
+     * Number of approved comments on this entry.  Kept up to date as comments
+     * are saved and removed, so showing it doesn't load any comments.
+     */
     public int getCommentCount() {
-        return getComments().size();
+        return commentCount;
+    }
+    
+    public void setCommentCount(int commentCount) {
+        this.commentCount = commentCount;
     }
     
     //------------------------------------------------------------------------
@@ -895,14 +904,14 @@ public class WeblogEntry implements Serializable {
      * Get entry text, transformed by plugins enabled for entry.
      */
     public String getTransformedText() {
-        return render(getText());
+        return render("text", getText());
     }
 
     /**
      * Get entry summary, transformed by plugins enabled for entry.
      */
     public String getTransformedSummary() {
-        return render(getSummary());
+        return render("summary", getSummary());
     }
 
     /**
@@ -940,32 +949,9 @@ public class WeblogEntry implements Serializable {
     /**
      * Transform string based on plugins enabled for this weblog entry.
      */
-    private String render(String str) {
-        String ret = str;
+    private String render(String part, String str) {
         mLogger.debug("Applying page plugins to string");
-        Map<String, WeblogEntryPlugin> inPlugins = getWebsite().getInitializedPlugins();
-        if (str != null && inPlugins != null) {
-            List<String> entryPlugins = getPluginsList();
-            
-            // if no Entry plugins, don't bother looping.
-            if (entryPlugins != null && !entryPlugins.isEmpty()) {
-                
-                // now loop over mPagePlugins, matching
-                // against Entry plugins (by name):
-                // where a match is found render Plugin.
-                for (Map.Entry<String, WeblogEntryPlugin> entry : inPlugins.entrySet()) {
-                    if (entryPlugins.contains(entry.getKey())) {
-                        WeblogEntryPlugin pagePlugin = entry.getValue();
-                        try {
-                            ret = pagePlugin.render(this, ret);
-                        } catch (Exception e) {
-                            mLogger.error("ERROR from plugin: " + pagePlugin.getName(), e);
-                        }
-                    }
-                }
-            }
-        } 
-        return HTMLSanitizer.conditionallySanitize(ret);
+        return WebloggerFactory.getWeblogger().getPluginManager().renderWeblogEntry(this, part, str);
     }
     
     
@@ -1001,14 +987,15 @@ public class WeblogEntry implements Serializable {
                     // TODO: we need a more appropriate way to get the view locale here
                     String readMore = I18nMessages.getMessages(getWebsite().getLocaleInstance()).getString("macro.weblog.readMoreLink", args);
                     
-                    displayContent += readMore;
+                    displayContent += HTMLSanitizer.conditionallySanitize(readMore);
                 }
             } else {
                 displayContent = this.getTransformedText();
             }
         }
         
-        return HTMLSanitizer.conditionallySanitize(displayContent);
+        // transformed content is sanitized already
+        return displayContent;
     }
     
     
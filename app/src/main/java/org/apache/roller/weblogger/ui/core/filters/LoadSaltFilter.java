@@ -23,7 +23,9 @@ import java.security.SecureRandom;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.ui.core.RollerSession;
+import org.apache.roller.weblogger.ui.core.security.SaltTokens;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SaltCache;
 
 /**
@@ -32,6 +34,12 @@ import org.apache.roller.weblogger.ui.rendering.util.cache.SaltCache;
  */
 public class LoadSaltFilter implements Filter {
 
+    // shared by all requests, seeded once
+    private static final SecureRandom random = new SecureRandom();
+
+    // salts signed by SaltTokens rather than kept in the SaltCache
+    private boolean stateless = false;
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
         throws IOException, ServletException {
@@ -40,9 +48,14 @@ public class LoadSaltFilter implements Filter {
         RollerSession rollerSession = RollerSession.getRollerSession(httpReq);
         if (rollerSession != null) {
             String userId = rollerSession.getAuthenticatedUser() != null ? rollerSession.getAuthenticatedUser().getId() : "";
-            SaltCache saltCache = SaltCache.getInstance();
-            String salt = RandomStringUtils.random(20, 0, 0, true, true, null, new SecureRandom());
-            saltCache.put(salt, userId);
+            String salt;
+            if (stateless) {
+                salt = SaltTokens.getInstance().generate(userId, SaltTokens.getSessionId(httpReq));
+            } else {
+                SaltCache saltCache = SaltCache.getInstance();
+                salt = RandomStringUtils.random(20, 0, 0, true, true, null, random);
+                saltCache.put(salt, userId);
+            }
             httpReq.setAttribute("salt", salt);
         }
 
@@ -51,6 +64,7 @@ public class LoadSaltFilter implements Filter {
  
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        stateless = "hmac".equals(WebloggerConfig.getProperty("salt.mode"));
     }
  
     @Override
@@ -37,6 +37,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SaltCache;
 import org.apache.roller.weblogger.ui.core.RollerSession;
+import org.apache.roller.weblogger.ui.core.security.SaltTokens;
 
 /**
  * Filter checks all POST request for presence of valid salt value and rejects those without
@@ -46,6 +47,9 @@ public class ValidateSaltFilter implements Filter {
     private static final Log log = LogFactory.getLog(ValidateSaltFilter.class);
     private Set<String> ignored = Collections.emptySet();
 
+    // salts signed by SaltTokens rather than kept in the SaltCache
+    private boolean stateless = false;
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response,
             FilterChain chain) throws IOException, ServletException {
@@ -65,18 +69,28 @@ public class ValidateSaltFilter implements Filter {
                 Object saltObject = httpReq.getAttribute("salt"); // multi-form post case
                 String salt = saltObject != null ? saltObject.toString() : null;
                 salt = salt != null ? salt : httpReq.getParameter("salt");
-                SaltCache saltCache = SaltCache.getInstance();
-                if (salt == null || !Objects.equals(saltCache.get(salt), userId)) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Valid salt value not found on POST to URL : " + httpReq.getServletPath());
+                if (stateless) {
+                    // signed for this user and session, nothing to look up
+                    if (!SaltTokens.getInstance().isValid(salt, userId, SaltTokens.getSessionId(httpReq))) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Valid salt value not found on POST to URL : " + httpReq.getServletPath());
+                        }
+                        throw new ServletException("Security Violation");
+                    }
+                } else {
+                    SaltCache saltCache = SaltCache.getInstance();
+                    if (salt == null || !Objects.equals(saltCache.get(salt), userId)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Valid salt value not found on POST to URL : " + httpReq.getServletPath());
+                        }
+                        throw new ServletException("Security Violation");
                     }
-                    throw new ServletException("Security Violation");
-                }
 
-                // Remove salt from cache after successful validation
-                saltCache.remove(salt);
-                if (log.isDebugEnabled()) {
-                    log.debug("Salt used and invalidated: " + salt);
+                    // Remove salt from cache after successful validation
+                    saltCache.remove(salt);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Salt used and invalidated: " + salt);
+                    }
                 }
             }
         }
@@ -88,6 +102,7 @@ public class ValidateSaltFilter implements Filter {
     public void init(FilterConfig filterConfig) throws ServletException {
         String urls = WebloggerConfig.getProperty("salt.ignored.urls");
         ignored = Set.of(StringUtils.stripAll(StringUtils.split(urls, ",")));
+        stateless = "hmac".equals(WebloggerConfig.getProperty("salt.mode"));
     }
 
     @Override
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.core.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+/**
+ * Stateless salt values for XSRF protection, used instead of the SaltCache
+ * when salt.mode is hmac.
+ * <br />
+ * A salt is the time it was made, a random nonce and an HMAC of both along
+ * with the user id and session id, keyed with salt.hmac.secret.  Any node
+ * sharing the secret can check a salt without looking anything up, and a
+ * salt is accepted for salt.hmac.timeout seconds.  Unlike cached salts they
+ * can be posted more than once within that time.
+ */
+public final class SaltTokens {
+
+    private static final Log log = LogFactory.getLog(SaltTokens.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    // clocks of the nodes may be a little apart
+    private static final long ALLOWED_SKEW = RollerConstants.MIN_IN_MS;
+
+    // shared by all threads, seeded once
+    private static final SecureRandom random = new SecureRandom();
+
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private final SecretKeySpec key;
+    private final long timeout;
+
+    // reference to our singleton instance
+    private static final SaltTokens singletonInstance = new SaltTokens(secret(),
+            (long) WebloggerConfig.getIntProperty("salt.hmac.timeout", 3600) * RollerConstants.SEC_IN_MS);
+
+
+    /**
+     * @param secret key of the HMAC
+     * @param timeout how long salts are accepted, in milliseconds
+     */
+    public SaltTokens(byte[] secret, long timeout) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.timeout = timeout;
+    }
+
+    public static SaltTokens getInstance() {
+        return singletonInstance;
+    }
+
+
+    /**
+     * Make a salt for forms posted by a user in a session.
+     */
+    public String generate(String userId, String sessionId) {
+        return generate(userId, sessionId, System.currentTimeMillis());
+    }
+
+    String generate(String userId, String sessionId, long time) {
+        byte[] nonce = new byte[9];
+        random.nextBytes(nonce);
+        String timeAndNonce = Long.toString(time, Character.MAX_RADIX) + "." + encoder.encodeToString(nonce);
+        return timeAndNonce + "." + sign(userId, sessionId, timeAndNonce);
+    }
+
+
+    /**
+     * True if the salt was made for this user and session, with our secret,
+     * and hasn't timed out.
+     */
+    public boolean isValid(String salt, String userId, String sessionId) {
+        return isValid(salt, userId, sessionId, System.currentTimeMillis());
+    }
+
+    boolean isValid(String salt, String userId, String sessionId, long now) {
+        if (salt == null) {
+            return false;
+        }
+        String[] parts = StringUtils.split(salt, '.');
+        if (parts.length != 3) {
+            return false;
+        }
+
+        long time;
+        try {
+            time = Long.parseLong(parts[0], Character.MAX_RADIX);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (now - time > timeout || time - now > ALLOWED_SKEW) {
+            log.debug("Salt timed out: " + salt);
+            return false;
+        }
+
+        String expected = sign(userId, sessionId, parts[0] + "." + parts[1]);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                parts[2].getBytes(StandardCharsets.US_ASCII));
+    }
+
+
+    /**
+     * Id of the request's session, or an empty string if there is none.
+     */
+    public static String getSessionId(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session != null ? session.getId() : "";
+    }
+
+
+    private String sign(String userId, String sessionId, String timeAndNonce) {
+        String data = StringUtils.defaultString(userId) + "\n" + StringUtils.defaultString(sessionId)
+                + "\n" + timeAndNonce;
+        try {
+            // Macs aren't thread safe, and cheap to make
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return encoder.encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Required by Spec.", e);
+        }
+    }
+
+    private static byte[] secret() {
+        String secret = WebloggerConfig.getProperty("salt.hmac.secret");
+        if (StringUtils.isNotBlank(secret)) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        if ("hmac".equals(WebloggerConfig.getProperty("salt.mode"))) {
+            log.warn("salt.hmac.secret not set, salts will only be accepted by this node until it is restarted");
+        }
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
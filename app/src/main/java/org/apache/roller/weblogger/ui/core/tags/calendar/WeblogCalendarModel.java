@@ -23,7 +23,6 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
@@ -34,7 +33,6 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
-import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -101,53 +99,15 @@ public class WeblogCalendarModel implements CalendarModel {
         Date startDate = DateUtil.getStartOfMonth(month,cal);
         Date endDate = DateUtil.getEndOfMonth(month,cal);
         
-        // Determine previous non-empty month
-        // Get entries before startDate, using category restriction limit 1
-        // Use entry's date as previous month
+        // Determine previous and next non-empty months
         try {
             WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
-            WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-            wesc.setWeblog(weblog);
-            // since we need an entry.pubTime < startDate, but the method uses endDate
-            wesc.setEndDate(new Date(startDate.getTime()-1));
-            wesc.setCatName(cat);
-            wesc.setStatus(PubStatus.PUBLISHED);
-            wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.DESCENDING);
-            wesc.setLocale(locale);
-            wesc.setMaxResults(1);
-            List<WeblogEntry> prevEntries = mgr.getWeblogEntries(wesc);
-
-            if (!prevEntries.isEmpty()) {
-                WeblogEntry prevEntry = prevEntries.get(0);
-                prevMonth = DateUtil.getStartOfMonth(new Date(prevEntry.getPubTime().getTime()),getCalendar());
-            }
+            prevMonth = mgr.getPreviousPublishedMonth(weblog, cat, locale, startDate);
+            nextMonth = mgr.getNextPublishedMonth(weblog, cat, locale, endDate);
         } catch (WebloggerException e) {
-            log.error("ERROR determining previous non-empty month");
+            log.error("ERROR determining previous and next non-empty months");
         }
         
-        // Determine next non-empty month
-        // Get entries after endDate, using category restriction limit 1
-        // Use entry's date as next month
-        try {
-            WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
-            WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-            wesc.setWeblog(weblog);
-            // since we need an entry.pubTime > endDate, but the method uses startDate
-            wesc.setStartDate(new Date(endDate.getTime()+1));
-            wesc.setCatName(cat);
-            wesc.setStatus(PubStatus.PUBLISHED);
-            wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
-            wesc.setLocale(locale);
-            wesc.setMaxResults(1);
-            List<WeblogEntry> nextEntries = mgr.getWeblogEntries(wesc);
-            if (!nextEntries.isEmpty()) {
-                WeblogEntry nextEntry = nextEntries.get(0);
-                nextMonth = DateUtil.getStartOfMonth(new Date(nextEntry.getPubTime().getTime()),getCalendar());
-            }
-        } catch (WebloggerException e) {
-            log.error("ERROR determining next non-empty month");
-        }  
-        
         // Fix for ROL-840 Don't include future entries
         Date now = new Date();
         if (endDate.after(now)) {
@@ -31,8 +31,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
-import org.apache.roller.weblogger.business.WebloggerFactory;
-import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshot;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshotCache;
 
 
 /**
@@ -417,20 +417,9 @@ public class WeblogRequestMapper implements RequestMapper {
         
         log.debug("checking weblog handle "+potentialHandle);
         
-        boolean isWeblog = false;
+        WeblogSnapshot weblog = WeblogSnapshotCache.getInstance().get(potentialHandle);
         
-        try {
-            Weblog weblog = WebloggerFactory.getWeblogger().getWeblogManager()
-                    .getWeblogByHandle(potentialHandle);
-            
-            if(weblog != null) {
-                isWeblog = true;
-            }
-        } catch(Exception ex) {
-            // doesn't really matter to us why it's not a valid website
-        }
-        
-        return isWeblog;
+        return weblog != null && weblog.isVisible();
     }
     
     
@@ -38,6 +38,7 @@ import org.apache.roller.weblogger.pojos.StaticTemplate;
 import org.apache.roller.weblogger.pojos.Template;
 import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.util.CachedContentResponseUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
@@ -47,7 +48,9 @@ import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.model.SearchResultsFeedModel;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogFeedCache;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshot;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
+import org.apache.roller.weblogger.ui.rendering.util.RenderCoalescer;
 
 
 /**
@@ -59,6 +62,8 @@ public class FeedServlet extends HttpServlet {
 
     private WeblogFeedCache weblogFeedCache = null;
     private SiteWideCache siteWideCache = null;
+    private RenderCoalescer renderCoalescer = null;
+    private boolean serveStale = false;
 
 
     /**
@@ -76,6 +81,13 @@ public class FeedServlet extends HttpServlet {
 
         // get a reference to the site wide cache
         this.siteWideCache = SiteWideCache.getInstance();
+
+        // coalescing of concurrent renders of the same content
+        if (WebloggerConfig.getBooleanProperty("rendering.coalesce.enabled", true)) {
+            this.renderCoalescer = new RenderCoalescer(RollerConstants.SEC_IN_MS
+                    * (long) WebloggerConfig.getIntProperty("rendering.coalesce.timeout", 30));
+            this.serveStale = WebloggerConfig.getBooleanProperty("rendering.coalesce.serveStale");
+        }
     }
 
 
@@ -88,7 +100,7 @@ public class FeedServlet extends HttpServlet {
 
         log.debug("Entering");
 
-        Weblog weblog;
+        WeblogSnapshot snapshot;
         boolean isSiteWide;
 
         WeblogFeedRequest feedRequest;
@@ -96,8 +108,9 @@ public class FeedServlet extends HttpServlet {
             // parse the incoming request and extract the relevant data
             feedRequest = new WeblogFeedRequest(request);
 
-            weblog = feedRequest.getWeblog();
-            if (weblog == null) {
+            // the weblog itself is only loaded if the feed isn't cached
+            snapshot = feedRequest.getWeblogSnapshot();
+            if (snapshot == null) {
                 throw new WebloggerException("unable to lookup weblog: "
                         + feedRequest.getWeblogHandle());
             }
@@ -117,8 +130,8 @@ public class FeedServlet extends HttpServlet {
         long lastModified = System.currentTimeMillis();
         if (isSiteWide) {
             lastModified = siteWideCache.getLastModified().getTime();
-        } else if (weblog.getLastModified() != null) {
-            lastModified = weblog.getLastModified().getTime();
+        } else if (snapshot.getLastModified() != null) {
+            lastModified = snapshot.getLastModified().getTime();
         }
 
         // Respond with 304 Not Modified if it is not modified.
@@ -169,14 +182,20 @@ public class FeedServlet extends HttpServlet {
         if (cachedContent != null) {
             log.debug("HIT " + cacheKey);
 
-            response.setContentLength(cachedContent.getContent().length);
-            response.getOutputStream().write(cachedContent.getContent());
+            CachedContentResponseUtil.writeContent(request, response, cachedContent);
             return;
 
         } else {
             log.debug("MISS " + cacheKey);
         }
 
+        Weblog weblog = feedRequest.getWeblog();
+        if (weblog == null) {
+            log.debug("unable to lookup weblog: " + feedRequest.getWeblogHandle());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
         // validation. make sure that request input makes sense.
         boolean invalid = false;
         if (feedRequest.getLocale() != null
@@ -217,6 +236,73 @@ public class FeedServlet extends HttpServlet {
         }
 
         // looks like we need to render content
+        // only one request renders a given feed at a time, the others wait
+        // for its content or get the stale content if that's allowed
+        RenderCoalescer.Flight flight = null;
+        if (this.renderCoalescer != null) {
+            flight = this.renderCoalescer.begin(cacheKey);
+            if (!flight.isLeader()) {
+                CachedContent coalesced = null;
+                if (this.serveStale && !isSiteWide) {
+                    coalesced = (CachedContent) weblogFeedCache.getStale(cacheKey);
+                }
+                if (coalesced == null) {
+                    coalesced = flight.await();
+                }
+                if (coalesced != null) {
+                    CachedContentResponseUtil.writeContent(request, response, coalesced);
+                    return;
+                }
+
+                // leader failed or took too long, render for ourselves
+                flight = null;
+            }
+        }
+
+        CachedContent rendererOutput;
+        CachedContent prepared = null;
+        try {
+            rendererOutput = render(response, feedRequest, weblog);
+            if (rendererOutput == null) {
+                return;
+            }
+
+            // post rendering process
+
+            // cache rendered content. only cache if user is not logged in?
+            // this comes first so the response can use the compressed variant
+            log.debug("PUT " + cacheKey);
+            if (isSiteWide) {
+                siteWideCache.put(cacheKey, rendererOutput);
+            } else {
+                weblogFeedCache.put(cacheKey, rendererOutput);
+            }
+
+            // waiting requests only get the content once the cache is done
+            // compressing it and moving it off heap
+            prepared = rendererOutput;
+        } finally {
+            if (flight != null) {
+                flight.complete(prepared);
+            }
+        }
+
+        // flush rendered content to response
+        log.debug("Flushing response output");
+        CachedContentResponseUtil.writeContent(request, response, rendererOutput);
+
+        log.debug("Exiting");
+    }
+
+    /**
+     * Load the models and render the requested feed.
+     *
+     * @return the rendered content, or null if rendering failed, in which
+     *         case an error has already been sent.
+     */
+    private CachedContent render(HttpServletResponse response,
+            WeblogFeedRequest feedRequest, Weblog weblog) throws IOException {
+
         HashMap<String, Object> model = new HashMap<>();
         String pageId;
         try {
@@ -275,7 +361,7 @@ public class FeedServlet extends HttpServlet {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            return;
+            return null;
         }
 
         // lookup Renderer we are going to use
@@ -301,7 +387,7 @@ public class FeedServlet extends HttpServlet {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+            return null;
         }
 
         // render content. use default size of 24K for a standard page
@@ -321,25 +407,10 @@ public class FeedServlet extends HttpServlet {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
-
-        // post rendering process
-
-        // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
-
-        // cache rendered content. only cache if user is not logged in?
-        log.debug("PUT " + cacheKey);
-        if (isSiteWide) {
-            siteWideCache.put(cacheKey, rendererOutput);
-        } else {
-            weblogFeedCache.put(cacheKey, rendererOutput);
+            return null;
         }
 
-        log.debug("Exiting");
+        return rendererOutput;
     }
 
 }
@@ -43,12 +43,16 @@ import org.apache.roller.weblogger.ui.core.RollerContext;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
+import org.apache.roller.weblogger.ui.rendering.util.CachedContentResponseUtil;
 import org.apache.roller.weblogger.ui.rendering.util.InvalidRequestException;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
+import org.apache.roller.weblogger.ui.rendering.util.RenderCoalescer;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogEntryCommentForm;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshot;
+import org.apache.roller.weblogger.ui.rendering.velocity.RollerVelocity;
 import org.apache.roller.weblogger.util.BannedwordslistChecker;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.cache.CachedContent;
@@ -79,6 +83,8 @@ public class PageServlet extends HttpServlet {
     private boolean excludeOwnerPages = false;
     private WeblogPageCache weblogPageCache = null;
     private SiteWideCache siteWideCache = null;
+    private RenderCoalescer renderCoalescer = null;
+    private boolean serveStale = false;
 
     // Development theme reloading
     Boolean themeReload = false;
@@ -102,6 +108,13 @@ public class PageServlet extends HttpServlet {
         // get a reference to the site wide cache
         this.siteWideCache = SiteWideCache.getInstance();
 
+        // coalescing of concurrent renders of the same content
+        if (WebloggerConfig.getBooleanProperty("rendering.coalesce.enabled", true)) {
+            this.renderCoalescer = new RenderCoalescer(RollerConstants.SEC_IN_MS
+                    * (long) WebloggerConfig.getIntProperty("rendering.coalesce.timeout", 30));
+            this.serveStale = WebloggerConfig.getBooleanProperty("rendering.coalesce.serveStale");
+        }
+
         // see if built-in referrer spam check is enabled
         this.processReferrers = WebloggerConfig
                 .getBooleanProperty("site.bannedwordslist.enable.referrers");
@@ -154,15 +167,16 @@ public class PageServlet extends HttpServlet {
             }
         }
 
-        Weblog weblog;
+        WeblogSnapshot snapshot;
         boolean isSiteWide;
 
         WeblogPageRequest pageRequest;
         try {
             pageRequest = new WeblogPageRequest(request);
 
-            weblog = pageRequest.getWeblog();
-            if (weblog == null) {
+            // the weblog itself is only loaded if the page isn't cached
+            snapshot = pageRequest.getWeblogSnapshot();
+            if (snapshot == null) {
                 throw new WebloggerException("unable to lookup weblog: "
                         + pageRequest.getWeblogHandle());
             }
@@ -181,8 +195,8 @@ public class PageServlet extends HttpServlet {
         long lastModified = System.currentTimeMillis();
         if (isSiteWide) {
             lastModified = siteWideCache.getLastModified().getTime();
-        } else if (weblog.getLastModified() != null) {
-            lastModified = weblog.getLastModified().getTime();
+        } else if (snapshot.getLastModified() != null) {
+            lastModified = snapshot.getLastModified().getTime();
         }
 
         // 304 Not Modified handling.
@@ -209,22 +223,23 @@ public class PageServlet extends HttpServlet {
 
         // Development only. Reload if theme has been modified
         if (themeReload
-                && !weblog.getEditorTheme().equals(WeblogTheme.CUSTOM)
+                && !snapshot.getEditorTheme().equals(WeblogTheme.CUSTOM)
                 && (pageRequest.getPathInfo() == null || pageRequest
                         .getPathInfo() != null
                         && !pageRequest.getPathInfo().endsWith(".css"))) {
             try {
                 ThemeManager manager = WebloggerFactory.getWeblogger()
                         .getThemeManager();
-                boolean reloaded = manager.reLoadThemeFromDisk(weblog
+                boolean reloaded = manager.reLoadThemeFromDisk(snapshot
                         .getEditorTheme());
                 if (reloaded) {
+                    RollerVelocity.invalidateTheme(snapshot.getEditorTheme());
                     if (isSiteWide) {
                         siteWideCache.clear();
                     } else {
                         weblogPageCache.clear();
                     }
-                    I18nMessages.reloadBundle(weblog.getLocaleInstance());
+                    I18nMessages.reloadBundle(snapshot.getLocaleInstance());
                 }
 
             } catch (Exception ex) {
@@ -252,18 +267,24 @@ public class PageServlet extends HttpServlet {
                 if (!isSiteWide
                         && (pageRequest.isWebsitePageHit() || pageRequest
                                 .isOtherPageHit())) {
-                    this.processHit(weblog);
+                    this.processHit(snapshot.getHandle());
                 }
 
-                response.setContentLength(cachedContent.getContent().length);
                 response.setContentType(cachedContent.getContentType());
-                response.getOutputStream().write(cachedContent.getContent());
+                CachedContentResponseUtil.writeContent(request, response, cachedContent);
                 return;
             } else {
                 log.debug("MISS " + cacheKey);
             }
         }
 
+        Weblog weblog = pageRequest.getWeblog();
+        if (weblog == null) {
+            log.debug("unable to lookup weblog: " + pageRequest.getWeblogHandle());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
         log.debug("Looking for template to use for rendering");
 
         // figure out what template to use
@@ -415,7 +436,7 @@ public class PageServlet extends HttpServlet {
         if (!isSiteWide
                 && (pageRequest.isWebsitePageHit() || pageRequest
                         .isOtherPageHit())) {
-            this.processHit(weblog);
+            this.processHit(weblog.getHandle());
         }
 
         // looks like we need to render content
@@ -439,6 +460,85 @@ public class PageServlet extends HttpServlet {
             }
         }
 
+        boolean cacheable = (!this.excludeOwnerPages || !pageRequest.isLoggedIn())
+                && request.getAttribute("skipCache") == null;
+
+        // only one request renders a given page at a time, the others wait
+        // for its content or get the stale content if that's allowed
+        RenderCoalescer.Flight flight = null;
+        if (this.renderCoalescer != null && cacheable) {
+            flight = this.renderCoalescer.begin(cacheKey);
+            if (!flight.isLeader()) {
+                CachedContent coalesced = null;
+                if (this.serveStale && !isSiteWide) {
+                    coalesced = (CachedContent) weblogPageCache.getStale(cacheKey);
+                }
+                if (coalesced == null) {
+                    coalesced = flight.await();
+                }
+                if (coalesced != null) {
+                    response.setContentType(contentType);
+                    CachedContentResponseUtil.writeContent(request, response, coalesced);
+                    return;
+                }
+
+                // leader failed or took too long, render for ourselves
+                flight = null;
+            }
+        }
+
+        CachedContent rendererOutput;
+        CachedContent prepared = null;
+        try {
+            rendererOutput = render(request, response, pageRequest, weblog, page, contentType);
+            if (rendererOutput == null) {
+                return;
+            }
+
+            // post rendering process
+            // cache rendered content. only cache if user is not logged in?
+            // this comes first so the response can use the compressed variant
+            if (cacheable) {
+                log.debug("PUT " + cacheKey);
+
+                // put it in the right cache
+                if (isSiteWide) {
+                    siteWideCache.put(cacheKey, rendererOutput);
+                } else {
+                    weblogPageCache.put(cacheKey, rendererOutput);
+                }
+            } else {
+                log.debug("SKIPPED " + cacheKey);
+            }
+
+            // waiting requests only get the content once the cache is done
+            // compressing it and moving it off heap
+            prepared = rendererOutput;
+        } finally {
+            if (flight != null) {
+                flight.complete(prepared);
+            }
+        }
+
+        // flush rendered content to response
+        log.debug("Flushing response output");
+        response.setContentType(contentType);
+        CachedContentResponseUtil.writeContent(request, response, rendererOutput);
+
+        log.debug("Exiting");
+    }
+
+    /**
+     * Load the models and render the given page.
+     *
+     * @return the rendered content, or null if rendering failed, in which
+     *         case an error has already been sent.
+     */
+    private CachedContent render(HttpServletRequest request,
+            HttpServletResponse response, WeblogPageRequest pageRequest,
+            Weblog weblog, ThemeTemplate page, String contentType)
+            throws IOException {
+
         HashMap<String, Object> model = new HashMap<>();
         try {
             PageContext pageContext = JspFactory.getDefaultFactory()
@@ -483,7 +583,7 @@ public class PageServlet extends HttpServlet {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            return;
+            return null;
         }
 
         // lookup Renderer we are going to use
@@ -500,7 +600,7 @@ public class PageServlet extends HttpServlet {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+            return null;
         }
 
         // render content
@@ -521,32 +621,10 @@ public class PageServlet extends HttpServlet {
                 response.reset();
             }
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+            return null;
         }
 
-        // post rendering process
-        // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentType(contentType);
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
-
-        // cache rendered content. only cache if user is not logged in?
-        if ((!this.excludeOwnerPages || !pageRequest.isLoggedIn())
-                && request.getAttribute("skipCache") == null) {
-            log.debug("PUT " + cacheKey);
-
-            // put it in the right cache
-            if (isSiteWide) {
-                siteWideCache.put(cacheKey, rendererOutput);
-            } else {
-                weblogPageCache.put(cacheKey, rendererOutput);
-            }
-        } else {
-            log.debug("SKIPPED " + cacheKey);
-        }
-
-        log.debug("Exiting");
+        return rendererOutput;
     }
 
     /**
@@ -571,10 +649,10 @@ public class PageServlet extends HttpServlet {
     /**
      * Notify the hit tracker that it has an incoming page hit.
      */
-    private void processHit(Weblog weblog) {
+    private void processHit(String weblogHandle) {
 
         HitCountQueue counter = HitCountQueue.getInstance();
-        counter.processHit(weblog);
+        counter.processHit(weblogHandle);
     }
 
     /**
@@ -44,6 +44,7 @@ import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.DeviceType;
 import org.apache.roller.weblogger.ui.rendering.model.UtilitiesModel;
+import org.apache.roller.weblogger.ui.rendering.util.CachedContentResponseUtil;
 import org.apache.roller.weblogger.ui.rendering.util.cache.PlanetCache;
 import org.apache.roller.weblogger.ui.rendering.util.PlanetRequest;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
@@ -124,8 +125,7 @@ public class PlanetFeedServlet extends HttpServlet {
                 + this.generateKey(planetRequest);
         CachedContent entry = (CachedContent) planetCache.get(cacheKey);
         if (entry != null) {
-            response.setContentLength(entry.getContent().length);
-            response.getOutputStream().write(entry.getContent());
+            CachedContentResponseUtil.writeContent(request, response, entry);
             return;
         }
 
@@ -234,14 +234,13 @@ public class PlanetFeedServlet extends HttpServlet {
         }
 
         // post rendering process
-        // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
-
         // cache rendered content.
         this.planetCache.put(cacheKey, rendererOutput);
 
+        // flush rendered content to response
+        log.debug("Flushing response output");
+        CachedContentResponseUtil.writeContent(request, response, rendererOutput);
+
         log.debug("Exiting");
     }
 
@@ -48,6 +48,7 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogSearchRequest;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
+import org.apache.roller.weblogger.ui.rendering.velocity.RollerVelocity;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 
@@ -113,6 +114,7 @@ public class SearchServlet extends HttpServlet {
                 ThemeManager manager = WebloggerFactory.getWeblogger().getThemeManager();
                 boolean reloaded = manager.reLoadThemeFromDisk(weblog.getEditorTheme());
                 if (reloaded) {
+                    RollerVelocity.invalidateTheme(weblog.getEditorTheme());
                     if (WebloggerRuntimeConfig.isSiteWideWeblog(searchRequest.getWeblogHandle())) {
                         SiteWideCache.getInstance().clear();
                     } else {
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+/**
+ * Utility class to localize the logic for writing CachedContent to a response.
+ *
+ * When a compressed variant of the content is available and the client
+ * accepts it we send that instead, so that cache hits don't cost a round of
+ * compression each time.
+ *
+ * Each response also carries a strong ETag computed from the content itself,
+ * so conditional requests for a page which didn't change get a 304 even if
+ * something else in the weblog changed in the meantime.
+ */
+public final class CachedContentResponseUtil {
+
+    private static final Log log = LogFactory.getLog(CachedContentResponseUtil.class);
+
+    private static final boolean GZIP_ENABLED =
+            WebloggerConfig.getBooleanProperty("compression.gzipResponse.enabled");
+
+    private CachedContentResponseUtil() {
+    }
+
+    /**
+     * Write the content to the response, choosing the gzip variant if there
+     * is one and the request accepts it.  The caller is responsible for the
+     * content type and any other headers.
+     *
+     * If the request has an If-None-Match header matching the content then
+     * only a 304 (NOT MODIFIED) status is sent.
+     */
+    public static void writeContent(HttpServletRequest request,
+            HttpServletResponse response, CachedContent content) throws IOException {
+
+        if (GZIP_ENABLED) {
+            // the response differs by encoding, so tell any caches in between
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+
+        boolean gzip = content.hasGzipContent() && acceptsGzip(request);
+
+        if (content.getContentHash() != null) {
+            // strong validators must differ between encodings of the same content
+            response.setHeader("ETag", "\"" + content.getContentHash()
+                    + (gzip ? "-gzip" : "") + "\"");
+
+            if (matchesETag(request.getHeader("If-None-Match"), content.getContentHash())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("NOT MODIFIED (ETag) " + request.getRequestURL());
+                }
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        if (gzip) {
+            log.debug("Sending gzip content");
+            response.setHeader("Content-Encoding", "gzip");
+            response.setContentLength(content.getGzipContentLength());
+            content.writeGzipTo(response.getOutputStream());
+        } else {
+            response.setContentLength(content.getContentLength());
+            content.writeTo(response.getOutputStream());
+        }
+    }
+
+    /**
+     * True if the Accept-Encoding header of the request allows gzip, i.e.
+     * lists gzip (or *) without a quality value of 0.
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim();
+            if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)
+                    || "*".equals(name)) {
+                return !hasZeroQuality(params);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if an If-None-Match header value lists an entity tag for content
+     * with the given hash.  As the spec says for If-None-Match this is a weak
+     * comparison, so W/ prefixes and encoding variants are ignored.
+     */
+    public static boolean matchesETag(String ifNoneMatch, String contentHash) {
+
+        if (ifNoneMatch == null || contentHash == null) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.equals(contentHash) || tag.equals(contentHash + "-gzip")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasZeroQuality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2).trim()) <= 0;
+                } catch (NumberFormatException ex) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
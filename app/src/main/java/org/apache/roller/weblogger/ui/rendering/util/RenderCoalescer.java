@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+/**
+ * Coalesces concurrent renders of the same content.
+ *
+ * When a popular page drops out of the cache every request for it misses at
+ * the same time.  Instead of having each of them load models and render the
+ * template, the first request for a cache key becomes the leader and renders,
+ * while the others wait for the leader's content and send that.
+ *
+ * Followers only wait for a limited time, if the leader takes too long or
+ * fails they go on and render for themselves.
+ */
+public final class RenderCoalescer {
+
+    private static final Log log = LogFactory.getLog(RenderCoalescer.class);
+
+    // renders in progress, by cache key
+    private final Map<String, CompletableFuture<CachedContent>> inFlight = new ConcurrentHashMap<>();
+
+    private final long timeout;
+
+    /**
+     * @param timeout how long followers wait for the leader, in milliseconds
+     */
+    public RenderCoalescer(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Join the render for the given cache key, becoming its leader if nobody
+     * else is rendering it right now.  A leader must always call
+     * {@link Flight#complete(CachedContent)}, even if rendering failed.
+     */
+    public Flight begin(String key) {
+        CompletableFuture<CachedContent> future = new CompletableFuture<>();
+        CompletableFuture<CachedContent> existing = this.inFlight.putIfAbsent(key, future);
+        if (existing == null) {
+            return new Flight(key, future, true);
+        }
+        log.debug("COALESCED " + key);
+        return new Flight(key, existing, false);
+    }
+
+    /**
+     * A single request's part in a render.
+     */
+    public final class Flight {
+
+        private final String key;
+        private final CompletableFuture<CachedContent> future;
+        private final boolean leader;
+
+        private Flight(String key, CompletableFuture<CachedContent> future, boolean leader) {
+            this.key = key;
+            this.future = future;
+            this.leader = leader;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Wait for the leader to finish rendering.
+         *
+         * @return the rendered content, or null if the leader failed or didn't
+         *         finish in time, in which case the caller should render itself.
+         */
+        public CachedContent await() {
+            try {
+                return this.future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                log.debug("Timed out waiting for render of " + this.key);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                log.debug("Coalesced render failed for " + this.key, ex);
+            }
+            return null;
+        }
+
+        /**
+         * Publish the leader's content to everybody waiting for it.
+         *
+         * @param content the rendered content, or null if rendering failed
+         */
+        public void complete(CachedContent content) {
+            if (this.leader) {
+                inFlight.remove(this.key, this.future);
+                this.future.complete(content);
+            }
+        }
+    }
+
+}
@@ -26,6 +26,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshot;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshotCache;
 
 
 /**
@@ -57,6 +59,7 @@ public class WeblogRequest extends ParsedRequest {
     private String pathInfo = null;
     
     // heavyweight attributes
+    private WeblogSnapshot weblogSnapshot = null;
     private Weblog weblog = null;
     private Locale localeInstance = null;
     
@@ -181,9 +184,29 @@ public class WeblogRequest extends ParsedRequest {
         this.pathInfo = pathInfo;
     }
 
+    /**
+     * Get a snapshot of the weblog of this request from the shared cache,
+     * which is enough to tell whether it exists and when it was last modified
+     * without loading it.
+     *
+     * @return the snapshot, or null if there is no such visible weblog.
+     */
+    public WeblogSnapshot getWeblogSnapshot() {
+        
+        if(weblogSnapshot == null && weblogHandle != null) {
+            WeblogSnapshot snapshot = WeblogSnapshotCache.getInstance().get(weblogHandle);
+            if(snapshot != null && snapshot.isVisible()) {
+                weblogSnapshot = snapshot;
+            }
+        }
+        
+        return weblogSnapshot;
+    }
+    
     public Weblog getWeblog() {
         
-        if(weblog == null && weblogHandle != null) {
+        // no need to look up weblogs which are known not to exist
+        if(weblog == null && weblogHandle != null && getWeblogSnapshot() != null) {
             try {
                 weblog = WebloggerFactory.getWeblogger().getWeblogManager()
                         .getWeblogByHandle(weblogHandle, Boolean.TRUE);
@@ -217,7 +240,8 @@ public class WeblogRequest extends ParsedRequest {
                 localeInstance = new Locale(langCountry[0], langCountry[1]);
             }
         } else if(localeInstance == null) {
-            localeInstance = getWeblog().getLocaleInstance();
+            localeInstance = weblog != null
+                    ? weblog.getLocaleInstance() : getWeblogSnapshot().getLocaleInstance();
         }
         
         return localeInstance;
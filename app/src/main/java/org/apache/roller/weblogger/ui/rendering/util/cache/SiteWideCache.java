@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.ui.rendering.util.cache;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -44,6 +45,7 @@ import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
 
 
@@ -60,6 +62,8 @@ public final class SiteWideCache implements CacheHandler {
     
     // keep cached content
     private boolean cacheEnabled = true;
+    private boolean offHeap = false;
+    private boolean compress = false;
     private Cache contentCache = null;
     
     // keep a cached version of last expired time
@@ -72,6 +76,8 @@ public final class SiteWideCache implements CacheHandler {
     private SiteWideCache() {
         
         cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+        offHeap = WebloggerConfig.getBooleanProperty(CACHE_ID+".offHeap");
+        compress = WebloggerConfig.getBooleanProperty("compression.gzipResponse.enabled");
         
         Map<String, String> cacheProps = new HashMap<>();
         cacheProps.put("id", CACHE_ID);
@@ -126,6 +132,20 @@ public final class SiteWideCache implements CacheHandler {
             return;
         }
         
+        if (value instanceof CachedContent) {
+            CachedContent content = (CachedContent) value;
+            if (compress) {
+                try {
+                    content.compress();
+                } catch (IOException ex) {
+                    log.warn("Unable to compress content for "+key, ex);
+                }
+            }
+            if (offHeap) {
+                content.moveOffHeap();
+            }
+        }
+        
         contentCache.put(key, value);
         log.debug("PUT "+key);
     }
@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.ui.rendering.util.cache;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -31,6 +32,7 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
 
 
@@ -47,6 +49,8 @@ public final class WeblogFeedCache {
     
     // keep cached content
     private boolean cacheEnabled = true;
+    private boolean offHeap = false;
+    private boolean compress = false;
     private Cache contentCache = null;
     
     // reference to our singleton instance
@@ -56,6 +60,8 @@ public final class WeblogFeedCache {
     private WeblogFeedCache() {
         
         cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+        offHeap = WebloggerConfig.getBooleanProperty(CACHE_ID+".offHeap");
+        compress = WebloggerConfig.getBooleanProperty("compression.gzipResponse.enabled");
         
         Map<String, String> cacheProps = new HashMap<>();
         cacheProps.put("id", CACHE_ID);
@@ -114,12 +120,46 @@ public final class WeblogFeedCache {
     }
     
     
+    /**
+     * Get an entry even if it has been invalidated since it was cached, for
+     * when stale content is better than waiting for a fresh render.
+     */
+    public Object getStale(String key) {
+        
+        if (!cacheEnabled) {
+            return null;
+        }
+        
+        LazyExpiringCacheEntry lazyEntry = (LazyExpiringCacheEntry) this.contentCache.get(key);
+        if(lazyEntry != null) {
+            log.debug("HIT-STALE "+key);
+            return lazyEntry.getValue(Long.MIN_VALUE);
+        }
+        
+        return null;
+    }
+    
+    
     public void put(String key, Object value) {
         
         if (!cacheEnabled) {
             return;
         }
         
+        if (value instanceof CachedContent) {
+            CachedContent content = (CachedContent) value;
+            if (compress) {
+                try {
+                    content.compress();
+                } catch (IOException ex) {
+                    log.warn("Unable to compress content for "+key, ex);
+                }
+            }
+            if (offHeap) {
+                content.moveOffHeap();
+            }
+        }
+        
         contentCache.put(key, new LazyExpiringCacheEntry(value));
         log.debug("PUT "+key);
     }
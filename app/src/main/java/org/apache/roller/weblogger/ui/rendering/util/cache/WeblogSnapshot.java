@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.apache.roller.weblogger.pojos.Weblog;
+
+
+/**
+ * The attributes of a weblog needed to route and answer a request before the
+ * weblog itself is loaded, copied from a weblog at one point in time.
+ */
+public final class WeblogSnapshot {
+
+    private final String id;
+    private final String handle;
+    private final String editorTheme;
+    private final Locale localeInstance;
+    private final String timeZone;
+    private final boolean visible;
+    private final boolean active;
+    private final long lastModified;
+
+
+    public WeblogSnapshot(Weblog weblog) {
+        this.id = weblog.getId();
+        this.handle = weblog.getHandle();
+        this.editorTheme = weblog.getEditorTheme();
+        this.localeInstance = weblog.getLocaleInstance();
+        this.timeZone = weblog.getTimeZoneInstance().getID();
+        this.visible = Boolean.TRUE.equals(weblog.getVisible());
+        this.active = Boolean.TRUE.equals(weblog.getActive());
+        this.lastModified = weblog.getLastModified() != null ? weblog.getLastModified().getTime() : 0;
+    }
+
+
+    public String getId() {
+        return id;
+    }
+
+    public String getHandle() {
+        return handle;
+    }
+
+    public String getEditorTheme() {
+        return editorTheme;
+    }
+
+    public Locale getLocaleInstance() {
+        return localeInstance;
+    }
+
+    public TimeZone getTimeZoneInstance() {
+        return TimeZone.getTimeZone(timeZone);
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Last modified time of the weblog, or null if it was never set.
+     */
+    public Date getLastModified() {
+        return lastModified != 0 ? new Date(lastModified) : null;
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+
+
+/**
+ * Cache of weblog snapshots by handle, shared by all requests.
+ *
+ * Request mapping and the rendering servlets use snapshots to tell whether a
+ * weblog exists and when it was last modified, so that requests answered
+ * from a cache or with a 304 don't load the weblog.  Handles which don't
+ * belong to any weblog are remembered for a short while, so that requests
+ * for them don't reach the database either.
+ *
+ * Any change to a weblog or its contents changes its last modified time, so
+ * the snapshot of a weblog is dropped whenever the weblog or anything in it
+ * is invalidated through the {@link CacheManager}.  That only happens on the
+ * node making the change, other nodes of a cluster see it once their
+ * snapshot times out, which is why snapshots are kept for a few seconds only.
+ */
+public final class WeblogSnapshotCache implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(WeblogSnapshotCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.weblogsnapshot";
+
+    // value of unknown handles
+    private static final String NOT_FOUND = "NOT_FOUND";
+
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+
+    // how long unknown handles are remembered
+    private long negativeTimeout = 5 * RollerConstants.SEC_IN_MS;
+
+    // counts invalidations, so that a snapshot loaded while its weblog
+    // changed isn't cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // reference to our singleton instance
+    private static final WeblogSnapshotCache singletonInstance = new WeblogSnapshotCache();
+
+
+    private WeblogSnapshotCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+        negativeTimeout = WebloggerConfig.getIntProperty(CACHE_ID+".negativeTimeout", 5)
+                * (long) RollerConstants.SEC_IN_MS;
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(this, cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    public static WeblogSnapshotCache getInstance() {
+        return singletonInstance;
+    }
+
+
+    /**
+     * Get the snapshot of the weblog with the given handle, visible or not.
+     *
+     * @return the snapshot, or null if there is no such weblog or it could
+     *         not be looked up.
+     */
+    public WeblogSnapshot get(String handle) {
+
+        if (!StringUtils.isAlphanumeric(handle)) {
+            return null;
+        }
+
+        if (cacheEnabled) {
+            Object entry = contentCache.get(handle);
+            if (entry instanceof WeblogSnapshot) {
+                log.debug("HIT "+handle);
+                return (WeblogSnapshot) entry;
+            } else if (entry instanceof ExpiringCacheEntry
+                    && ((ExpiringCacheEntry) entry).getValue() != null) {
+                log.debug("HIT-NOT-FOUND "+handle);
+                return null;
+            }
+            log.debug("MISS "+handle);
+        }
+
+        long invalidationCount = invalidations.get();
+        Weblog weblog;
+        try {
+            weblog = WebloggerFactory.getWeblogger().getWeblogManager()
+                    .getWeblogByHandle(handle, null);
+        } catch (WebloggerException ex) {
+            // not remembered, it may work next time
+            log.error("Error looking up weblog "+handle, ex);
+            return null;
+        }
+
+        WeblogSnapshot snapshot = weblog != null ? new WeblogSnapshot(weblog) : null;
+        if (cacheEnabled && invalidationCount == invalidations.get()) {
+            if (snapshot != null) {
+                contentCache.put(handle, snapshot);
+            } else {
+                contentCache.put(handle, new ExpiringCacheEntry(NOT_FOUND, negativeTimeout));
+            }
+            log.debug("PUT "+handle);
+        }
+        return snapshot;
+    }
+
+
+    public void remove(String handle) {
+
+        invalidations.incrementAndGet();
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        contentCache.remove(handle);
+        log.debug("REMOVE "+handle);
+    }
+
+
+    public void clear() {
+
+        invalidations.incrementAndGet();
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        contentCache.clear();
+        log.debug("CLEAR");
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        invalidate(entry.getWebsite());
+    }
+
+
+    @Override
+    public void invalidate(Weblog website) {
+        if (website != null) {
+            remove(website.getHandle());
+        }
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        invalidate(bookmark.getWebsite());
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        invalidate(folder.getWeblog());
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        invalidate(comment.getWeblogEntry().getWebsite());
+    }
+
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        invalidate(category.getWeblog());
+    }
+
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        invalidate(template.getWeblog());
+    }
+
+}
@@ -25,8 +25,11 @@ import java.util.Properties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
 import org.apache.roller.weblogger.ui.core.RollerContext;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.apache.velocity.Template;
 import org.apache.velocity.app.VelocityEngine;
 
@@ -78,6 +81,14 @@ public class RollerVelocity {
             // init velocity with our properties
             velocityEngine.init(velocityProps);
             
+            // drop parsed custom templates when they are saved
+            CacheManager.registerHandler(new CacheHandler() {
+                @Override
+                public void invalidate(WeblogTemplate template) {
+                    invalidateTemplate(template.getId());
+                }
+            });
+            
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -94,6 +105,21 @@ public class RollerVelocity {
         return velocityEngine;
     }
     
+    /**
+     * Drop all parsed renditions of a template, so that they are loaded again
+     * the next time they are rendered.
+     */
+    public static void invalidateTemplate(String templateId) {
+        TemplateResourceCache.invalidateTemplate(templateId);
+    }
+    
+    /**
+     * Drop all parsed templates of a shared theme, e.g. after reloading it.
+     */
+    public static void invalidateTheme(String themeId) {
+        TemplateResourceCache.invalidateTheme(themeId);
+    }
+    
     /**
      * Convenience static method for looking up a template.
      * @throws org.apache.velocity.exception.ResourceNotFoundException,
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import java.util.function.Predicate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.ResourceCacheImpl;
+
+/**
+ * Velocity's cache of parsed templates, with a way to drop templates when
+ * they change.
+ *
+ * Custom templates from the database and shared theme templates can't tell
+ * Velocity that they were modified, so their loaders used to be uncached and
+ * every render re-read and re-parsed them.  Now they are cached like any
+ * other template and removed from here when a template is saved or a theme
+ * is reloaded, see {@link RollerVelocity#invalidateTemplate(String)}.
+ *
+ * Velocity keys resources by resource type followed by name, and our names
+ * are <code>&lt;template id&gt;|&lt;device type&gt;</code>, where theme
+ * template ids are <code>&lt;theme&gt;:&lt;template&gt;</code>.
+ */
+public class TemplateResourceCache extends ResourceCacheImpl {
+
+    private static final Log log = LogFactory.getLog(TemplateResourceCache.class);
+
+    // the cache of the engine, there is only one
+    private static volatile TemplateResourceCache instance = null;
+
+
+    @Override
+    public void initialize(RuntimeServices rs) {
+        super.initialize(rs);
+        instance = this;
+    }
+
+
+    /**
+     * Remove all renditions of the template with the given id.
+     */
+    static void invalidateTemplate(String templateId) {
+        remove(name -> name.equals(templateId) || name.startsWith(templateId + "|"));
+    }
+
+
+    /**
+     * Remove all templates of the theme with the given id.
+     */
+    static void invalidateTheme(String themeId) {
+        remove(name -> name.startsWith(themeId + ":"));
+    }
+
+
+    private static void remove(Predicate<String> names) {
+        TemplateResourceCache cache = instance;
+        if (cache == null) {
+            return;
+        }
+        // the LRU map is a synchronized map, which has to be locked to iterate
+        synchronized (cache.cache) {
+            cache.cache.keySet().removeIf(key -> {
+                String name = key.toString().substring(1);
+                if (names.test(name)) {
+                    log.debug("Removing parsed template " + name);
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+}
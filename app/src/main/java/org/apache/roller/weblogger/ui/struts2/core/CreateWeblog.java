@@ -33,6 +33,7 @@ import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogPermission;
 import org.apache.roller.weblogger.ui.struts2.util.UIAction;
 import org.apache.roller.weblogger.util.Utilities;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.apache.struts2.convention.annotation.AllowedMethods;
 import org.apache.struts2.interceptor.validation.SkipValidation;
 
@@ -144,6 +145,9 @@ public class CreateWeblog extends UIAction {
                 WebloggerFactory.getWeblogger().getWeblogManager().addWeblog(wd);
                 WebloggerFactory.getWeblogger().flush();
                 
+                // forget any earlier requests for the handle
+                CacheManager.invalidate(wd);
+                
                 // tell the user their weblog was created
                 addMessage("createWebsite.created", getBean().getHandle());
                 
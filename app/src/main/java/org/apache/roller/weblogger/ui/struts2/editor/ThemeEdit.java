@@ -137,6 +137,12 @@ public class ThemeEdit extends UIAction {
                         // keep the custom stylesheet.
                         boolean skipStylesheet = (sharedThemeCustomStylesheet && selectedThemeId.equals(weblog.getEditorTheme()));
                         themeMgr.importTheme(getActionWeblog(), t, skipStylesheet);
+                        
+                        // existing templates may have been overwritten by the import
+                        for (WeblogTemplate template : WebloggerFactory.getWeblogger()
+                                .getWeblogManager().getTemplates(weblog)) {
+                            CacheManager.invalidate(template);
+                        }
                         addMessage("themeEditor.setCustomTheme.success", t.getName());
                     }
                 } catch (Exception re) {
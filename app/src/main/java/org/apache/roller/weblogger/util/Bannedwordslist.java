@@ -33,12 +33,11 @@ import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.StringTokenizer;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.commons.lang3.StringUtils;
@@ -75,6 +74,9 @@ public final class Bannedwordslist {
     private Date lastModified = null;
     private final List<String> bannedwordslistStr = new ArrayList<>();
     private final List<Pattern> bannedwordslistRegex = new ArrayList<>();
+
+    // the rules above compiled for matching, rebuilt whenever they are loaded
+    private volatile BannedwordslistMatcher matcher = BannedwordslistMatcher.EMPTY;
     
     // setup our singleton at class loading time
     static {
@@ -210,7 +212,10 @@ public final class Bannedwordslist {
         }
         
         if (txtStream != null) {
+            bannedwordslistStr.clear();
+            bannedwordslistRegex.clear();
             readFromStream(txtStream, false);
+            matcher = new BannedwordslistMatcher(bannedwordslistStr, bannedwordslistRegex);
         } else {
             mLogger.error("Couldn't load a bannedwordslist file from anywhere, "
                         + "this means bannedwordslist checking is disabled for now.");
@@ -298,45 +303,40 @@ public final class Bannedwordslist {
      * Does the String argument match any of the rules in the built-in bannedwordslist?
      */
     public boolean isBannedwordslisted(String str) {
-        return isBannedwordslisted(str, null, null);
+        return matcher.matches(str);
     }
     
     /** 
      * Does the String argument match any of the rules in the built-in bannedwordslist
      * plus additional bannedwordslists provided by caller?
+     * @param str       String to be checked against bannedwordslist
+     * @param moreRules Additional rules to consider, compiled beforehand
+     */
+    public boolean isBannedwordslisted(String str, BannedwordslistMatcher moreRules) {
+        if (StringUtils.isEmpty(str)) {
+            return false;
+        }
+        return (moreRules != null && moreRules.matches(str)) || matcher.matches(str);
+    }
+    
+    /** 
+     * Does the String argument match any of the rules in the built-in bannedwordslist
+     * plus additional bannedwordslists provided by caller?
+     * The additional rules are compiled on each call, callers checking more than
+     * one string should compile them once into a BannedwordslistMatcher.
      * @param str             String to be checked against bannedwordslist
      * @param moreStringRules Additional string rules to consider
      * @param moreRegexRules  Additional regex rules to consider 
      */
     public boolean isBannedwordslisted(
          String str, List<String> moreStringRules, List<Pattern> moreRegexRules) {
-        if (str == null || StringUtils.isEmpty(str)) {
+        if (StringUtils.isEmpty(str)) {
             return false;
         }
-
-        // First iterate over bannedwordslist, doing indexOf.
-        // Then iterate over bannedwordslistRegex and test.
-        // As soon as there is a hit in either case return true
-        
-        // test plain String.indexOf
-        List<String> stringRules = bannedwordslistStr;
-        if (moreStringRules != null && !moreStringRules.isEmpty()) {
-            stringRules = new ArrayList<>();
-            stringRules.addAll(moreStringRules);
-            stringRules.addAll(bannedwordslistStr);
-        }
-        if (testStringRules(str, stringRules)) {
-            return true;
-        }
-        
-        // test regex bannedwordslisted
-        List<Pattern> regexRules = bannedwordslistRegex;
-        if (moreRegexRules != null && !moreRegexRules.isEmpty()) {
-            regexRules = new ArrayList<>();
-            regexRules.addAll(moreRegexRules);
-            regexRules.addAll(bannedwordslistRegex);
-        }
-        return testRegExRules(str, regexRules);
+        return matchesRulesOnly(str,
+                moreStringRules != null ? moreStringRules : Collections.emptyList(),
+                moreRegexRules != null ? moreRegexRules : Collections.emptyList())
+            || matcher.matches(str);
     }      
 
     /** 
@@ -347,80 +347,8 @@ public final class Bannedwordslist {
      */
     public static boolean matchesRulesOnly(
         String str, List<String> stringRules, List<Pattern> regexRules) {
-        return testStringRules(str, stringRules) || testRegExRules(str, regexRules);
+        return new BannedwordslistMatcher(stringRules, regexRules).matches(str);
     }
-        
-    /** Test String against the RegularExpression rules. */
-    private static boolean testRegExRules(String str, List<Pattern> regexRules) {
-        for (Pattern testPattern : regexRules) {
-            // want to see what it is matching on, but only in debug mode
-            if (mLogger.isDebugEnabled()) {
-                Matcher matcher = testPattern.matcher(str);
-                if (matcher.find()) {
-                    mLogger.debug(matcher.group()
-                            + " matched by " + testPattern.pattern());
-                    return true;
-                }
-            } else {
-                if (testPattern.matcher(str).find()) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Tests the source text against the String rules. Each String rule is
-     * first treated as a word-boundary, case insensitive regular expression.
-     * If a PatternSyntaxException is encountered, a simple contains test
-     * is performed.
-     *
-     * @param source The text in which to apply the matching rules.
-     * @param rules A list a simple matching rules.
-     *
-     * @return true if a match was found, otherwise false
-     */
-    private static boolean testStringRules(String source, List<String> rules) {
-        boolean matches = false;
-        
-        for (String rule : rules) {
-
-            try {
-                StringBuilder patternBuilder;
-                patternBuilder = new StringBuilder();
-                patternBuilder.append("\\b(");
-                patternBuilder.append(rule);
-                patternBuilder.append(")\\b");
-
-                Pattern pattern;
-                pattern = Pattern.compile(patternBuilder.toString(),
-                        Pattern.CASE_INSENSITIVE);
-
-                Matcher matcher;
-                matcher = pattern.matcher(source);
-
-                matches = matcher.find();
-                if (matches) {
-                    break;
-                }
-            }
-            catch (PatternSyntaxException e) {
-                matches = source.contains(rule);
-                if (matches) {
-                    break;
-                }
-            }
-            finally {
-                if (matches && mLogger.isDebugEnabled()) {
-                    // Log the matched rule in debug mode
-                    mLogger.debug("matched:" + rule + ":");
-                }
-            }
-        }
-        
-        return matches;
-    }   
     
     /** Utility method to populate lists based a bannedwordslist in string form */
     public static void populateSpamRules(
@@ -19,6 +19,9 @@ package org.apache.roller.weblogger.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -33,6 +36,9 @@ import org.apache.roller.weblogger.pojos.Weblog;
  */
 public final class BannedwordslistChecker {
 
+    // compiled weblog plus site rules, by weblog id
+    private static final Map<String, WeblogRules> WEBLOG_RULES = new ConcurrentHashMap<>();
+
     private BannedwordslistChecker() {
         // never instantiable
         throw new AssertionError();
@@ -66,15 +72,7 @@ public final class BannedwordslistChecker {
      */
     public static boolean checkReferrer(Weblog website, String referrerURL) {
         if (WebloggerConfig.getBooleanProperty("site.bannedwordslist.enable.referrers")) {
-            List<String> stringRules = new ArrayList<>();
-            List<Pattern> regexRules = new ArrayList<>();
-            Bannedwordslist.populateSpamRules(
-                website.getBannedwordslist(), stringRules, regexRules, null);
-            if (WebloggerRuntimeConfig.getProperty("spam.bannedwordslist") != null) {
-                Bannedwordslist.populateSpamRules(
-                    WebloggerRuntimeConfig.getProperty("spam.bannedwordslist"), stringRules, regexRules, null);
-            }
-            return Bannedwordslist.matchesRulesOnly(referrerURL, stringRules, regexRules);
+            return getWeblogRules(website).matches(referrerURL);
         }
         return false;
     }
@@ -85,20 +83,53 @@ public final class BannedwordslistChecker {
      */
     private static boolean testComment(WeblogEntryComment c) {
         boolean ret = false;
-        List<String> stringRules = new ArrayList<>();
-        List<Pattern> regexRules = new ArrayList<>();
-        Weblog website = c.getWeblogEntry().getWebsite();
-        Bannedwordslist.populateSpamRules(
-            website.getBannedwordslist(), stringRules, regexRules,
-            WebloggerRuntimeConfig.getProperty("spam.bannedwordslist"));
+        BannedwordslistMatcher rules = getWeblogRules(c.getWeblogEntry().getWebsite());
         Bannedwordslist bannedwordslist = Bannedwordslist.getBannedwordslist();
-        if (   bannedwordslist.isBannedwordslisted(c.getUrl(),     stringRules, regexRules)
-            || bannedwordslist.isBannedwordslisted(c.getEmail(),   stringRules, regexRules)
-            || bannedwordslist.isBannedwordslisted(c.getName(),    stringRules, regexRules)
-            || bannedwordslist.isBannedwordslisted(c.getContent(), stringRules, regexRules)) {
+        if (   bannedwordslist.isBannedwordslisted(c.getUrl(),     rules)
+            || bannedwordslist.isBannedwordslisted(c.getEmail(),   rules)
+            || bannedwordslist.isBannedwordslisted(c.getName(),    rules)
+            || bannedwordslist.isBannedwordslisted(c.getContent(), rules)) {
             ret = true;
         }
         return ret;
     }        
+
+    /**
+     * Get the website bannedwordslist together with the site bannedwordslist,
+     * compiled.  The compiled rules are kept until either list changes.
+     */
+    static BannedwordslistMatcher getWeblogRules(Weblog website) {
+        String weblogList = website.getBannedwordslist();
+        String siteList = WebloggerRuntimeConfig.getProperty("spam.bannedwordslist");
+
+        WeblogRules rules = (website.getId() != null) ? WEBLOG_RULES.get(website.getId()) : null;
+        if (rules == null || !rules.isFor(weblogList, siteList)) {
+            List<String> stringRules = new ArrayList<>();
+            List<Pattern> regexRules = new ArrayList<>();
+            Bannedwordslist.populateSpamRules(weblogList, stringRules, regexRules, siteList);
+            rules = new WeblogRules(weblogList, siteList,
+                    new BannedwordslistMatcher(stringRules, regexRules));
+            if (website.getId() != null) {
+                WEBLOG_RULES.put(website.getId(), rules);
+            }
+        }
+        return rules.matcher;
+    }
+
+    private static final class WeblogRules {
+        private final String weblogList;
+        private final String siteList;
+        private final BannedwordslistMatcher matcher;
+
+        WeblogRules(String weblogList, String siteList, BannedwordslistMatcher matcher) {
+            this.weblogList = weblogList;
+            this.siteList = siteList;
+            this.matcher = matcher;
+        }
+
+        boolean isFor(String weblogList, String siteList) {
+            return Objects.equals(this.weblogList, weblogList) && Objects.equals(this.siteList, siteList);
+        }
+    }
 }
 
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A set of bannedwordslist rules compiled for matching, built once when the
+ * rules are loaded and then shared by any number of threads.
+ * <br />
+ * String rules match as case insensitive, whole word regular expressions
+ * (i.e. <code>\b(rule)\b</code>), and if a rule isn't a valid regular
+ * expression it must be contained as is.  Regex rules match anywhere.
+ * <br />
+ * String rules without any regex syntax, which are most of them, are all
+ * found in a single pass with an Aho-Corasick automaton, only the places it
+ * finds are then checked for word boundaries.  Rules whose only regex syntax
+ * is '.', like domain names, go into the same automaton by their longest
+ * literal part, and their pattern is only tried if that part was found.
+ * Regex rules are combined into one alternation so that a string is scanned
+ * once rather than once per rule.
+ */
+public final class BannedwordslistMatcher {
+
+    private static final Log mLogger = LogFactory.getLog(BannedwordslistMatcher.class);
+
+    /** Matcher without any rules. */
+    public static final BannedwordslistMatcher EMPTY =
+            new BannedwordslistMatcher(Collections.emptyList(), Collections.emptyList());
+
+    // characters which make a string rule more than a literal
+    private static final String REGEX_CHARS = "\\[](){}.*+?^$|";
+
+    // string rules found with the automaton, by the literal it looks for,
+    // and the patterns which confirm them
+    private final List<String> literals = new ArrayList<>();
+    private final List<Pattern> literalPatterns = new ArrayList<>();
+    private final List<Boolean> literalIsRule = new ArrayList<>();
+    private final Automaton automaton;
+
+    // string rules with regex syntax, and those which aren't valid regexes
+    private final List<Pattern> stringPatterns = new ArrayList<>();
+    private final List<String> containsRules = new ArrayList<>();
+
+    // regex rules, combined where possible
+    private final Pattern combinedRegex;
+    private final List<Pattern> regexRules = new ArrayList<>();
+    private final List<Pattern> separateRegexRules = new ArrayList<>();
+
+
+    public BannedwordslistMatcher(List<String> stringRules, List<Pattern> regexRules) {
+
+        for (String rule : stringRules) {
+            if (StringUtils.isEmpty(rule)) {
+                continue;
+            }
+            if (!StringUtils.containsAny(rule, REGEX_CHARS)) {
+                literals.add(rule);
+                literalPatterns.add(wordPattern(rule));
+                literalIsRule.add(Boolean.TRUE);
+
+            } else if (StringUtils.containsNone(rule.replace('.', 'x'), REGEX_CHARS)) {
+                // every part between the dots has to be there for a match
+                String longest = "";
+                for (String part : StringUtils.split(rule, '.')) {
+                    if (part.length() > longest.length()) {
+                        longest = part;
+                    }
+                }
+                if (longest.isEmpty()) {
+                    stringPatterns.add(wordPattern(rule));
+                } else {
+                    literals.add(longest);
+                    literalPatterns.add(wordPattern(rule));
+                    literalIsRule.add(Boolean.FALSE);
+                }
+
+            } else {
+                try {
+                    stringPatterns.add(wordPattern(rule));
+                } catch (PatternSyntaxException e) {
+                    containsRules.add(rule);
+                }
+            }
+        }
+        this.automaton = new Automaton(literals);
+
+        this.regexRules.addAll(regexRules);
+        this.combinedRegex = combine(regexRules, separateRegexRules);
+    }
+
+
+    /**
+     * Does the string match any of the rules?
+     */
+    public boolean matches(String str) {
+
+        if (StringUtils.isEmpty(str)) {
+            return false;
+        }
+
+        return matchesLiterals(str) || matchesStringPatterns(str) || matchesRegexRules(str);
+    }
+
+
+    public boolean isEmpty() {
+        return literals.isEmpty() && stringPatterns.isEmpty() && containsRules.isEmpty()
+                && regexRules.isEmpty();
+    }
+
+
+    private boolean matchesLiterals(String str) {
+
+        if (literals.isEmpty()) {
+            return false;
+        }
+
+        BitSet tried = null;
+        int state = 0;
+        for (int i = 0; i < str.length(); i++) {
+            state = automaton.next(state, Character.toLowerCase(str.charAt(i)));
+            for (int rule : automaton.outputs[state]) {
+                Matcher matcher = literalPatterns.get(rule).matcher(str);
+                boolean matches;
+
+                if (literalIsRule.get(rule)) {
+                    // look outside of the region for the word boundaries
+                    matcher.region(i + 1 - literals.get(rule).length(), i + 1);
+                    matcher.useTransparentBounds(true);
+                    matcher.useAnchoringBounds(false);
+                    matches = matcher.matches();
+                } else {
+                    // only part of the rule was found, try the whole rule once
+                    if (tried == null) {
+                        tried = new BitSet(literals.size());
+                    }
+                    if (tried.get(rule)) {
+                        continue;
+                    }
+                    tried.set(rule);
+                    matches = matcher.find();
+                }
+
+                if (matches) {
+                    mLogger.debug("matched:" + literalPatterns.get(rule).pattern() + ":");
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private boolean matchesStringPatterns(String str) {
+
+        for (Pattern pattern : stringPatterns) {
+            if (pattern.matcher(str).find()) {
+                mLogger.debug("matched:" + pattern.pattern() + ":");
+                return true;
+            }
+        }
+        for (String rule : containsRules) {
+            if (str.contains(rule)) {
+                mLogger.debug("matched:" + rule + ":");
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private boolean matchesRegexRules(String str) {
+
+        boolean matches = (combinedRegex != null && combinedRegex.matcher(str).find());
+        if (!matches) {
+            for (Pattern pattern : separateRegexRules) {
+                if (pattern.matcher(str).find()) {
+                    matches = true;
+                    break;
+                }
+            }
+        }
+
+        // want to see what it is matching on, but only in debug mode
+        if (matches && mLogger.isDebugEnabled()) {
+            for (Pattern pattern : regexRules) {
+                Matcher matcher = pattern.matcher(str);
+                if (matcher.find()) {
+                    mLogger.debug(matcher.group() + " matched by " + pattern.pattern());
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+
+    private static Pattern wordPattern(String rule) {
+        return Pattern.compile("\\b(" + rule + ")\\b", Pattern.CASE_INSENSITIVE);
+    }
+
+
+    /**
+     * Combine regex rules into a single alternation.  Rules with flags, back
+     * references or quoting can't be safely wrapped and are left separate.
+     */
+    private static Pattern combine(List<Pattern> rules, List<Pattern> separate) {
+
+        StringBuilder combined = new StringBuilder();
+        List<Pattern> combinable = new ArrayList<>();
+        for (Pattern rule : rules) {
+            String regex = rule.pattern();
+            if (rule.flags() != 0 || regex.contains("\\Q") || regex.matches("(?s).*\\\\([1-9]|k<).*")) {
+                separate.add(rule);
+            } else {
+                if (combined.length() > 0) {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(regex).append(')');
+                combinable.add(rule);
+            }
+        }
+
+        if (combinable.isEmpty()) {
+            return null;
+        }
+        try {
+            return Pattern.compile(combined.toString());
+        } catch (PatternSyntaxException e) {
+            mLogger.warn("Unable to combine bannedwordslist regex rules", e);
+            separate.addAll(combinable);
+            return null;
+        }
+    }
+
+
+    /**
+     * Aho-Corasick automaton over lower cased literals.
+     */
+    private static final class Automaton {
+
+        private static final int[] NONE = new int[0];
+
+        // transitions of each state, sorted by character
+        private final char[][] chars;
+        private final int[][] targets;
+        private final int[] failure;
+        private final int[][] outputs;
+
+        Automaton(List<String> literals) {
+
+            // build the trie
+            List<Map<Character, Integer>> trie = new ArrayList<>();
+            List<List<Integer>> found = new ArrayList<>();
+            trie.add(new HashMap<>());
+            found.add(new ArrayList<>());
+
+            for (int i = 0; i < literals.size(); i++) {
+                String literal = literals.get(i);
+                int state = 0;
+                for (int j = 0; j < literal.length(); j++) {
+                    char c = Character.toLowerCase(literal.charAt(j));
+                    Integer next = trie.get(state).get(c);
+                    if (next == null) {
+                        next = trie.size();
+                        trie.get(state).put(c, next);
+                        trie.add(new HashMap<>());
+                        found.add(new ArrayList<>());
+                    }
+                    state = next;
+                }
+                found.get(state).add(i);
+            }
+
+            int size = trie.size();
+            chars = new char[size][];
+            targets = new int[size][];
+            for (int state = 0; state < size; state++) {
+                Character[] keys = trie.get(state).keySet().toArray(new Character[0]);
+                Arrays.sort(keys);
+                chars[state] = new char[keys.length];
+                targets[state] = new int[keys.length];
+                for (int k = 0; k < keys.length; k++) {
+                    chars[state][k] = keys[k];
+                    targets[state][k] = trie.get(state).get(keys[k]);
+                }
+            }
+
+            // failure links in breadth first order, so that a state's outputs
+            // include those of the longest suffix that is also in the trie
+            failure = new int[size];
+            outputs = new int[size][];
+            outputs[0] = NONE;
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int target : targets[0]) {
+                failure[target] = 0;
+                queue.add(target);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.remove();
+                List<Integer> out = new ArrayList<>(found.get(state));
+                for (int rule : outputs[failure[state]]) {
+                    out.add(rule);
+                }
+                outputs[state] = out.isEmpty() ? NONE : out.stream().mapToInt(Integer::intValue).toArray();
+
+                for (int k = 0; k < chars[state].length; k++) {
+                    int target = targets[state][k];
+                    failure[target] = next(failure[state], chars[state][k]);
+                    queue.add(target);
+                }
+            }
+        }
+
+        int next(int state, char c) {
+            while (true) {
+                int k = Arrays.binarySearch(chars[state], c);
+                if (k >= 0) {
+                    return targets[state][k];
+                }
+                if (state == 0) {
+                    return 0;
+                }
+                state = failure[state];
+            }
+        }
+    }
+
+}
@@ -38,39 +38,50 @@
  WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 
+
 package org.apache.roller.weblogger.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.validator.routines.UrlValidator;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 
+/**
+ * Sanitizes html against an allow list of tags and attributes.
+ * <br />
+ * The html is tokenized and checked in a single pass over the string, and
+ * the sanitized html is written straight to the output, so conditionally
+ * sanitizing rendered content doesn't go through a regex per token nor
+ * rebuild a string per tag.
+ */
 public class HTMLSanitizer {
     public static Boolean xssEnabled = WebloggerConfig.getBooleanProperty("weblogAdminsUntrusted", Boolean.FALSE);
 
     public static Pattern forbiddenTags = Pattern.compile("^(script|object|embed|link|style|form|input)$");
     public static Pattern allowedTags = Pattern.compile("^(b|p|i|s|a|img|table|thead|tbody|tfoot|tr|th|td|dd|dl|dt|em|h1|h2|h3|h4|h5|h6|li|ul|ol|span|div|strike|strong|"
             + "sub|sup|pre|del|code|blockquote|kbd|br|hr|area|map|object|embed|param|link|form|small|big)$");
-    // <!--.........>
-    private static final Pattern commentPattern = Pattern.compile("<!--.*");
-    // <tag ....props.....>
-    private static final Pattern tagStartPattern = Pattern.compile("<(?i)(\\w+\\b)\\s*(.*)/?>$");
-    // </tag .........>
-    private static final Pattern tagClosePattern = Pattern.compile("</(?i)(\\w+\\b)\\s*>$");
-    private static final Pattern standAloneTags = Pattern.compile("^(img|br|hr)$");
-    private static final Pattern selfClosed = Pattern.compile("<.+/>");
-    // prop="...."
-    private static final Pattern attributesPattern = Pattern.compile("(\\w*)\\s*=\\s*\"([^\"]*)\"");
-    // color:red;
-    private static final Pattern stylePattern = Pattern.compile("([^\\s^:]+)\\s*:\\s*([^;]+);?");
+
+    // the default tags above, looked up in sets as long as they aren't replaced
+    private static final Pattern DEFAULT_FORBIDDEN_TAGS = forbiddenTags;
+    private static final Pattern DEFAULT_ALLOWED_TAGS = allowedTags;
+    private static final Set<String> FORBIDDEN_TAG_SET = Set.of("script", "object", "embed", "link", "style", "form", "input");
+    private static final Set<String> ALLOWED_TAG_SET = Set.of("b", "p", "i", "s", "a", "img", "table", "thead", "tbody", "tfoot",
+            "tr", "th", "td", "dd", "dl", "dt", "em", "h1", "h2", "h3", "h4", "h5", "h6", "li", "ul", "ol", "span", "div", "strike",
+            "strong", "sub", "sup", "pre", "del", "code", "blockquote", "kbd", "br", "hr", "area", "map", "object", "embed",
+            "param", "link", "form", "small", "big");
+
     // url('....')"
     private static final Pattern urlStylePattern = Pattern.compile("(?i).*\\b\\s*url\\s*\\(['\"]([^)]*)['\"]\\)");
     // expression(....)"   thanks to Ben Summer
     private static final Pattern forbiddenStylePattern = Pattern.compile("(?:(expression|eval|javascript))\\s*\\(");
 
+    private static final UrlValidator urlValidator = new UrlValidator(new String[]{"http", "https"});
+
     /**
      * This method should be used to test input.
      *
@@ -88,7 +99,32 @@ public class HTMLSanitizer {
      * @return sanitized html
      */
     public static String sanitize(String html) {
-        return sanitizer(html).html;
+        // nothing to encode or check, so nothing to copy
+        if (isPlainText(html)) {
+            return html;
+        }
+        StringBuilder out = new StringBuilder(html.length() + 16);
+        try {
+            sanitize(html, allowedTags, forbiddenTags, out, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the sanitized html to out, the same as sanitize(html) returns,
+     * without collecting the text, source and invalid tags.
+     *
+     * @param html
+     * @param out where to write the sanitized html
+     */
+    public static void sanitize(String html, Appendable out) throws IOException {
+        if (isPlainText(html)) {
+            out.append(html);
+        } else {
+            sanitize(html, allowedTags, forbiddenTags, out, null);
+        }
     }
 
     public static String conditionallySanitize(String ret) {
@@ -121,321 +157,592 @@ public class HTMLSanitizer {
 
     public static SanitizeResult sanitizer(String html, Pattern allowedTags, Pattern forbiddenTags) {
         SanitizeResult ret = new SanitizeResult();
-        Stack<String> openTags = new Stack<>();
-
+        StringBuilder out = new StringBuilder(html.length() + 16);
+        try {
+            sanitize(html, allowedTags, forbiddenTags, out, ret);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ret.html = out.toString();
+        return ret;
+    }
 
-        List<String> tokens = tokenize(html);
+    /**
+     * Tokenizes the html into comments <!-- ... -->, tags <......> and the
+     * text between them, and sanitizes each token as it is found.
+     *
+     * @param ret if not null, also gets the text, source and invalid tags
+     */
+    private static void sanitize(String html, Pattern allowedTags, Pattern forbiddenTags,
+            Appendable out, SanitizeResult ret) throws IOException {
 
-        // -------------------   LOOP for every token --------------------------
-        for (String token : tokens) {
-            boolean isAcceptedToken = false;
+        Tokens tokens = new Tokens(html, allowedTags, forbiddenTags, out, ret);
+        int pos = 0;
+        int len = html.length();
+        while (pos < len) {
+            int end;
+            if (html.startsWith("<!--", pos)) {
+                // a comment is starting, search the end of <!-- ...... -->
+                end = moveToMarkerEnd(pos, "-->", html);
+                tokens.comment(html.substring(pos, end));
+            } else if (html.charAt(pos) == '<') {
+                // a new "<" token is starting, search the end of <......>
+                end = moveToMarkerEnd(pos, ">", html);
+                tokens.tag(html.substring(pos, end));
+            } else {
+                end = html.indexOf('<', pos);
+                if (end < 0) {
+                    end = len;
+                }
+                tokens.text(html, pos, end);
+            }
+            pos = end;
+        }
+        tokens.closeOpenTags();
+    }
 
-            Matcher startMatcher = tagStartPattern.matcher(token);
-            Matcher endMatcher = tagClosePattern.matcher(token);
+    private static int moveToMarkerEnd(int pos, String marker, String s) {
+        int i = s.indexOf(marker, pos);
+        if (i > -1) {
+            pos = i + marker.length();
+        } else {
+            pos = s.length();
+        }
+        return pos;
+    }
 
+    /**
+     * True if there is nothing in the html to check or encode.
+     */
+    private static boolean isPlainText(String html) {
+        for (int i = 0; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (c == '<' || c == '>' || c == '"' || c == '\'') {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            //--------------------------------------------------------------------------------  COMMENT    <!-- ......... -->
-            if (commentPattern.matcher(token).find()) {
-                ret.val = ret.val + token + (token.endsWith("-->") ? "" : "-->");
-                ret.invalidTags.add(token + (token.endsWith("-->") ? "" : "-->"));
-                continue;
+    /**
+     * Sanitizes the tokens of one html string, in order.
+     */
+    private static final class Tokens {
+
+        private final Pattern allowedTags;
+        private final Pattern forbiddenTags;
+        private final Appendable html;
+        private final SanitizeResult ret;
+        // only when collecting a result
+        private final StringBuilder text;
+        private final StringBuilder val;
+        private final List<String> openTags = new ArrayList<>();
+
+        Tokens(String source, Pattern allowedTags, Pattern forbiddenTags, Appendable html, SanitizeResult ret) {
+            this.allowedTags = allowedTags;
+            this.forbiddenTags = forbiddenTags;
+            this.html = html;
+            this.ret = ret;
+            this.text = ret != null ? new StringBuilder(source.length()) : null;
+            this.val = ret != null ? new StringBuilder(source.length()) : null;
+        }
 
+        /**
+         * <!--.........>
+         */
+        void comment(String token) {
+            if (ret != null) {
+                String comment = token + (token.endsWith("-->") ? "" : "-->");
+                val.append(comment);
+                ret.invalidTags.add(comment);
+            }
+        }
 
-                //--------------------------------------------------------------------------------  OPEN TAG    <tag .........>
-            } else if (startMatcher.find()) {
+        /**
+         * Text between tags, always encoded.
+         */
+        void text(String source, int start, int end) throws IOException {
+            if (val != null) {
+                val.append(source, start, end);
+                appendEncoded(text, source, start, end, true);
+            }
+            appendEncoded(html, source, start, end, false);
+        }
 
-                //tag name extraction
-                String tag = startMatcher.group(1).toLowerCase();
+        /**
+         * <tag .........> or </tag .........>
+         */
+        void tag(String token) throws IOException {
 
+            // a tag with a comment in it is taken as a comment
+            if (token.indexOf("<!--", 1) >= 0) {
+                comment(token);
+                return;
+            }
 
-                //-----------------------------------------------------  FORBIDDEN TAG   <script .........>
-                if (forbiddenTags.matcher(tag).find()) {
-                    ret.invalidTags.add("<" + tag + ">");
-                    continue;
+            String cleanToken = null;
+            boolean isAcceptedToken = false;
 
+            // <tag ....props.....>, or </tag .........>
+            int start = -1;
+            int close = -1;
+            for (int i = 0; i >= 0 && start < 0; i = token.indexOf('<', i + 1)) {
+                if (startTagBody(token, i) >= 0) {
+                    start = i;
+                }
+            }
+            for (int i = 0; i >= 0 && start < 0 && close < 0; i = token.indexOf('<', i + 1)) {
+                if (isCloseTag(token, i)) {
+                    close = i;
+                }
+            }
 
-                    // --------------------------------------------------  WELL KNOWN TAG
-                } else if (allowedTags.matcher(tag).find()) {
+            //--------------------------------------------------------------------------------  OPEN TAG    <tag .........>
+            if (start >= 0) {
 
+                //tag name extraction
+                int nameEnd = wordEnd(token, start + 1);
+                String tag = token.substring(start + 1, nameEnd).toLowerCase();
 
-                    String cleanToken = "<" + tag;
-                    String tokenBody = startMatcher.group(2);
+                //-----------------------------------------------------  FORBIDDEN TAG   <script .........>
+                if (isForbidden(tag)) {
+                    invalid("<", tag, ">");
+                    return;
 
+                    // --------------------------------------------------------------------------------  UNKNOWN TAG
+                } else if (!isAllowed(tag)) {
+                    invalid(token);
+                    if (val != null) {
+                        val.append(token);
+                    }
+                    return;
+                }
 
-                    //first test table consistency
-                    //table tbody tfoot thead th tr td
-                    if ("thead".equals(tag) || "tbody".equals(tag) || "tfoot".equals(tag) || "tr".equals(tag)) {
-                        if (openTags.search("table") < 1) {
-                            ret.invalidTags.add("<" + tag + ">");
-                            continue;
-                        }
-                    } else if (("td".equals(tag) || "th".equals(tag)) && openTags.search("tr") < 1) {
-                        ret.invalidTags.add("<" + tag + ">");
-                        continue;
+                //first test table consistency
+                //table tbody tfoot thead th tr td
+                if ("thead".equals(tag) || "tbody".equals(tag) || "tfoot".equals(tag) || "tr".equals(tag)) {
+                    if (!openTags.contains("table")) {
+                        invalid("<", tag, ">");
+                        return;
                     }
+                } else if (("td".equals(tag) || "th".equals(tag)) && !openTags.contains("tr")) {
+                    invalid("<", tag, ">");
+                    return;
+                }
 
+                // then test properties
+                StringBuilder clean = new StringBuilder(token.length()).append('<').append(tag);
+                boolean foundURL = attributes(tag, token, startTagBody(token, start), token.length() - 1, clean);
+                clean.append('>');
 
-                    // then test properties
-                    Matcher attributes = attributesPattern.matcher(tokenBody);
-
-                    // URL flag
-                    boolean foundURL = false;
-                    while (attributes.find()) {
-
-                        String attr = attributes.group(1).toLowerCase();
-                        String val = attributes.group(2);
-
-                        // we will accept href in case of <A>
-                        // <a href="......">
-                        if ("a".equals(tag) && "href".equals(attr)) {
-                            String[] customSchemes = {"http", "https"};
-                            if (new UrlValidator(customSchemes).isValid(val)) {
-                                foundURL = true;
-                            } else {
-                                // may be it is a mailto?
-                                // case <a href="mailto:pippo@pippo.com?subject=...."
-                                if (val.toLowerCase().startsWith("mailto:") && val.indexOf('@') >= 0) {
-                                    String val1 = "http://www." + val.substring(val.indexOf('@') + 1);
-                                    if (new UrlValidator(customSchemes).isValid(val1)) {
-                                        foundURL = true;
-                                    } else {
-                                        ret.invalidTags.add(attr + " " + val);
-                                        val = "";
-                                    }
-                                } else {
-                                    ret.invalidTags.add(attr + " " + val);
-                                    val = "";
-                                }
-                            }
-
-                        } else if (tag.matches("img|embed") && "src".equals(attr)) {
-                            // <img src="......">
-                            String[] customSchemes = {"http", "https"};
-                            if (new UrlValidator(customSchemes).isValid(val)) {
-                                foundURL = true;
-                            } else {
-                                ret.invalidTags.add(attr + " " + val);
-                                val = "";
-                            }
-                        } else if ("href".equals(attr) || "src".equals(attr)) {
-                            // <tag src/href="......">   skipped
-                            ret.invalidTags.add(tag + " " + attr + " " + val);
-                            continue;
-                        } else if (attr.matches("width|height")) {
-                            // <tag width/height="......">
-                            if (!val.toLowerCase().matches("\\d+%|\\d+$")) {
-                                // test numeric values
-                                ret.invalidTags.add(tag + " " + attr + " " + val);
-                                continue;
-                            }
-
-                        } else if ("style".equals(attr)) {
-                            // <tag style="......">
-                            // then test properties
-                            Matcher styles = stylePattern.matcher(val);
-                            String cleanStyle = "";
-
-                            while (styles.find()) {
-                                String styleName = styles.group(1).toLowerCase();
-                                String styleValue = styles.group(2);
-
-                                // suppress invalid styles values
-                                if (forbiddenStylePattern.matcher(styleValue).find()) {
-                                    ret.invalidTags.add(tag + " " + attr + " " + styleValue);
-                                    continue;
-                                }
-
-                                // check if valid url
-                                Matcher urlStyleMatcher = urlStylePattern.matcher(styleValue);
-                                if (urlStyleMatcher.find()) {
-                                    String[] customSchemes = {"http", "https"};
-                                    String url = urlStyleMatcher.group(1);
-                                    if (!new UrlValidator(customSchemes).isValid(url)) {
-                                        ret.invalidTags.add(tag + " " + attr + " " + styleValue);
-                                        continue;
-                                    }
-                                }
-
-                                cleanStyle = cleanStyle + styleName + ":" + encode(styleValue) + ";";
-
-                            }
-                            val = cleanStyle;
-
-                        } else if (attr.startsWith("on")) {
-                            // skip all javascript events
-                            ret.invalidTags.add(tag + " " + attr + " " + val);
-                            continue;
+                isAcceptedToken = true;
+                cleanToken = clean.toString();
 
-                        } else {
-                            // by default encode all properties
-                            val = encode(val);
-                        }
+                // for <img> and <a>
+                if (("a".equals(tag) || "img".equals(tag) || "embed".equals(tag)) && !foundURL) {
+                    isAcceptedToken = false;
+                    cleanToken = "";
+                }
+
+                // push the tag if require closure and it is accepted (otherwise is encoded)
+                if (isAcceptedToken && !("img".equals(tag) || "br".equals(tag) || "hr".equals(tag))) {
+                    openTags.add(tag);
+                }
 
-                        cleanToken = cleanToken + " " + attr + "=\"" + val + "\"";
+                // --------------------------------------------------------------------------------  CLOSE TAG </tag>
+            } else if (close >= 0) {
+                String tag = token.substring(close + 2, wordEnd(token, close + 2)).toLowerCase();
+
+                if (isForbidden(tag)) {
+                    invalid("/", tag, "");
+                    return;
+                }
+                if (!isAllowed(tag)) {
+                    invalid(token);
+                    if (val != null) {
+                        val.append(token);
                     }
-                    cleanToken = cleanToken + ">";
+                    return;
+                }
 
+                // check tag position in the stack, and if found pop all
+                // elements before tag and close it
+                StringBuilder clean = new StringBuilder();
+                int pos = openTags.lastIndexOf(tag);
+                if (pos >= 0) {
+                    for (int i = openTags.size() - 1; i >= pos; i--) {
+                        clean.append("</").append(openTags.remove(i)).append('>');
+                    }
                     isAcceptedToken = true;
+                }
+                cleanToken = clean.toString();
+            }
 
-                    // for <img> and <a>
-                    if (tag.matches("a|img|embed") && !foundURL) {
-                        isAcceptedToken = false;
-                        cleanToken = "";
-                    }
+            // neither an open nor a close tag, encoded as text
+            if (cleanToken == null) {
+                cleanToken = token;
+            }
 
-                    token = cleanToken;
+            if (val != null) {
+                val.append(cleanToken);
+            }
+            if (isAcceptedToken) {
+                html.append(cleanToken);
+            } else if (!cleanToken.isEmpty()) {
+                appendEncoded(html, cleanToken, 0, cleanToken.length(), false);
+                if (text != null) {
+                    appendEncoded(text, cleanToken, 0, cleanToken.length(), true);
+                }
+            }
+        }
 
+        /**
+         * Checks the attributes prop="...." in token[from, to) and appends
+         * the accepted ones to the clean tag.
+         *
+         * @return true if a valid url was found
+         */
+        private boolean attributes(String tag, String token, int from, int to, StringBuilder clean) {
+            boolean foundURL = false;
+
+            int pos = from;
+            while (true) {
+                // first = followed by a quoted value
+                int valueStart = -1;
+                int valueEnd = -1;
+                int eq = indexOf(token, '=', pos, to);
+                while (eq >= 0) {
+                    int q = eq + 1;
+                    while (q < to && isSpace(token.charAt(q))) {
+                        q++;
+                    }
+                    if (q < to && token.charAt(q) == '"') {
+                        valueEnd = indexOf(token, '"', q + 1, to);
+                        if (valueEnd >= 0) {
+                            valueStart = q + 1;
+                            break;
+                        }
+                    }
+                    eq = indexOf(token, '=', eq + 1, to);
+                }
+                if (eq < 0) {
+                    break;
+                }
 
-                    // push the tag if require closure and it is accepted (otherwise is encoded)
-                    if (isAcceptedToken && !(standAloneTags.matcher(tag).find() || selfClosed.matcher(tag).find())) {
-                        openTags.push(tag);
+                // and the name in front of it
+                int nameEnd = eq;
+                while (nameEnd > pos && isSpace(token.charAt(nameEnd - 1))) {
+                    nameEnd--;
+                }
+                int nameStart = nameEnd;
+                while (nameStart > pos && isWord(token.charAt(nameStart - 1))) {
+                    nameStart--;
+                }
+                pos = valueEnd + 1;
+
+                String attr = token.substring(nameStart, nameEnd).toLowerCase();
+                String val = token.substring(valueStart, valueEnd);
+
+                // we will accept href in case of <A>
+                // <a href="......">
+                if ("a".equals(tag) && "href".equals(attr)) {
+                    if (urlValidator.isValid(val)) {
+                        foundURL = true;
+                    } else {
+                        // may be it is a mailto?
+                        // case <a href="mailto:pippo@pippo.com?subject=...."
+                        if (val.toLowerCase().startsWith("mailto:") && val.indexOf('@') >= 0
+                                && urlValidator.isValid("http://www." + val.substring(val.indexOf('@') + 1))) {
+                            foundURL = true;
+                        } else {
+                            invalid(attr, " ", val);
+                            val = "";
+                        }
                     }
 
-                    // --------------------------------------------------------------------------------  UNKNOWN TAG
-                } else {
-                    ret.invalidTags.add(token);
-                    ret.val = ret.val + token;
+                } else if (("img".equals(tag) || "embed".equals(tag)) && "src".equals(attr)) {
+                    // <img src="......">
+                    if (urlValidator.isValid(val)) {
+                        foundURL = true;
+                    } else {
+                        invalid(attr, " ", val);
+                        val = "";
+                    }
+                } else if ("href".equals(attr) || "src".equals(attr)) {
+                    // <tag src/href="......">   skipped
+                    invalid(tag, " " + attr + " ", val);
                     continue;
+                } else if ("width".equals(attr) || "height".equals(attr)) {
+                    // <tag width/height="......">
+                    if (!isDimension(val)) {
+                        // test numeric values
+                        invalid(tag, " " + attr + " ", val);
+                        continue;
+                    }
 
+                } else if ("style".equals(attr)) {
+                    // <tag style="......">
+                    val = style(tag, attr, val);
 
+                } else if (attr.startsWith("on")) {
+                    // skip all javascript events
+                    invalid(tag, " " + attr + " ", val);
+                    continue;
+
+                } else {
+                    // by default encode all properties
+                    val = encode(val);
                 }
 
-                // --------------------------------------------------------------------------------  CLOSE TAG </tag>
-            } else if (endMatcher.find()) {
-                String tag = endMatcher.group(1).toLowerCase();
+                clean.append(' ').append(attr).append("=\"").append(val).append('"');
+            }
+            return foundURL;
+        }
 
-                //is self closing
-                if (selfClosed.matcher(tag).find()) {
-                    ret.invalidTags.add(token);
+        /**
+         * Keeps the accepted properties color:red; of a style attribute.
+         */
+        private String style(String tag, String attr, String style) {
+            StringBuilder cleanStyle = new StringBuilder();
+
+            int len = style.length();
+            int pos = 0;
+            while (pos < len) {
+                // name, which can't contain spaces, ^ or :
+                if (!isStyleName(style.charAt(pos))) {
+                    pos++;
                     continue;
                 }
-                if (forbiddenTags.matcher(tag).find()) {
-                    ret.invalidTags.add("/" + tag);
-                    continue;
+                int nameEnd = pos;
+                while (nameEnd < len && isStyleName(style.charAt(nameEnd))) {
+                    nameEnd++;
                 }
-                if (!allowedTags.matcher(tag).find()) {
-                    ret.invalidTags.add(token);
-                    ret.val = ret.val + token;
+                int colon = nameEnd;
+                while (colon < len && isSpace(style.charAt(colon))) {
+                    colon++;
+                }
+                if (colon == len || style.charAt(colon) != ':') {
+                    pos = nameEnd;
                     continue;
-                } else {
+                }
 
+                // value, up to ; or the end
+                int valueStart = colon + 1;
+                while (valueStart < len && isSpace(style.charAt(valueStart))) {
+                    valueStart++;
+                }
+                int valueEnd = style.indexOf(';', valueStart);
+                if (valueEnd < 0) {
+                    valueEnd = len;
+                }
+                if (valueEnd == valueStart) {
+                    if (valueStart == colon + 1) {
+                        pos = nameEnd;
+                        continue;
+                    }
+                    // a blank value
+                    valueStart--;
+                }
 
-                    String cleanToken = "";
+                String styleName = style.substring(pos, nameEnd).toLowerCase();
+                String styleValue = style.substring(valueStart, valueEnd);
+                pos = valueEnd < len ? valueEnd + 1 : len;
 
-                    // check tag position in the stack
-                    int pos = openTags.search(tag);
-                    // if found on top ok
-                    for (int i = 1; i <= pos; i++) {
-                        //pop all elements before tag and close it
-                        String poppedTag = openTags.pop();
-                        cleanToken = cleanToken + "</" + poppedTag + ">";
-                        isAcceptedToken = true;
-                    }
+                // suppress invalid styles values
+                if (forbiddenStylePattern.matcher(styleValue).find()) {
+                    invalid(tag, " " + attr + " ", styleValue);
+                    continue;
+                }
 
-                    token = cleanToken;
+                // check if valid url
+                Matcher urlStyleMatcher = urlStylePattern.matcher(styleValue);
+                if (urlStyleMatcher.find() && !urlValidator.isValid(urlStyleMatcher.group(1))) {
+                    invalid(tag, " " + attr + " ", styleValue);
+                    continue;
                 }
 
+                cleanStyle.append(styleName).append(':').append(encode(styleValue)).append(';');
             }
+            return cleanStyle.toString();
+        }
 
-            ret.val = ret.val + token;
-
-            if (isAcceptedToken) {
-                ret.html = ret.html + token;
-                //ret.text = ret.text + " ";
-            } else {
-                String sanToken = htmlEncodeApexesAndTags(token);
-                ret.html = ret.html + sanToken;
-                ret.text = ret.text + htmlEncodeApexesAndTags(removeLineFeed(token));
+        /**
+         * must close remaining tags
+         */
+        void closeOpenTags() throws IOException {
+            for (int i = openTags.size() - 1; i >= 0; i--) {
+                String poppedTag = openTags.get(i);
+                html.append("</").append(poppedTag).append('>');
+                if (val != null) {
+                    val.append("</").append(poppedTag).append('>');
+                }
             }
+            openTags.clear();
 
+            if (ret != null) {
+                ret.text = text.toString();
+                ret.val = val.toString();
+                ret.isValid = ret.invalidTags.isEmpty();
+            }
+        }
 
+        private boolean isForbidden(String tag) {
+            if (forbiddenTags == DEFAULT_FORBIDDEN_TAGS) {
+                return FORBIDDEN_TAG_SET.contains(tag);
+            }
+            return forbiddenTags.matcher(tag).find();
         }
 
-        // must close remaining tags
-        while (!openTags.isEmpty()) {
-            //pop all elements before tag and close it
-            String poppedTag = openTags.pop();
-            ret.html = ret.html + "</" + poppedTag + ">";
-            ret.val = ret.val + "</" + poppedTag + ">";
+        private boolean isAllowed(String tag) {
+            if (allowedTags == DEFAULT_ALLOWED_TAGS) {
+                return ALLOWED_TAG_SET.contains(tag);
+            }
+            return allowedTags.matcher(tag).find();
         }
 
-        //set boolean value
-        ret.isValid = ret.invalidTags.isEmpty();
+        private void invalid(String token) {
+            if (ret != null) {
+                ret.invalidTags.add(token);
+            }
+        }
 
-        return ret;
+        private void invalid(String a, String b, String c) {
+            if (ret != null) {
+                ret.invalidTags.add(a + b + c);
+            }
+        }
     }
 
     /**
-     * Splits html tag and tag content <......>.
-     *
-     * @param html
-     * @return a list of token
+     * If token[i] starts an open tag <tag ....props.....>, the start of its
+     * props, otherwise -1.
      */
-    private static List<String> tokenize(String html) {
-        List<String> tokens = new ArrayList<>();
-        int pos = 0;
-        String token = "";
-        int len = html.length();
-        while (pos < len) {
-            char c = html.charAt(pos);
-
-            String ahead = html.substring(pos, pos > len - 4 ? len : pos + 4);
-
-            //a comment is starting
-            if ("<!--".equals(ahead)) {
-                //store the current token
-                if (token.length() > 0) {
-                    tokens.add(token);
-                }
-
-                //clear the token
-                token = "";
+    private static int startTagBody(String token, int i) {
+        int len = token.length();
+        int nameEnd = wordEnd(token, i + 1);
+        if (nameEnd == i + 1 || token.charAt(len - 1) != '>') {
+            return -1;
+        }
+        // the name has to end at a word boundary, which unlike the name
+        // itself takes in any letter or digit
+        if (Character.isLetterOrDigit(token.charAt(nameEnd))) {
+            return -1;
+        }
+        int body = nameEnd;
+        while (body < len && isSpace(token.charAt(body))) {
+            body++;
+        }
+        // props are on a single line
+        for (int j = body; j < len - 1; j++) {
+            if (isLineTerminator(token.charAt(j))) {
+                return -1;
+            }
+        }
+        return body;
+    }
 
-                // search the end of <......>
-                int end = moveToMarkerEnd(pos, "-->", html);
-                tokens.add(html.substring(pos, end));
-                pos = end;
+    /**
+     * True if token[i] starts a close tag </tag > ending the token.
+     */
+    private static boolean isCloseTag(String token, int i) {
+        int len = token.length();
+        if (i + 1 >= len || token.charAt(i + 1) != '/') {
+            return false;
+        }
+        int nameEnd = wordEnd(token, i + 2);
+        if (nameEnd == i + 2) {
+            return false;
+        }
+        int end = nameEnd;
+        while (end < len && isSpace(token.charAt(end))) {
+            end++;
+        }
+        return end == len - 1 && token.charAt(end) == '>';
+    }
 
+    private static int wordEnd(String s, int i) {
+        while (i < s.length() && isWord(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
 
-                // a new "<" token is starting
-            } else if ('<' == c) {
+    private static int indexOf(String s, char c, int from, int to) {
+        int i = s.indexOf(c, from);
+        return i >= 0 && i < to ? i : -1;
+    }
 
-                //store the current token
-                if (token.length() > 0) {
-                    tokens.add(token);
-                }
+    private static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
 
-                //clear the token
-                token = "";
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
 
-                // serch the end of <......>
-                int end = moveToMarkerEnd(pos, ">", html);
-                tokens.add(html.substring(pos, end));
-                pos = end;
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
 
-            } else {
-                token = token + c;
-                pos++;
-            }
+    private static boolean isStyleName(char c) {
+        return !isSpace(c) && c != '^' && c != ':';
+    }
 
+    /**
+     * Digits, or digits and %.
+     */
+    private static boolean isDimension(String val) {
+        int len = val.length();
+        if (len > 1 && val.charAt(len - 1) == '%') {
+            len--;
         }
-
-        //store the last token
-        if (token.length() > 0) {
-            tokens.add(token);
+        if (len == 0) {
+            return false;
         }
-
-        return tokens;
+        for (int i = 0; i < len; i++) {
+            if (val.charAt(i) < '0' || val.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static int moveToMarkerEnd(int pos, String marker, String s) {
-        int i = s.indexOf(marker, pos);
-        if (i > -1) {
-            pos = i + marker.length();
-        } else {
-            pos = s.length();
+    /**
+     * Appends s[start, end) with apexes and tags encoded, the same as
+     * htmlEncodeApexesAndTags(), and line feeds removed if asked.
+     */
+    private static void appendEncoded(Appendable out, String s, int start, int end, boolean removeLineFeed)
+            throws IOException {
+        int copied = start;
+        for (int i = start; i < end; i++) {
+            String replacement;
+            switch (s.charAt(i)) {
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '\n':
+                case '\f':
+                case '\r':
+                    replacement = removeLineFeed ? " " : null;
+                    break;
+                default:
+                    replacement = null;
+            }
+            if (replacement != null) {
+                out.append(s, copied, i).append(replacement);
+                copied = i + 1;
+            }
         }
-        return pos;
+        out.append(s, copied, end);
     }
 
     /**
@@ -508,7 +815,7 @@ public class HTMLSanitizer {
     public static final String replaceAllNoRegex(String source, String search, String replace) {
         StringBuilder buffer = new StringBuilder();
         if (source != null) {
-            if (search.length() == 0) {
+            if (search.length() == 0 || source.indexOf(search) == -1) {
                 return source;
             }
             int oldPos, pos;
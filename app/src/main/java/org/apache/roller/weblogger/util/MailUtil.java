@@ -20,6 +20,8 @@ package org.apache.roller.weblogger.util;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -40,6 +42,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.MailProvider;
+import org.apache.roller.weblogger.business.MailQueue;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogManager;
 import org.apache.roller.weblogger.business.startup.WebloggerStartup;
@@ -283,23 +286,22 @@ public class MailUtil {
         if (commentObject.getApproved() && notifySubscribers) {
             log.debug("Sending notification email to all subscribers");
 
-            // Get all the subscribers to this comment thread
-            List<WeblogEntryComment> comments = entry.getComments(true, true);
-            for (WeblogEntryComment comment : comments) {
-                if (!StringUtils.isEmpty(comment.getEmail())) {
-                    // if user has commented twice, count the most recent notify setting
-                    // also, don't send a routing email to the person who made the comment.
-                    if (comment.getNotify() && !comment.getEmail().equals(commentObject.getEmail())) {
-                        // only add those with valid email
-                        if (comment.getEmail().matches(EMAIL_ADDR_REGEXP)) {
-                            log.info("Add to subscribers list : " + comment.getEmail());
-                            subscribers.add(comment.getEmail());
-                        }
-                    } else {
-                        // remove user who doesn't want to be notified
-                        log.info("Remove from subscribers list : " + comment.getEmail());
-                        subscribers.remove(comment.getEmail());
-                    }
+            // Get all the subscribers to this comment thread, without
+            // loading the comments themselves
+            List<String> emails;
+            try {
+                emails = WebloggerFactory.getWeblogger().getWeblogEntryManager()
+                        .getCommentSubscribers(entry);
+            } catch (WebloggerException e) {
+                log.warn("Error getting subscribers of entry " + entry.getId(), e);
+                emails = Collections.emptyList();
+            }
+            for (String email : emails) {
+                // don't send a routing email to the person who made the comment
+                // and only add those with valid email
+                if (!email.equals(commentObject.getEmail()) && email.matches(EMAIL_ADDR_REGEXP)) {
+                    log.debug("Add to subscribers list : " + email);
+                    subscribers.add(email);
                 }
             }
         } else {
@@ -573,68 +575,92 @@ public class MailUtil {
             return;
         }
         
-        Session session = mailProvider.getSession();
-        MimeMessage message = new MimeMessage(session);
-        
-        // n.b. any default from address is expected to be determined by caller.
-        if (! StringUtils.isEmpty(from)) {
-            InternetAddress sentFrom = new InternetAddress(from);
-            message.setFrom(sentFrom);
-            if (log.isDebugEnabled()) {
-                log.debug("e-mail from: " + sentFrom);
-            }
+        // leave the sending to the mail queue, if there is one
+        MailQueue queue = MailQueue.getInstance();
+        if (queue != null) {
+            queue.enqueue(new MailQueue.Message(from, to, cc, bcc, subject, content, mimeType));
+            return;
         }
         
-        if (to!=null) {
-            InternetAddress[] sendTo = new InternetAddress[to.length];
-            
-            for (int i = 0; i < to.length; i++) {
-                sendTo[i] = new InternetAddress(to[i]);
+        sendMessage(mailProvider.getSession(), mailProvider.getTransport(),
+                from, to, cc, bcc, subject, content, mimeType);
+    }
+    
+    
+    /**
+     * Send a message right away.
+     *
+     * @param session mail session to create the message with
+     * @param transport connected transport to send the message with, closed when done
+     * @param from e-mail address of sender
+     * @param to e-mail address(es) of recipients
+     * @param subject subject of e-mail
+     * @param content the body of the e-mail
+     * @param mimeType type of message, i.e. text/plain or text/html
+     * @throws MessagingException the exception to indicate failure
+     */
+    public static void sendMessage(Session session, Transport transport, String from, String[] to,
+            String[] cc, String[] bcc, String subject, String content, String mimeType)
+            throws MessagingException {
+        
+        try {
+            MimeMessage message = new MimeMessage(session);
+            // n.b. any default from address is expected to be determined by caller.
+            if (! StringUtils.isEmpty(from)) {
+                InternetAddress sentFrom = new InternetAddress(from);
+                message.setFrom(sentFrom);
                 if (log.isDebugEnabled()) {
-                    log.debug("sending e-mail to: " + to[i]);
+                    log.debug("e-mail from: " + sentFrom);
                 }
             }
-            message.setRecipients(Message.RecipientType.TO, sendTo);
-        }
         
-        if (cc != null) {
-            InternetAddress[] copyTo = new InternetAddress[cc.length];
+            if (to!=null) {
+                InternetAddress[] sendTo = new InternetAddress[to.length];
             
-            for (int i = 0; i < cc.length; i++) {
-                copyTo[i] = new InternetAddress(cc[i]);
-                if (log.isDebugEnabled()) {
-                    log.debug("copying e-mail to: " + cc[i]);
+                for (int i = 0; i < to.length; i++) {
+                    sendTo[i] = new InternetAddress(to[i]);
+                    if (log.isDebugEnabled()) {
+                        log.debug("sending e-mail to: " + to[i]);
+                    }
                 }
+                message.setRecipients(Message.RecipientType.TO, sendTo);
             }
-            message.setRecipients(Message.RecipientType.CC, copyTo);
-        }
         
-        if (bcc != null) {
-            InternetAddress[] copyTo = new InternetAddress[bcc.length];
+            if (cc != null) {
+                InternetAddress[] copyTo = new InternetAddress[cc.length];
             
-            for (int i = 0; i < bcc.length; i++) {
-                copyTo[i] = new InternetAddress(bcc[i]);
-                if (log.isDebugEnabled()) {
-                    log.debug("blind copying e-mail to: " + bcc[i]);
+                for (int i = 0; i < cc.length; i++) {
+                    copyTo[i] = new InternetAddress(cc[i]);
+                    if (log.isDebugEnabled()) {
+                        log.debug("copying e-mail to: " + cc[i]);
+                    }
                 }
+                message.setRecipients(Message.RecipientType.CC, copyTo);
             }
-            message.setRecipients(Message.RecipientType.BCC, copyTo);
-        }
-        message.setSubject((subject == null) ? "(no subject)" : subject, "UTF-8");
-        message.setContent(content, mimeType);
-        message.setSentDate(new java.util.Date());
-        
-        // First collect all the addresses together.
-        Address[] remainingAddresses = message.getAllRecipients();
-        int nAddresses = remainingAddresses.length;
-        boolean bFailedToSome = false;
-        
-        SendFailedException sendex = new SendFailedException("Unable to send message to some recipients");
         
-        Transport transport = mailProvider.getTransport();
-        
-        // Try to send while there remain some potentially good addresses
-        try { 
+            if (bcc != null) {
+                InternetAddress[] copyTo = new InternetAddress[bcc.length];
+            
+                for (int i = 0; i < bcc.length; i++) {
+                    copyTo[i] = new InternetAddress(bcc[i]);
+                    if (log.isDebugEnabled()) {
+                        log.debug("blind copying e-mail to: " + bcc[i]);
+                    }
+                }
+                message.setRecipients(Message.RecipientType.BCC, copyTo);
+            }
+            message.setSubject((subject == null) ? "(no subject)" : subject, "UTF-8");
+            message.setContent(content, mimeType);
+            message.setSentDate(new java.util.Date());
+        
+            // First collect all the addresses together.
+            Address[] remainingAddresses = message.getAllRecipients();
+            int nAddresses = remainingAddresses.length;
+            SendFailedException firstFailure = null;
+            List<Address> invalidAddresses = new ArrayList<>();
+            Address[] unsentAddresses = null;
+        
+            // Try to send while there remain some potentially good addresses
             do {
                 // Avoid a loop if we are stuck
                 nAddresses = remainingAddresses.length;
@@ -642,23 +668,30 @@ public class MailUtil {
                 try {
                     // Send to the list of remaining addresses, ignoring the addresses attached to the message
                     transport.sendMessage(message, remainingAddresses);
+                    unsentAddresses = null;
                 } catch(SendFailedException ex) {
-                    bFailedToSome=true;
-                    sendex.setNextException(ex);
+                    if (firstFailure == null) {
+                        firstFailure = ex;
+                    }
+                    if (ex.getInvalidAddresses() != null) {
+                        invalidAddresses.addAll(Arrays.asList(ex.getInvalidAddresses()));
+                    }
 
                     // Extract the remaining potentially good addresses
                     remainingAddresses=ex.getValidUnsentAddresses();
+                    unsentAddresses = remainingAddresses;
                 }
             } while (remainingAddresses!=null && remainingAddresses.length>0 
                     && remainingAddresses.length!=nAddresses);
-            
+        
+            // report the addresses which didn't get the message in the end
+            if (firstFailure != null) {
+                throw new SendFailedException("Unable to send message to some recipients", firstFailure,
+                        null, unsentAddresses, invalidAddresses.toArray(new Address[0]));
+            }
         } finally {
             transport.close();
         }
-        
-        if (bFailedToSome) {
-            throw sendex;
-        }
     }
     
     
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces any number of literal strings in a text in a single pass, built
+ * once and then shared by any number of threads.
+ * <br />
+ * The strings to replace are kept in a trie.  The text is scanned once from
+ * left to right, at each position the longest string starting there is
+ * replaced and scanning carries on after it, so replacements are never
+ * scanned again and a string which is part of a longer one at the same
+ * position is left alone.  Text without any of the strings is returned as
+ * is, otherwise the result is written into a single StringBuilder.
+ */
+public final class MultiReplacer {
+
+    private final Node root;
+
+    // chars which can start a string to replace, for chars below 128
+    private final boolean[] asciiStarts = new boolean[128];
+
+
+    // a node of the trie, with children sorted by char
+    private static final class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private String replacement = null;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            return i >= 0 ? children[i] : null;
+        }
+    }
+
+
+    /**
+     * @param replacements replacement of each string, empty strings are ignored
+     */
+    public MultiReplacer(Map<String, String> replacements) {
+        root = build(new TreeMap<>(replacements), 0);
+        for (char c : root.chars) {
+            if (c < asciiStarts.length) {
+                asciiStarts[c] = true;
+            }
+        }
+    }
+
+
+    /**
+     * Replace all the strings found in the text.
+     *
+     * @return the text with the strings replaced, or the text itself if none
+     *         were found.
+     */
+    public String replace(String text) {
+
+        if (text == null || root.chars.length == 0) {
+            return text;
+        }
+
+        StringBuilder out = null;
+        int copied = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c < asciiStarts.length && !asciiStarts[c]) {
+                i++;
+                continue;
+            }
+
+            // longest string starting here
+            String replacement = null;
+            int end = i;
+            Node node = root;
+            for (int j = i; j < text.length(); j++) {
+                node = node.child(text.charAt(j));
+                if (node == null) {
+                    break;
+                }
+                if (node.replacement != null) {
+                    replacement = node.replacement;
+                    end = j + 1;
+                }
+            }
+
+            if (replacement == null) {
+                i++;
+            } else {
+                if (out == null) {
+                    out = new StringBuilder(text.length() + 64);
+                }
+                out.append(text, copied, i).append(replacement);
+                copied = end;
+                i = end;
+            }
+        }
+
+        if (out == null) {
+            return text;
+        }
+        return out.append(text, copied, text.length()).toString();
+    }
+
+
+    public boolean isEmpty() {
+        return root.chars.length == 0;
+    }
+
+
+    // build the node for the strings sharing their first depth chars
+    private static Node build(TreeMap<String, String> strings, int depth) {
+
+        Node node = new Node();
+        TreeMap<Character, TreeMap<String, String>> byChar = new TreeMap<>();
+        for (Map.Entry<String, String> string : strings.entrySet()) {
+            String key = string.getKey();
+            if (key.length() == depth) {
+                node.replacement = string.getValue();
+            } else {
+                byChar.computeIfAbsent(key.charAt(depth), c -> new TreeMap<>())
+                        .put(key, string.getValue());
+            }
+        }
+
+        node.chars = new char[byChar.size()];
+        node.children = new Node[byChar.size()];
+        int i = 0;
+        for (Map.Entry<Character, TreeMap<String, String>> child : byChar.entrySet()) {
+            node.chars[i] = child.getKey();
+            node.children[i] = build(child.getValue(), depth + 1);
+            i++;
+        }
+        return node;
+    }
+
+}
@@ -3,9 +3,15 @@ package org.apache.roller.weblogger.util.cache;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -14,6 +20,15 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A utility class for storing cached content written to a java.io.Writer.
+ *
+ * Once closed the content can optionally be moved out of the java heap into
+ * a direct buffer, see {@link #moveOffHeap()}.  That keeps large rendered
+ * pages out of the old generation, which is where most of the GC pause time
+ * on big sites comes from.
+ *
+ * A gzip compressed variant of the content can also be built once, see
+ * {@link #compress()}, so that it can be served to clients which accept it
+ * without compressing the same bytes again on every request.
  */
 public class CachedContent implements AutoCloseable, Serializable {
     
@@ -25,12 +40,21 @@ public class CachedContent implements AutoCloseable, Serializable {
     // content-type of data in byte array
     private final String contentType;
     
+    // hash of the content, computed once the content is complete
+    private String contentHash = null;
+    
     // Use a byte array output stream to cached the output bytes
     private transient ByteArrayOutputStream outstream = null;
     
     // The PrintWriter that users will be writing to
     private transient PrintWriter cachedWriter = null;
     
+    // the content, when it has been moved off heap
+    private transient ByteBuffer offHeapContent = null;
+    
+    // gzip compressed variant of the content, if one was built
+    private transient ByteBuffer gzipContent = null;
+    
     
     public CachedContent(int size) {
         this(size, null);
@@ -56,12 +80,79 @@ public class CachedContent implements AutoCloseable, Serializable {
      *
      * NOTE: the content is only a representation of the data written to the
      *       enclosed Writer up until the last call to flush().
+     *
+     * NOTE: if the content lives off heap this makes a copy of it, prefer
+     *       {@link #writeTo(OutputStream)} and {@link #getContentLength()}.
      */
     public byte[] getContent() {
+        if (this.offHeapContent != null) {
+            byte[] copy = new byte[this.offHeapContent.capacity()];
+            this.offHeapContent.duplicate().get(copy);
+            return copy;
+        }
         return this.content;
     }
     
     
+    /**
+     * Get the length in bytes of the content cached in this object.
+     */
+    public int getContentLength() {
+        if (this.offHeapContent != null) {
+            return this.offHeapContent.capacity();
+        }
+        return this.content.length;
+    }
+    
+    
+    /**
+     * Write the content cached in this object to the given stream, without
+     * copying it back into the heap if it lives off heap.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (this.offHeapContent != null) {
+            Channels.newChannel(out).write(this.offHeapContent.duplicate());
+        } else {
+            out.write(this.content);
+        }
+    }
+    
+    
+    public boolean isOffHeap() {
+        return this.offHeapContent != null;
+    }
+    
+    
+    /**
+     * True if a gzip compressed variant of the content is available.
+     */
+    public boolean hasGzipContent() {
+        return this.gzipContent != null;
+    }
+    
+    
+    /**
+     * Get the length in bytes of the gzip compressed variant of the content,
+     * or -1 if there is none.
+     */
+    public int getGzipContentLength() {
+        return (this.gzipContent != null) ? this.gzipContent.capacity() : -1;
+    }
+    
+    
+    /**
+     * Write the gzip compressed variant of the content to the given stream.
+     *
+     * @throws IllegalStateException if there is no compressed variant
+     */
+    public void writeGzipTo(OutputStream out) throws IOException {
+        if (this.gzipContent == null) {
+            throw new IllegalStateException("No compressed content, call compress() first!");
+        }
+        Channels.newChannel(out).write(this.gzipContent.duplicate());
+    }
+    
+    
     /**
      * Get the content cached in this object as a String.
      *
@@ -69,7 +160,7 @@ public class CachedContent implements AutoCloseable, Serializable {
      *       enclosed Writer up until the last call to flush().
      */
     public String getContentAsString() {
-        return new String(this.content, UTF_8);
+        return new String(getContent(), UTF_8);
     }
     
     
@@ -83,6 +174,15 @@ public class CachedContent implements AutoCloseable, Serializable {
     }
     
     
+    /**
+     * Get a hash of the content, suitable for use as a strong entity tag.
+     * Only available after close(), null before that.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    
     /**
      * Called to flush any output in the cached Writer to
      * the cached content for more permanent storage.
@@ -121,9 +221,92 @@ public class CachedContent implements AutoCloseable, Serializable {
             }
             this.outstream.close();
             this.outstream = null;
+            
+            this.contentHash = DigestUtils.md5Hex(this.content);
         }
         
         log.debug("CLOSED");
     }
     
+    
+    /**
+     * Build a gzip compressed variant of the content.  Nothing is kept if
+     * compression doesn't make the content any smaller.
+     *
+     * @throws IllegalStateException if calling compress() before a close()
+     */
+    public void compress() throws IOException {
+        
+        if(this.outstream != null) {
+            throw new IllegalStateException("Cannot compress() before a close()!");
+        }
+        
+        if(this.gzipContent == null) {
+            int length = getContentLength();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(32, length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                writeTo(gzip);
+            }
+            
+            if(compressed.size() < length) {
+                this.gzipContent = toBuffer(compressed.toByteArray(), isOffHeap());
+                log.debug("COMPRESSED "+length+" -> "+compressed.size());
+            }
+        }
+    }
+    
+    
+    /**
+     * Move the content into a direct buffer outside of the java heap and
+     * release the heap copy.  The buffer is freed when this object is
+     * garbage collected, so off heap usage is bounded by the cache holding
+     * it and by -XX:MaxDirectMemorySize.
+     *
+     * @throws IllegalStateException if calling moveOffHeap() before a close()
+     */
+    public void moveOffHeap() {
+        
+        if(this.outstream != null) {
+            throw new IllegalStateException("Cannot moveOffHeap() before a close()!");
+        }
+        
+        if(this.offHeapContent == null) {
+            this.offHeapContent = toBuffer(this.content, true);
+            this.content = new byte[0];
+            
+            if(this.gzipContent != null && !this.gzipContent.isDirect()) {
+                byte[] compressed = new byte[this.gzipContent.capacity()];
+                this.gzipContent.duplicate().get(compressed);
+                this.gzipContent = toBuffer(compressed, true);
+            }
+            
+            log.debug("MOVED OFF HEAP "+this.offHeapContent.capacity());
+        }
+    }
+    
+    
+    private static ByteBuffer toBuffer(byte[] bytes, boolean direct) {
+        ByteBuffer buffer;
+        if(direct) {
+            buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+        } else {
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        return buffer.asReadOnlyBuffer();
+    }
+    
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // direct buffers aren't serializable, so write the content as bytes,
+        // the compressed variant is an optimization and is not kept
+        byte[] heapContent = this.content;
+        this.content = getContent();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            this.content = heapContent;
+        }
+    }
+    
 }
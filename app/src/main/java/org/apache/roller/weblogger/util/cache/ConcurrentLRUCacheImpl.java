@@ -0,0 +1,394 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * A concurrent, approximate LRU cache with optional per-entry expiration.
+ *
+ * Reads never take a lock, they only do a lookup in a ConcurrentHashMap and
+ * mark the entry as recently used.  Writes go straight to the map and only
+ * serialize on a lock when the cache has grown past its maximum size and
+ * something needs to be evicted.
+ *
+ * Eviction uses the CLOCK (second chance) algorithm, which approximates LRU:
+ * entries are kept in insertion order and an entry which was read since the
+ * last time the clock hand passed it gets moved to the back of the line
+ * instead of being evicted.  Expired entries are always evicted first.
+ *
+ * Expiration is lazy, an expired entry is only dropped when it is read or
+ * when the clock hand reaches it.
+ *
+ * Besides the maximum number of entries the cache can optionally be given a
+ * budget in bytes, in which case each entry is weighed by the size of the
+ * CachedContent it holds and entries are evicted until both limits hold.
+ */
+public class ConcurrentLRUCacheImpl implements Cache {
+
+    private static final Log log = LogFactory.getLog(ConcurrentLRUCacheImpl.class);
+
+    private final String id;
+    private final int maxsize;
+    private final long maxBytes;
+    private final long timeout;
+
+    private final Map<String, Node> cache;
+
+    // entries in insertion order, walked by the eviction clock hand
+    private final Queue<Node> evictionQueue = new ConcurrentLinkedQueue<>();
+
+    // number of dead nodes still sitting in the eviction queue
+    private final AtomicInteger deadNodes = new AtomicInteger();
+
+    // only one thread runs eviction at a time, other writers just move on
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // total weight of all entries currently in the map
+    private final AtomicLong bytes = new AtomicLong();
+
+    // for metrics
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder puts = new LongAdder();
+    protected final LongAdder removes = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+    protected final LongAdder bytesEvicted = new LongAdder();
+    protected volatile Date startTime = new Date();
+
+
+    protected ConcurrentLRUCacheImpl(String id, int maxsize) {
+
+        this(id, maxsize, 0, 0);
+    }
+
+
+    protected ConcurrentLRUCacheImpl(String id, int maxsize, long timeout) {
+
+        this(id, maxsize, 0, timeout);
+    }
+
+
+    /**
+     * @param maxBytes total weight of cached content in bytes, 0 or less means no limit
+     * @param timeout entry time to live in seconds, 0 or less means no expiration
+     */
+    protected ConcurrentLRUCacheImpl(String id, int maxsize, long maxBytes, long timeout) {
+
+        this.id = id;
+        this.maxsize = Math.max(1, maxsize);
+        this.maxBytes = Math.max(0, maxBytes);
+        this.timeout = (timeout > 0) ? timeout * RollerConstants.SEC_IN_MS : 0;
+        this.cache = new ConcurrentHashMap<>(this.maxsize * 4 / 3 + 1);
+    }
+
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+
+    /**
+     * Store an entry in the cache.
+     */
+    @Override
+    public void put(String key, Object value) {
+
+        long weight = weigh(value);
+        if (this.maxBytes > 0 && weight > this.maxBytes) {
+            // would push everything else out and then itself, don't bother
+            log.debug("SKIPPED ["+key+"], "+weight+" bytes is over the cache budget");
+            remove(key);
+            return;
+        }
+
+        long expires = (this.timeout > 0) ? System.currentTimeMillis() + this.timeout : 0;
+        Node node = new Node(key, value, weight, expires);
+
+        this.bytes.addAndGet(weight);
+        Node old = this.cache.put(key, node);
+        if (old != null) {
+            old.kill();
+        }
+        this.evictionQueue.offer(node);
+        puts.increment();
+
+        if (isOverBudget() || this.deadNodes.get() > this.maxsize) {
+            evict();
+        }
+    }
+
+
+    /**
+     * Retrieve an entry from the cache.
+     *
+     * If the entry has expired then we return null, just as if the entry
+     * wasn't found.
+     */
+    @Override
+    public Object get(String key) {
+
+        Node node = this.cache.get(key);
+
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (node.hasExpired(System.currentTimeMillis())) {
+            log.debug("EXPIRED ["+key+"]");
+            if (this.cache.remove(key, node)) {
+                node.kill();
+            }
+            misses.increment();
+            return null;
+        }
+
+        // avoid the volatile write when the flag is already set
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hits.increment();
+
+        return node.value;
+    }
+
+
+    @Override
+    public void remove(String key) {
+
+        Node node = this.cache.remove(key);
+        if (node != null) {
+            node.kill();
+        }
+        removes.increment();
+    }
+
+
+    @Override
+    public void clear() {
+
+        this.evictionLock.lock();
+        try {
+            // remove entries one by one rather than resetting the counters, a
+            // concurrent put may be between counting its node and queueing it
+            for (Node node : this.cache.values()) {
+                if (this.cache.remove(node.key, node)) {
+                    node.kill();
+                }
+            }
+            purgeDeadNodes();
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        // clear metrics
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removes.reset();
+        evictions.reset();
+        bytesEvicted.reset();
+        startTime = new Date();
+    }
+
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        long hitCount = this.hits.sum();
+        long missCount = this.misses.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("startTime", this.startTime);
+        stats.put("size", this.cache.size());
+        stats.put("maxsize", this.maxsize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("puts", this.puts.sum());
+        stats.put("removes", this.removes.sum());
+        stats.put("evictions", this.evictions.sum());
+        stats.put("bytes", this.bytes.get());
+        stats.put("bytesEvicted", this.bytesEvicted.sum());
+        if (this.maxBytes > 0) {
+            stats.put("maxBytes", this.maxBytes);
+        }
+
+        // calculate efficiency
+        if((hitCount + missCount) > 0) {
+            double efficiency = (double) hitCount / (missCount + hitCount);
+            stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
+        }
+
+        return stats;
+    }
+
+
+    /**
+     * Determine the weight of a cached value in bytes.
+     *
+     * Only rendered content is weighed, everything else counts as nothing so
+     * that caches of small objects are bounded by entry count alone.
+     */
+    static long weigh(Object value) {
+
+        Object content = value;
+        if (content instanceof LazyExpiringCacheEntry) {
+            content = ((LazyExpiringCacheEntry) content).getValue(Long.MIN_VALUE);
+        } else if (content instanceof ExpiringCacheEntry) {
+            content = ((ExpiringCacheEntry) content).getValue();
+        }
+
+        if (content instanceof CachedContent) {
+            CachedContent cachedContent = (CachedContent) content;
+            return cachedContent.getContentLength() + Math.max(0, cachedContent.getGzipContentLength());
+        }
+        return 0;
+    }
+
+
+    private boolean isOverBudget() {
+        return this.cache.size() > this.maxsize
+                || (this.maxBytes > 0 && this.bytes.get() > this.maxBytes);
+    }
+
+
+    /**
+     * Move the clock hand until the cache is back within its size limits.
+     */
+    private void evict() {
+
+        // somebody else is already evicting, no need to pile up behind them
+        if (!this.evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+
+            while (isOverBudget()) {
+                Node node = this.evictionQueue.poll();
+                if (node == null) {
+                    break;
+                }
+
+                if (node.dead) {
+                    this.deadNodes.decrementAndGet();
+                    continue;
+                }
+
+                // recently used, give it a second chance
+                if (node.referenced && !node.hasExpired(now)) {
+                    node.referenced = false;
+                    this.evictionQueue.offer(node);
+                    continue;
+                }
+
+                if (this.cache.remove(node.key, node)) {
+                    node.dead = true;
+                    this.bytes.addAndGet(-node.weight);
+                    evictions.increment();
+                    bytesEvicted.add(node.weight);
+                } else {
+                    // replaced or removed concurrently, it's somebody else's dead node
+                    this.deadNodes.decrementAndGet();
+                }
+            }
+
+            if (this.deadNodes.get() > this.maxsize) {
+                purgeDeadNodes();
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+
+    /**
+     * Drop nodes which were replaced or removed from the eviction queue so
+     * that it doesn't grow without bound when the same keys keep getting
+     * replaced.
+     */
+    private void purgeDeadNodes() {
+
+        int purged = 0;
+        Iterator<Node> it = this.evictionQueue.iterator();
+        while (it.hasNext()) {
+            if (it.next().dead) {
+                it.remove();
+                purged++;
+            }
+        }
+        this.deadNodes.addAndGet(-purged);
+
+        log.debug("purged "+purged+" dead nodes from ["+this.id+"]");
+    }
+
+
+    private final class Node {
+
+        private final String key;
+        private final Object value;
+        private final long weight;
+        private final long expires;
+
+        // set on read, cleared by the clock hand
+        private volatile boolean referenced = false;
+
+        // no longer in the map, just waiting to be dropped from the queue
+        private volatile boolean dead = false;
+
+
+        Node(String key, Object value, long weight, long expires) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expires = expires;
+        }
+
+
+        boolean hasExpired(long now) {
+            return this.expires > 0 && this.expires < now;
+        }
+
+
+        void kill() {
+            this.dead = true;
+            deadNodes.incrementAndGet();
+            bytes.addAndGet(-this.weight);
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.planet.business;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.roller.planet.business.updater.ConcurrentFeedUpdater;
+import org.apache.roller.planet.business.updater.FeedUpdater;
+import org.apache.roller.planet.pojos.Subscription;
+import org.apache.roller.planet.pojos.SubscriptionEntry;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Test the concurrent feed updater against a local server serving feeds.
+ */
+public class ConcurrentFeedUpdaterTest {
+
+    private HttpServer server;
+    private String baseURL;
+
+    // feed content and etag, by path
+    private final Map<String, String[]> feeds = new HashMap<>();
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private Subscription testSub1 = null;
+    private Subscription testSub2 = null;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String[] feed = feeds.get(exchange.getRequestURI().getPath());
+            if (feed == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (feed[1].equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fetched.incrementAndGet();
+                byte[] body = feed[0].getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/rss+xml");
+                exchange.getResponseHeaders().set("ETag", feed[1]);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        baseURL = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        feeds.put("/feed1", new String[] { rss("one", "a", "b", "c"), "\"v1\"" });
+        feeds.put("/feed2", new String[] { rss("two", "x", "y"), "\"v1\"" });
+
+        TestUtils.setupWeblogger();
+
+        PlanetManager mgr = WebloggerFactory.getWeblogger().getPlanetManager();
+        testSub1 = new Subscription();
+        testSub1.setTitle("feed1");
+        testSub1.setFeedURL(baseURL + "/feed1");
+        mgr.saveSubscription(testSub1);
+        testSub2 = new Subscription();
+        testSub2.setTitle("feed2");
+        testSub2.setFeedURL(baseURL + "/feed2");
+        mgr.saveSubscription(testSub2);
+        TestUtils.endSession(true);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        TestUtils.teardownSubscription(testSub1.getId());
+        TestUtils.teardownSubscription(testSub2.getId());
+        server.stop(0);
+    }
+
+    @Test
+    public void testUpdateSubscriptions() throws Exception {
+
+        PlanetManager mgr = WebloggerFactory.getWeblogger().getPlanetManager();
+        FeedUpdater updater = new ConcurrentFeedUpdater(4, 1);
+
+        updater.updateSubscriptions();
+        TestUtils.endSession(true);
+
+        Subscription sub = mgr.getSubscriptionById(testSub1.getId());
+        assertEquals("one", sub.getTitle());
+        assertEquals("\"v1\"", sub.getEtag());
+        assertEquals(3, sub.getEntries().size());
+        assertEquals(2, mgr.getSubscriptionById(testSub2.getId()).getEntries().size());
+        assertEquals(2, fetched.get());
+        String idOfA = entry(sub, "a").getId();
+        String idOfB = entry(sub, "b").getId();
+        TestUtils.endSession(true);
+
+        // unchanged feeds aren't downloaded again
+        updater.updateSubscriptions();
+        TestUtils.endSession(true);
+        assertEquals(2, fetched.get());
+        assertEquals(2, notModified.get());
+
+        // changed feed, entries are matched up by permalink
+        feeds.put("/feed1", new String[] { rss("one", "a", "B", "d"), "\"v2\"" });
+        updater.updateSubscriptions();
+        TestUtils.endSession(true);
+        assertEquals(3, fetched.get());
+
+        sub = mgr.getSubscriptionById(testSub1.getId());
+        assertEquals("\"v2\"", sub.getEtag());
+        assertEquals(3, sub.getEntries().size());
+        assertEquals(idOfA, entry(sub, "a").getId());
+        assertEquals(idOfB, entry(sub, "b").getId());
+        assertEquals("Title B", entry(sub, "b").getTitle());
+        assertNotNull(entry(sub, "d"));
+        assertNull(entry(sub, "c"));
+    }
+
+    private SubscriptionEntry entry(Subscription sub, String name) {
+        for (SubscriptionEntry entry : sub.getEntries()) {
+            if (entry.getPermalink().equals(baseURL + "/entry/" + name.toLowerCase())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // a feed with an item for each name, the item title follows the case of the name
+    private String rss(String title, String... names) {
+        StringBuilder rss = new StringBuilder();
+        rss.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<rss version=\"2.0\"><channel><title>").append(title).append("</title>")
+                .append("<link>").append(baseURL).append("</link><description>test</description>");
+        int day = 1;
+        for (String name : names) {
+            rss.append("<item><title>Title ").append(name).append("</title>")
+                    .append("<link>").append(baseURL).append("/entry/").append(name.toLowerCase()).append("</link>")
+                    .append("<description>Entry ").append(name.toLowerCase()).append("</description>")
+                    .append("<pubDate>0").append(day++).append(" Jun 2026 10:00:00 GMT</pubDate></item>");
+        }
+        return rss.append("</channel></rss>").toString();
+    }
+
+}
@@ -30,6 +30,7 @@ import java.io.StringWriter;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -191,6 +192,52 @@ public class CommentTest  {
     }
     
     
+    /**
+     * Test that the approved comment count kept on entries follows comment
+     * changes and can be repaired.
+     */
+    @Test
+    public void testCommentCounts() throws Exception {
+        
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        testEntry = TestUtils.getManagedWeblogEntry(testEntry);
+        assertEquals(0, testEntry.getCommentCount());
+        WeblogEntryComment comment1 = TestUtils.setupComment("comment1", testEntry);
+        WeblogEntryComment comment2 = TestUtils.setupComment("comment2", testEntry);
+        WeblogEntryComment comment3 = TestUtils.setupComment("comment3", testEntry);
+        TestUtils.endSession(true);
+        
+        testEntry = TestUtils.getManagedWeblogEntry(testEntry);
+        assertEquals(3, testEntry.getCommentCount());
+        
+        // unapproving and removing comments lowers the count
+        comment3 = mgr.getComment(comment3.getId());
+        comment3.setStatus(ApprovalStatus.PENDING);
+        mgr.saveComment(comment3);
+        mgr.removeComment(mgr.getComment(comment1.getId()));
+        TestUtils.endSession(true);
+        
+        testEntry = TestUtils.getManagedWeblogEntry(testEntry);
+        assertEquals(1, testEntry.getCommentCount());
+        
+        // a wrong count is put right by the repair job
+        testEntry.setCommentCount(7);
+        TestUtils.endSession(true);
+        assertEquals(1, mgr.recountComments());
+        TestUtils.endSession(true);
+        testEntry = TestUtils.getManagedWeblogEntry(testEntry);
+        assertEquals(1, testEntry.getCommentCount());
+        assertEquals(0, mgr.recountComments());
+        
+        // removing matching comments counts again too
+        assertEquals(2, mgr.removeMatchingComments(null, testEntry, null, null, null, null));
+        TestUtils.endSession(true);
+        testEntry = TestUtils.getManagedWeblogEntry(testEntry);
+        assertEquals(0, testEntry.getCommentCount());
+    }
+    
+    
     /**
      * Test that when deleting parent objects of a comment that everything
      * down the chain is properly deleted as well.  i.e. deleting an entry
@@ -28,8 +28,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,6 +201,57 @@ public class HitCountTest  {
         assertNull(hitCount);
     }
     
+    @Test
+    public void testIncrementHitCounts() throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        testUser = TestUtils.getManagedUser(testUser);
+        Weblog blog1 = TestUtils.setupWeblog("hitCntIncTest1", testUser);
+        Weblog blog2 = TestUtils.setupWeblog("hitCntIncTest2", testUser);
+        Weblog blog3 = TestUtils.setupWeblog("hitCntIncTest3", testUser);
+        
+        WeblogHitCount cnt1 = TestUtils.setupHitCount(blog1, 10);
+        WeblogHitCount cnt2 = TestUtils.setupHitCount(blog2, 20);
+        
+        TestUtils.endSession(true);
+        
+        WeblogHitCount cnt3 = null;
+        try {
+            // two existing counts with the same amount, one missing count
+            // and one weblog which doesn't exist
+            Map<String, Long> hits = new HashMap<>();
+            hits.put(blog1.getHandle(), 5L);
+            hits.put(blog2.getHandle(), 5L);
+            hits.put(blog3.getHandle(), 7L);
+            hits.put("hitCntIncTestNoSuchWeblog", 3L);
+            mgr.incrementHitCounts(hits);
+            TestUtils.endSession(true);
+            
+            WeblogHitCount testCount;
+            testCount = mgr.getHitCount(cnt1.getId());
+            assertEquals(15, testCount.getDailyHits());
+            testCount = mgr.getHitCount(cnt2.getId());
+            assertEquals(25, testCount.getDailyHits());
+            
+            // missing count was created
+            blog3 = TestUtils.getManagedWebsite(blog3);
+            cnt3 = mgr.getHitCountByWeblog(blog3);
+            assertNotNull(cnt3);
+            assertEquals(7, cnt3.getDailyHits());
+            
+        } finally {
+            // cleanup
+            TestUtils.teardownHitCount(cnt1.getId());
+            TestUtils.teardownHitCount(cnt2.getId());
+            if (cnt3 != null) {
+                TestUtils.teardownHitCount(cnt3.getId());
+            }
+            TestUtils.teardownWeblog(blog1.getId());
+            TestUtils.teardownWeblog(blog2.getId());
+            TestUtils.teardownWeblog(blog3.getId());
+        }
+    }
+    
     @Test
     public void testResetHitCounts() throws Exception {
         WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import javax.mail.Session;
+import javax.mail.Transport;
+import org.apache.roller.weblogger.util.MailUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Test the mail queue against a local server speaking just enough SMTP.
+ */
+public class MailQueueTest {
+
+    @TempDir
+    File dir;
+
+    private ServerSocket server;
+    private Session session;
+    private MailQueue queue;
+
+    // recipients of each message delivered
+    private final List<Set<String>> delivered = new CopyOnWriteArrayList<>();
+    private final Set<String> rejected = new HashSet<>();
+    private final AtomicInteger refuseConnections = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> converse(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (Exception e) {
+                    // closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        Properties props = new Properties();
+        props.setProperty("mail.smtp.host", "127.0.0.1");
+        props.setProperty("mail.smtp.port", Integer.toString(server.getLocalPort()));
+        props.setProperty("mail.smtp.connectiontimeout", "5000");
+        props.setProperty("mail.smtp.timeout", "5000");
+        session = Session.getInstance(props);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.shutdown();
+        }
+        server.close();
+    }
+
+    private MailQueue newQueue(int maxRecipients, int maxAttempts) {
+        MailQueue.Sender sender = message -> {
+            Transport transport = session.getTransport("smtp");
+            transport.connect();
+            MailUtil.sendMessage(session, transport, message.getFrom(), message.getTo(),
+                    message.getCc(), message.getBcc(), message.getSubject(),
+                    message.getContent(), message.getContentType());
+        };
+        return new MailQueue(dir, sender, 2, maxRecipients, maxAttempts, 50, 200);
+    }
+
+    private MailQueue.Message message(String[] to, String... bcc) {
+        return new MailQueue.Message("blog@example.com", to, null, bcc,
+                "New comment", "Hello", "text/plain; charset=utf-8");
+    }
+
+    @Test
+    public void testRecipientBatches() throws Exception {
+        queue = newQueue(2, 3);
+        queue.enqueue(message(new String[] { "a@example.com" },
+                "b@example.com", "c@example.com", "d@example.com", "e@example.com", "f@example.com"));
+
+        waitFor(() -> delivered.size() == 3 && queued().isEmpty());
+
+        Set<Set<String>> expected = new HashSet<>();
+        expected.add(set("a@example.com", "b@example.com", "c@example.com"));
+        expected.add(set("d@example.com", "e@example.com"));
+        expected.add(set("f@example.com"));
+        assertEquals(expected, new HashSet<>(delivered));
+    }
+
+    @Test
+    public void testRejectedRecipientDropped() throws Exception {
+        rejected.add("bad@example.com");
+        queue = newQueue(10, 3);
+        queue.enqueue(message(null, "good@example.com", "bad@example.com"));
+
+        waitFor(() -> delivered.size() == 1 && queued().isEmpty());
+        assertEquals(set("good@example.com"), delivered.get(0));
+
+        // not retried for the rejected recipient
+        Thread.sleep(300);
+        assertEquals(1, delivered.size());
+        assertEquals(0, failed().size());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        refuseConnections.set(2);
+        queue = newQueue(10, 5);
+        queue.enqueue(message(new String[] { "a@example.com" }));
+
+        waitFor(() -> delivered.size() == 1 && queued().isEmpty());
+        assertEquals(set("a@example.com"), delivered.get(0));
+        assertEquals(3, connections.get());
+
+        // until it runs out of attempts
+        refuseConnections.set(100);
+        queue.enqueue(message(new String[] { "b@example.com" }));
+        waitFor(() -> failed().size() == 1 && queued().isEmpty());
+        assertEquals(1, delivered.size());
+    }
+
+    private List<String> queued() {
+        return Arrays.asList(dir.list((d, name) -> name.endsWith(".mail")));
+    }
+
+    private List<String> failed() {
+        return Arrays.asList(dir.list((d, name) -> name.endsWith(".failed")));
+    }
+
+    private static Set<String> set(String... values) {
+        return new TreeSet<>(Arrays.asList(values));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long until = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < until, "timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    // play the part of a mail server
+    private void converse(Socket socket) {
+        connections.incrementAndGet();
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                PrintWriter out = new PrintWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), true)) {
+
+            if (refuseConnections.getAndDecrement() > 0) {
+                reply(out, "421 busy, try again later");
+                return;
+            }
+            reply(out, "220 localhost");
+
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("RCPT TO:")) {
+                    String address = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                    if (rejected.contains(address)) {
+                        reply(out, "550 no such user");
+                    } else {
+                        recipients.add(address);
+                        reply(out, "250 ok");
+                    }
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 go ahead");
+                    while (!".".equals(in.readLine())) {
+                        // skip the message
+                    }
+                    delivered.add(new TreeSet<>(recipients));
+                    recipients.clear();
+                    reply(out, "250 queued");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    // EHLO, MAIL, RSET, NOOP
+                    recipients.clear();
+                    reply(out, "250 ok");
+                }
+            }
+        } catch (Exception e) {
+            // connection dropped
+        }
+    }
+
+    private static void reply(PrintWriter out, String reply) {
+        out.print(reply + "\r\n");
+        out.flush();
+    }
+
+}
@@ -18,14 +18,19 @@
 
 package org.apache.roller.weblogger.business;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.TestUtils;
 import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.pojos.TaskLock;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -80,4 +85,25 @@ public class TaskLockTest  {
         TestUtils.endSession(false);
     }
     
+    
+    /**
+     * Test looking up the locks of several tasks at once.
+     * @throws Exception if one is raised
+     */
+    @Test
+    public void testTaskLocksByName() throws Exception {
+        
+        ThreadManager mgr = WebloggerFactory.getWeblogger().getThreadManager();
+        
+        TestTask task = new TestTask();
+        task.init();
+        
+        List<TaskLock> locks = mgr.getTaskLocksByName(Arrays.asList(task.getName(), "NoSuchTask"));
+        assertEquals(1, locks.size());
+        assertEquals(task.getName(), locks.get(0).getName());
+        
+        assertTrue(mgr.getTaskLocksByName(Collections.emptyList()).isEmpty());
+        TestUtils.endSession(false);
+    }
+    
 }
@@ -928,6 +928,118 @@ public class WeblogEntryTest  {
         TestUtils.endSession(true);
     }
 
+    @Test
+    public void testTagCountsFollowCommits() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        testUser = TestUtils.getManagedUser(testUser);
+
+        WeblogEntry entry = TestUtils.setupWeblogEntry("entry1", testWeblog, testUser);
+        entry.addTag("one");
+        entry.addTag("two");
+        mgr.saveWeblogEntry(entry);
+        TestUtils.endSession(true);
+
+        assertTrue(mgr.getTagComboExists(List.of("one", "two"), null));
+        assertEquals(2, mgr.getPopularTags(testWeblog, null, 0, -1).size());
+
+        // tags of a save that is rolled back are not counted
+        entry = mgr.getWeblogEntry(entry.getId());
+        entry.addTag("three");
+        mgr.saveWeblogEntry(entry);
+        TestUtils.endSession(false);
+
+        assertFalse(mgr.getTagComboExists(List.of("one", "three"), null));
+        assertEquals(2, mgr.getTags(testWeblog, null, null, 0, -1).size());
+
+        // but removed once the removal is committed
+        entry = mgr.getWeblogEntry(entry.getId());
+        entry.setTagsAsString("two");
+        mgr.saveWeblogEntry(entry);
+        TestUtils.endSession(true);
+
+        assertFalse(mgr.getTagComboExists(List.of("one"), testWeblog));
+        List<TagStat> tags = mgr.getTags(null, null, null, 0, -1);
+        assertEquals(1, tags.size());
+        assertEquals("two", tags.get(0).getName());
+        assertEquals(1, tags.get(0).getCount());
+
+        TestUtils.teardownWeblogEntry(entry.getId());
+        TestUtils.endSession(true);
+        assertEquals(0, mgr.getTags(testWeblog, null, null, 0, -1).size());
+    }
+
+
+    /**
+     * Test that the days with published entries follow publishing and
+     * unpublishing of entries.
+     */
+    @Test
+    public void testArchiveIndex() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        testUser = TestUtils.getManagedUser(testUser);
+        Calendar cal = Calendar.getInstance(testWeblog.getTimeZoneInstance());
+
+        String[] anchors = { "march5", "march20", "june10" };
+        int[][] dates = { { Calendar.MARCH, 5 }, { Calendar.MARCH, 20 }, { Calendar.JUNE, 10 } };
+        String[] ids = new String[anchors.length];
+        for (int i = 0; i < anchors.length; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry(anchors[i], testWeblog, testUser);
+            cal.clear();
+            cal.set(2025, dates[i][0], dates[i][1], 9, 30);
+            entry.setPubTime(new Timestamp(cal.getTimeInMillis()));
+            mgr.saveWeblogEntry(entry);
+            ids[i] = entry.getId();
+        }
+        TestUtils.endSession(true);
+
+        cal.clear();
+        cal.set(2025, Calendar.MARCH, 1);
+        Date march = cal.getTime();
+        cal.set(2025, Calendar.JUNE, 1);
+        Date june = cal.getTime();
+
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(testWeblog);
+        wesc.setStatus(PubStatus.PUBLISHED);
+        wesc.setStartDate(march);
+        wesc.setEndDate(new Date(june.getTime() - 1));
+        Map<Date, String> days = mgr.getWeblogEntryStringMap(wesc);
+        assertEquals(List.of("20250320", "20250305"), new ArrayList<>(days.values()));
+        assertEquals(2, mgr.getWeblogEntryObjectMap(wesc).size());
+
+        assertEquals(march, mgr.getPreviousPublishedMonth(testWeblog, null, null, june));
+        assertEquals(june, mgr.getNextPublishedMonth(testWeblog, null, null, march));
+        assertNull(mgr.getPreviousPublishedMonth(testWeblog, null, null, march));
+        assertNull(mgr.getNextPublishedMonth(testWeblog, "nosuchcategory", null, march));
+
+        // an unpublished entry is gone once the change commits
+        WeblogEntry entry = mgr.getWeblogEntry(ids[1]);
+        entry.setStatus(PubStatus.DRAFT);
+        entry.setRefreshAggregates(true);
+        mgr.saveWeblogEntry(entry);
+        TestUtils.endSession(true);
+        assertEquals(List.of("20250305"), new ArrayList<>(mgr.getWeblogEntryStringMap(wesc).values()));
+
+        // but not when it is rolled back
+        entry = mgr.getWeblogEntry(ids[0]);
+        entry.setStatus(PubStatus.DRAFT);
+        entry.setRefreshAggregates(true);
+        mgr.saveWeblogEntry(entry);
+        TestUtils.endSession(false);
+        assertEquals(1, mgr.getWeblogEntryStringMap(wesc).size());
+
+        for (String id : ids) {
+            TestUtils.teardownWeblogEntry(id);
+        }
+        TestUtils.endSession(true);
+        assertTrue(mgr.getWeblogEntryStringMap(wesc).isEmpty());
+        assertTrue(mgr.getWeblogEntryObjectMap(wesc).isEmpty());
+    }
+
   
     
     /**
@@ -117,15 +117,34 @@ public class WeblogStatsTest  {
         assertNotNull(map.get("A"));
         assertNotNull(map.get("B"));
         assertNotNull(map.get("C"));
+        assertEquals(26, map.size());
+
+        // counts follow users being added and removed
+        String letter = user1.getUserName().substring(0, 1).toUpperCase();
+        long count = map.get(letter);
+        User user3 = TestUtils.setupUser("c_commentCountTestUser");
+        TestUtils.endSession(true);
+        assertEquals(count + 1, mgr.getUserNameLetterMap().get(letter));
+        TestUtils.teardownUser(user3.getUserName());
+        TestUtils.endSession(true);
+        assertEquals(count, mgr.getUserNameLetterMap().get(letter));
     }
 
     @Test
     public void testGetWeblogLetterMap() throws Exception {        
         WeblogManager mgr = WebloggerFactory.getWeblogger().getWeblogManager();
         Map<String, Long> map = mgr.getWeblogHandleLetterMap();    
-        assertNotNull(map.get("A"));
-        assertNotNull(map.get("B"));
-        assertNotNull(map.get("C"));
+        assertEquals(1L, map.get("A"));
+        assertEquals(1L, map.get("B"));
+        assertEquals(0L, map.get("C"));
+
+        // counts follow weblogs being added and removed
+        Weblog website3 = TestUtils.setupWeblog("c_testWebsite3", user1);
+        TestUtils.endSession(true);
+        assertEquals(1L, mgr.getWeblogHandleLetterMap().get("C"));
+        TestUtils.teardownWeblog(website3.getId());
+        TestUtils.endSession(true);
+        assertEquals(0L, mgr.getWeblogHandleLetterMap().get("C"));
     }
 
     @AfterEach
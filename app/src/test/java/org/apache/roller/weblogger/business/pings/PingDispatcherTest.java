@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.pings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.roller.weblogger.business.pings.PingDispatcher.Outcome;
+import org.apache.roller.weblogger.business.pings.PingDispatcher.Ping;
+import org.apache.roller.weblogger.pojos.PingQueueEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test sending pings with the PingDispatcher, without any real ping targets.
+ */
+public class PingDispatcherTest {
+
+    private static List<Ping> pings(String targetUrl, int count) {
+        List<Ping> pings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pings.add(new Ping(new PingQueueEntry(), targetUrl, "weblog" + i, "http://localhost/weblog" + i));
+        }
+        return pings;
+    }
+
+    @Test
+    public void testPingsPerTarget() throws Exception {
+
+        Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        AtomicInteger mostActive = new AtomicInteger();
+        PingDispatcher dispatcher = new PingDispatcher(ping -> {
+            AtomicInteger count = active.computeIfAbsent(ping.getTargetUrl(), url -> new AtomicInteger());
+            mostActive.accumulateAndGet(count.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            count.decrementAndGet();
+        }, 8, 2, 60000, 60000);
+
+        List<Ping> pings = new ArrayList<>();
+        pings.addAll(pings("http://localhost/a", 20));
+        pings.addAll(pings("http://localhost/b", 20));
+        pings.addAll(pings("http://localhost/c", 20));
+        dispatcher.dispatch(pings, 60000);
+
+        for (Ping ping : pings) {
+            assertEquals(Outcome.SENT, ping.getOutcome());
+        }
+        assertTrue(mostActive.get() <= 2, "at most 2 pings at a time to a target");
+    }
+
+    @Test
+    public void testFailingTargetBacksOff() throws Exception {
+
+        AtomicInteger attempts = new AtomicInteger();
+        PingDispatcher dispatcher = new PingDispatcher(ping -> {
+            if (ping.getTargetUrl().endsWith("down")) {
+                attempts.incrementAndGet();
+                throw new IOException("connection refused");
+            }
+        }, 4, 1, 60000, 600000);
+
+        List<Ping> pings = new ArrayList<>();
+        pings.addAll(pings("http://localhost/down", 10));
+        pings.addAll(pings("http://localhost/up", 10));
+        dispatcher.dispatch(pings, 60000);
+
+        // one real attempt, the rest aren't sent and stay queued
+        assertEquals(1, attempts.get());
+        assertEquals(Outcome.FAILED, pings.get(0).getOutcome());
+        assertEquals("connection refused", pings.get(0).getError().getMessage());
+        for (Ping ping : pings.subList(1, pings.size())) {
+            if (ping.getTargetUrl().endsWith("down")) {
+                assertEquals(Outcome.SKIPPED, ping.getOutcome());
+                assertNull(ping.getError());
+            } else {
+                assertEquals(Outcome.SENT, ping.getOutcome());
+            }
+        }
+        assertTrue(dispatcher.isBackingOff("http://localhost/down"));
+        assertFalse(dispatcher.isBackingOff("http://localhost/up"));
+
+        // while backing off the target isn't pinged at all
+        List<Ping> again = pings("http://localhost/down", 5);
+        dispatcher.dispatch(again, 60000);
+        assertEquals(1, attempts.get());
+        for (Ping ping : again) {
+            assertEquals(Outcome.SKIPPED, ping.getOutcome());
+        }
+    }
+
+    @Test
+    public void testSlowTargetTimesOut() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        PingDispatcher dispatcher = new PingDispatcher(ping -> {
+            if (ping.getTargetUrl().endsWith("slow")) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+        }, 4, 1, 60000, 60000);
+
+        List<Ping> pings = new ArrayList<>();
+        pings.addAll(pings("http://localhost/slow", 3));
+        pings.addAll(pings("http://localhost/fast", 3));
+        dispatcher.dispatch(pings, 200);
+        release.countDown();
+
+        // the slow target's pings weren't all sent, those left are tried again next pass
+        assertEquals(Outcome.SKIPPED, pings.get(2).getOutcome());
+        for (Ping ping : pings.subList(3, 6)) {
+            assertEquals(Outcome.SENT, ping.getOutcome());
+        }
+    }
+
+}
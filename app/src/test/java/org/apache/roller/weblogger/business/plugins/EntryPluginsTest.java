@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.plugins;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.util.HTMLSanitizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test weblog entry plugins and the caching of their results.
+ */
+public class EntryPluginsTest {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+    }
+
+    @Test
+    public void testPluginChainsAndTransformedText() {
+
+        PluginManager pmgr = WebloggerFactory.getWeblogger().getPluginManager();
+
+        Weblog weblog = new Weblog();
+        weblog.setId("entryPluginsWeblog");
+        weblog.setLastModified(new Date(1000));
+
+        // plugins are shared until the weblog is modified
+        assertSame(pmgr.getWeblogEntryPlugins(weblog), pmgr.getWeblogEntryPlugins(weblog));
+        Weblog sameWeblog = new Weblog();
+        sameWeblog.setId("entryPluginsWeblog");
+        sameWeblog.setLastModified(new Date(1000));
+        assertSame(pmgr.getWeblogEntryPlugins(weblog), pmgr.getWeblogEntryPlugins(sameWeblog));
+        sameWeblog.setLastModified(new Date(2000));
+        assertNotSame(pmgr.getWeblogEntryPlugins(weblog), pmgr.getWeblogEntryPlugins(sameWeblog));
+
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId("entryPluginsEntry");
+        entry.setWebsite(weblog);
+        entry.setStatus(PubStatus.PUBLISHED);
+        entry.setUpdateTime(new Timestamp(1000));
+        entry.setPlugins("Convert Line Breaks");
+        entry.setText("one\ntwo");
+        assertEquals("\n<p>one<br>\ntwo</p>\n\n", entry.getTransformedText());
+
+        // published entries are transformed again once updated
+        entry.setText("three");
+        assertEquals("\n<p>one<br>\ntwo</p>\n\n", entry.getTransformedText());
+        entry.setUpdateTime(new Timestamp(2000));
+        assertEquals("\n<p>three</p>\n\n", entry.getTransformedText());
+
+        // and sanitized once weblog admins aren't trusted
+        Boolean xssEnabled = HTMLSanitizer.xssEnabled;
+        try {
+            entry.setPlugins(null);
+            entry.setText("<script>three</script>");
+            entry.setUpdateTime(new Timestamp(3000));
+            HTMLSanitizer.xssEnabled = false;
+            assertEquals("<script>three</script>", entry.getTransformedText());
+            HTMLSanitizer.xssEnabled = true;
+            assertEquals("three", entry.getTransformedText());
+        } finally {
+            HTMLSanitizer.xssEnabled = xssEnabled;
+            entry.setPlugins("Convert Line Breaks");
+        }
+
+        // drafts every time
+        entry.setStatus(PubStatus.DRAFT);
+        entry.setText("four");
+        assertEquals("\n<p>four</p>\n\n", entry.getTransformedText());
+        assertNull(entry.getTransformedSummary());
+    }
+
+}
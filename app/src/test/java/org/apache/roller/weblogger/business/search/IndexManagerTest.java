@@ -105,6 +105,41 @@ public class IndexManagerTest {
         }
     }
 
+    @Test
+    public void testRebuildIndex() throws Exception {
+
+        IndexManager indexManager = WebloggerFactory.getWeblogger().getIndexManager();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        List<WeblogEntry> entries = createWeblogEntries(testWeblog, indexManager, entryManager);
+
+        try {
+            // full rebuild, swapped in when done
+            indexManager.rebuildWeblogIndex();
+            Thread.sleep(2 * RollerConstants.SEC_IN_MS);
+
+            SearchResultList result = indexManager.search("Enterprise",
+                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE,
+                WebloggerFactory.getWeblogger().getUrlStrategy());
+            assertEquals(2, result.getResults().size());
+
+            // rebuild of a single weblog
+            indexManager.rebuildWeblogIndex(TestUtils.getManagedWebsite(testWeblog));
+            Thread.sleep(2 * RollerConstants.SEC_IN_MS);
+
+            result = indexManager.search("Tholian",
+                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE,
+                WebloggerFactory.getWeblogger().getUrlStrategy());
+            assertEquals(1, result.getResults().size());
+
+        } finally {
+            for (WeblogEntry entry : entries) {
+                indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
+            }
+            indexManager.removeWeblogIndex(testWeblog);
+        }
+    }
+
     /**
      * Create some weblog entries, two with some Star Trek content
      */
@@ -116,6 +151,7 @@ public class IndexManagerTest {
         List<WeblogEntry> entries = Instancio.ofList(WeblogEntry.class).size(10).create();
 
         entries.get(0).setTitle("The Tholian Web");
+        entries.get(0).setStatus(WeblogEntry.PubStatus.PUBLISHED);
         entries.get(0).setPubTime(new Timestamp(System.currentTimeMillis()));
         entries.get(0).setText(
             "When the Enterprise attempts to ascertain the fate of the  "
@@ -125,6 +161,7 @@ public class IndexManagerTest {
         Thread.sleep(500);
 
         entries.get(1).setTitle("A Piece of the Action");
+        entries.get(1).setStatus(WeblogEntry.PubStatus.PUBLISHED);
         entries.get(1).setPubTime(new Timestamp(System.currentTimeMillis()));
         entries.get(1).setText(
             "The crew of the Enterprise attempts to make contact with "
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.core.security;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test making and checking stateless salt values.
+ */
+public class SaltTokensTest {
+
+    private static final long HOUR = 3600000L;
+
+    @Test
+    public void testSalts() {
+        SaltTokens tokens = new SaltTokens("secret".getBytes(StandardCharsets.UTF_8), HOUR);
+        long now = System.currentTimeMillis();
+
+        String salt = tokens.generate("user", "session", now);
+        assertNotEquals(salt, tokens.generate("user", "session", now));
+        assertTrue(tokens.isValid(salt, "user", "session", now));
+        assertTrue(tokens.isValid(salt, "user", "session", now + HOUR));
+
+        // any node with the same secret accepts it
+        assertTrue(new SaltTokens("secret".getBytes(StandardCharsets.UTF_8), HOUR)
+                .isValid(salt, "user", "session", now));
+        assertFalse(new SaltTokens("other".getBytes(StandardCharsets.UTF_8), HOUR)
+                .isValid(salt, "user", "session", now));
+
+        // only for the same user and session, for a while
+        assertFalse(tokens.isValid(salt, "other", "session", now));
+        assertFalse(tokens.isValid(salt, "user", "other", now));
+        assertFalse(tokens.isValid(salt, "user", "session", now + HOUR + 1));
+        assertFalse(tokens.isValid(tokens.generate("user", "session", now + HOUR), "user", "session", now));
+
+        // nor tampered with
+        String[] parts = salt.split("\\.");
+        String earlier = Long.toString(now - 1, Character.MAX_RADIX) + "." + parts[1] + "." + parts[2];
+        assertFalse(tokens.isValid(earlier, "user", "session", now));
+        assertFalse(tokens.isValid(salt + "x", "user", "session", now));
+        assertFalse(tokens.isValid("abcdefghij0123456789", "user", "session", now));
+        assertFalse(tokens.isValid("zz.zz.zz", "user", "session", now));
+        assertFalse(tokens.isValid(null, "user", "session", now));
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class CachedContentResponseUtilTest {
+
+    @Test
+    void testAcceptsGzip() {
+        assertTrue(CachedContentResponseUtil.acceptsGzip(request("gzip, deflate, br")));
+        assertTrue(CachedContentResponseUtil.acceptsGzip(request("deflate;q=1.0, gzip;q=0.5")));
+        assertTrue(CachedContentResponseUtil.acceptsGzip(request("*")));
+        assertFalse(CachedContentResponseUtil.acceptsGzip(request("gzip;q=0")));
+        assertFalse(CachedContentResponseUtil.acceptsGzip(request("identity")));
+        assertFalse(CachedContentResponseUtil.acceptsGzip(request(null)));
+    }
+
+    @Test
+    void testMatchesETag() {
+        assertTrue(CachedContentResponseUtil.matchesETag("\"abc\"", "abc"));
+        assertTrue(CachedContentResponseUtil.matchesETag("W/\"abc-gzip\"", "abc"));
+        assertTrue(CachedContentResponseUtil.matchesETag("\"xyz\", \"abc\"", "abc"));
+        assertTrue(CachedContentResponseUtil.matchesETag("*", "abc"));
+        assertFalse(CachedContentResponseUtil.matchesETag("\"xyz\"", "abc"));
+        assertFalse(CachedContentResponseUtil.matchesETag("mobile", "abc"));
+        assertFalse(CachedContentResponseUtil.matchesETag(null, "abc"));
+    }
+
+    @Test
+    void testNotModified() throws Exception {
+        CachedContent content = new CachedContent(100);
+        content.getCachedWriter().write("hello world");
+        content.close();
+
+        HttpServletRequest request = request(null);
+        when(request.getHeader("If-None-Match")).thenReturn("\"" + content.getContentHash() + "\"");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        CachedContentResponseUtil.writeContent(request, response, content);
+
+        verify(response).setHeader("ETag", "\"" + content.getContentHash() + "\"");
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response, never()).getOutputStream();
+    }
+
+    @Test
+    void testModified() throws Exception {
+        CachedContent content = new CachedContent(100);
+        content.getCachedWriter().write("hello world");
+        content.close();
+
+        HttpServletRequest request = request(null);
+        when(request.getHeader("If-None-Match")).thenReturn("\"somethingelse\"");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+
+        CachedContentResponseUtil.writeContent(request, response, content);
+
+        verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setContentLength(11);
+    }
+
+    private static HttpServletRequest request(String acceptEncoding) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+        return request;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.util.concurrent.CompletableFuture;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCoalescerTest {
+
+    @Test
+    void testFollowerGetsLeadersContent() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer(5000);
+
+        RenderCoalescer.Flight leader = coalescer.begin("key");
+        RenderCoalescer.Flight follower = coalescer.begin("key");
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+
+        CompletableFuture<CachedContent> waiting = CompletableFuture.supplyAsync(follower::await);
+
+        CachedContent content = new CachedContent(10);
+        leader.complete(content);
+        assertSame(content, waiting.get());
+
+        // once done the next request leads a new render
+        assertTrue(coalescer.begin("key").isLeader());
+    }
+
+    @Test
+    void testFailedLeader() {
+        RenderCoalescer coalescer = new RenderCoalescer(5000);
+
+        RenderCoalescer.Flight leader = coalescer.begin("key");
+        RenderCoalescer.Flight follower = coalescer.begin("key");
+        leader.complete(null);
+        assertNull(follower.await());
+    }
+
+    @Test
+    void testTimeout() {
+        RenderCoalescer coalescer = new RenderCoalescer(50);
+
+        coalescer.begin("key");
+        assertNull(coalescer.begin("key").await());
+        assertTrue(coalescer.begin("other").isLeader());
+    }
+
+}
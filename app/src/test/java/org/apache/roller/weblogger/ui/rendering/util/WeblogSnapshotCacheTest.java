@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.util.Locale;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshot;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogSnapshotCache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test that weblog snapshots are shared until their weblog is invalidated.
+ */
+public class WeblogSnapshotCacheTest {
+
+    private User testUser = null;
+    private Weblog testWeblog = null;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+        testUser = TestUtils.setupUser("snapshotUser");
+        testWeblog = TestUtils.setupWeblog("snapshotWeblog", testUser);
+        TestUtils.endSession(true);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        TestUtils.teardownWeblog(testWeblog.getId());
+        TestUtils.teardownUser(testUser.getUserName());
+        TestUtils.endSession(true);
+        WeblogSnapshotCache.getInstance().clear();
+    }
+
+    @Test
+    public void testSnapshots() throws Exception {
+        WeblogSnapshotCache cache = WeblogSnapshotCache.getInstance();
+
+        WeblogSnapshot snapshot = cache.get("snapshotWeblog");
+        assertNotNull(snapshot);
+        assertEquals(testWeblog.getId(), snapshot.getId());
+        assertEquals("basic", snapshot.getEditorTheme());
+        assertEquals(Locale.US, snapshot.getLocaleInstance());
+        assertEquals("America/Los_Angeles", snapshot.getTimeZoneInstance().getID());
+        assertTrue(snapshot.isVisible());
+        assertSame(snapshot, cache.get("snapshotWeblog"));
+
+        // kept until the weblog is invalidated
+        Weblog weblog = WebloggerFactory.getWeblogger().getWeblogManager().getWeblog(testWeblog.getId());
+        weblog.setEditorTheme("frontpage");
+        WebloggerFactory.getWeblogger().getWeblogManager().saveWeblog(weblog);
+        TestUtils.endSession(true);
+        assertEquals("basic", cache.get("snapshotWeblog").getEditorTheme());
+        CacheManager.invalidate(weblog);
+        assertEquals("frontpage", cache.get("snapshotWeblog").getEditorTheme());
+        assertFalse(cache.get("snapshotWeblog").getLastModified().before(weblog.getLastModified()));
+
+        // unknown handles are remembered too
+        assertNull(cache.get("snapshotMissing"));
+        Weblog missing = TestUtils.setupWeblog("snapshotMissing", testUser);
+        TestUtils.endSession(true);
+        try {
+            assertNull(cache.get("snapshotMissing"));
+            CacheManager.invalidate(missing);
+            assertNotNull(cache.get("snapshotMissing"));
+        } finally {
+            TestUtils.teardownWeblog(missing.getId());
+            TestUtils.endSession(true);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
+import org.apache.velocity.util.ExtProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test that parsed templates are kept until they are invalidated.
+ */
+public class TemplateResourceCacheTest {
+
+    // template sources and how often they were loaded
+    static final Map<String, String> SOURCES = new ConcurrentHashMap<>();
+    static final AtomicInteger LOADS = new AtomicInteger();
+
+    private VelocityEngine engine;
+
+    /**
+     * Loads templates from SOURCES, never reporting them as modified just
+     * like the database and theme loaders.
+     */
+    public static class MapResourceLoader extends ResourceLoader {
+
+        @Override
+        public void init(ExtProperties configuration) {
+        }
+
+        @Override
+        public Reader getResourceReader(String name, String encoding) {
+            String source = SOURCES.get(name.split("\\|")[0]);
+            if (source == null) {
+                throw new ResourceNotFoundException(name);
+            }
+            LOADS.incrementAndGet();
+            return new StringReader(source);
+        }
+
+        @Override
+        public boolean isSourceModified(Resource resource) {
+            return false;
+        }
+
+        @Override
+        public long getLastModified(Resource resource) {
+            return 0;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        SOURCES.clear();
+        LOADS.set(0);
+
+        Properties props = new Properties();
+        props.setProperty("resource.loaders", "map");
+        props.setProperty("resource.loader.map.class", MapResourceLoader.class.getName());
+        props.setProperty("resource.loader.map.cache", "true");
+        props.setProperty("resource.loader.map.modification_check_interval", "0");
+        props.setProperty("resource.manager.cache.class", TemplateResourceCache.class.getName());
+        props.setProperty("velocimacro.library.path", "");
+        engine = new VelocityEngine();
+        engine.init(props);
+    }
+
+    private String render(String name) {
+        StringWriter out = new StringWriter();
+        engine.getTemplate(name).merge(new VelocityContext(), out);
+        return out.toString();
+    }
+
+    @Test
+    public void testInvalidateTemplate() {
+        SOURCES.put("abc123", "one #parse('theme:day|standard')");
+        SOURCES.put("theme:day", "day");
+
+        assertEquals("one day", render("abc123|standard"));
+        assertEquals("one day", render("abc123|standard"));
+        assertEquals("one day", render("abc123|mobile"));
+        assertEquals(3, LOADS.get());
+
+        // edits show up once the template is invalidated
+        SOURCES.put("abc123", "two #parse('theme:day|standard')");
+        assertEquals("one day", render("abc123|standard"));
+        TemplateResourceCache.invalidateTemplate("abc123");
+        assertEquals("two day", render("abc123|standard"));
+        assertEquals("two day", render("abc123|mobile"));
+        assertEquals(5, LOADS.get());
+
+        // and theme templates once the theme is reloaded
+        SOURCES.put("theme:day", "night");
+        TemplateResourceCache.invalidateTheme("other");
+        assertEquals("two day", render("abc123|standard"));
+        TemplateResourceCache.invalidateTheme("theme");
+        assertEquals("two night", render("abc123|standard"));
+        assertEquals(6, LOADS.get());
+    }
+
+}
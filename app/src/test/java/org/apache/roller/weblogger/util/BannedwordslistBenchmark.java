@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compares checking comments against a compiled BannedwordslistMatcher with
+ * the previous approach of compiling every string rule on every check.
+ *
+ * Not a unit test, run it by hand, e.g.
+ *
+ *   java -cp ... org.apache.roller.weblogger.util.BannedwordslistBenchmark
+ *
+ * optional arguments are: string rules, regex rules, number of comments
+ */
+public class BannedwordslistBenchmark {
+
+    public static void main(String[] args) {
+        int stringRuleCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int regexRuleCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int comments = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        Random random = new Random(42);
+        List<String> stringRules = new ArrayList<>();
+        for (int i = 0; i < stringRuleCount; i++) {
+            stringRules.add(word(random, 6 + random.nextInt(6)) + (i % 10 == 0 ? ".com" : ""));
+        }
+        List<Pattern> regexRules = new ArrayList<>();
+        for (int i = 0; i < regexRuleCount; i++) {
+            regexRules.add(Pattern.compile("(" + word(random, 5) + "|" + word(random, 5)
+                    + ")[\\w\\-_.]*\\.[a-z]{2,}"));
+        }
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < comments; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 80; w++) {
+                text.append(word(random, 2 + random.nextInt(8))).append(' ');
+            }
+            texts.add(text.toString());
+        }
+
+        // warm up, then measure each
+        run("compiled", texts, stringRules, regexRules, true);
+        run("legacy  ", texts.subList(0, comments / 10), stringRules, regexRules, false);
+
+        run("compiled", texts, stringRules, regexRules, true);
+        run("legacy  ", texts, stringRules, regexRules, false);
+    }
+
+    private static void run(String name, List<String> texts, List<String> stringRules,
+            List<Pattern> regexRules, boolean compiled) {
+
+        long start = System.nanoTime();
+        int matched = 0;
+        if (compiled) {
+            BannedwordslistMatcher matcher = new BannedwordslistMatcher(stringRules, regexRules);
+            for (String text : texts) {
+                if (matcher.matches(text)) {
+                    matched++;
+                }
+            }
+        } else {
+            for (String text : texts) {
+                if (legacyStringRules(text, stringRules) || legacyRegexRules(text, regexRules)) {
+                    matched++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(name + ": " + texts.size() + " comments, " + matched + " matched, "
+                + (elapsed / 1000000) + "ms, " + (elapsed / 1000 / texts.size()) + "us/comment");
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    // how rules were checked before the matcher
+
+    private static boolean legacyRegexRules(String str, List<Pattern> regexRules) {
+        for (Pattern testPattern : regexRules) {
+            if (testPattern.matcher(str).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean legacyStringRules(String source, List<String> rules) {
+        for (String rule : rules) {
+            try {
+                Pattern pattern = Pattern.compile("\\b(" + rule + ")\\b", Pattern.CASE_INSENSITIVE);
+                if (pattern.matcher(source).find()) {
+                    return true;
+                }
+            } catch (PatternSyntaxException e) {
+                if (source.contains(rule)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -25,6 +25,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -78,6 +82,46 @@ public class BannedwordslistTest  {
     public void testIsBannedwordslisted5() {
         assertTrue(bannedwordslist.isBannedwordslisted("viagra.com"));
     }
+
+    // string rules match whole words, ignoring case
+    @Test
+    public void testStringRules() {
+        List<String> stringRules = Arrays.asList("casino", "cheap pills", "sp.m");
+        List<Pattern> regexRules = Collections.emptyList();
+        BannedwordslistMatcher rules = new BannedwordslistMatcher(stringRules, regexRules);
+
+        assertTrue(rules.matches("Visit our CASINO today"));
+        assertTrue(rules.matches("buy cheap pills"));
+        assertFalse(rules.matches("casinos are everywhere"));
+        assertFalse(rules.matches("an online-casinofest"));
+        assertTrue(rules.matches("spam or spim"));
+        assertFalse(rules.matches("nothing to see here"));
+
+        // same results as compiling the rules on the fly
+        assertTrue(Bannedwordslist.matchesRulesOnly("Visit our CASINO today", stringRules, regexRules));
+        assertFalse(Bannedwordslist.matchesRulesOnly("casinos", stringRules, regexRules));
+    }
+
+    // overlapping literals and a mix of regex rules
+    @Test
+    public void testMixedRules() {
+        List<String> stringRules = Arrays.asList("he", "she", "hers", "bad(");
+        List<Pattern> regexRules = Arrays.asList(
+            Pattern.compile("(foo|bar)\\d+"),
+            Pattern.compile("(x)\\1y"));
+        BannedwordslistMatcher rules = new BannedwordslistMatcher(stringRules, regexRules);
+
+        assertTrue(rules.matches("ushers she"));
+        assertFalse(rules.matches("ushers"));
+        assertTrue(rules.matches("a bad( rule"));
+        assertTrue(rules.matches("bar42"));
+        assertTrue(rules.matches("xxy"));
+        assertFalse(rules.matches("xy"));
+
+        assertTrue(bannedwordslist.isBannedwordslisted("foo7", rules));
+        assertTrue(bannedwordslist.isBannedwordslisted("www.lsotr.com", rules));
+        assertFalse(bannedwordslist.isBannedwordslisted("hello there", rules));
+    }
     
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test sanitizing html against the allowed tags and attributes.
+ */
+public class HTMLSanitizerTest {
+
+    @Test
+    public void testSanitize() {
+        assertEquals("<p>Hello <b>world</b></p>", HTMLSanitizer.sanitize("<p>Hello <b>world</b></p>"));
+        assertEquals("<p class=\"big\">Hialert(&#39;x&#39;)</p>",
+                HTMLSanitizer.sanitize("<p onclick=\"x()\" class=\"big\">Hi<script>alert('x')</script>"));
+        assertEquals("x <a href=\"http://example.com/\" title=\"t\">y</a>",
+                HTMLSanitizer.sanitize("<a href=\"javascript:alert(1)\">x</a> <a href=\"http://example.com/\" title=\"t\">y</a>"));
+        assertEquals("<img src=\"http://example.com/a.png\" width=\"100\" style=\"color:red;\">",
+                HTMLSanitizer.sanitize("<img src=\"http://example.com/a.png\" width=\"100\" height=\"1x\" "
+                        + "style=\"color: red; width:expression(1)\">"));
+
+        // table parts outside of tables are dropped, open tags closed
+        assertEquals("x<table><tr><td>y</td></tr></table><div>z</div>",
+                HTMLSanitizer.sanitize("<td>x</td><table><tr><td>y</td></tr></table><div>z"));
+
+        // plain text needs no copy
+        String text = "Nothing to see here & there";
+        assertSame(text, HTMLSanitizer.sanitize(text));
+    }
+
+    @Test
+    public void testSanitizeResult() throws Exception {
+        String html = "<p onclick=\"x()\" class=\"big\">Hi<script>alert('x')</script>";
+
+        HTMLSanitizer.SanitizeResult result = HTMLSanitizer.sanitizer(html);
+        assertEquals("<p class=\"big\">Hialert(&#39;x&#39;)</p>", result.html);
+        assertEquals("Hialert(&#39;x&#39;)", result.text);
+        assertEquals("<p class=\"big\">Hialert('x')</p>", result.val);
+        assertFalse(result.isValid);
+        assertEquals(List.of("p onclick x()", "<script>", "/script"), result.invalidTags);
+        assertTrue(HTMLSanitizer.isSanitized("<p>Hello <b>world</b></p>"));
+
+        // streamed the same as returned
+        StringWriter out = new StringWriter();
+        HTMLSanitizer.sanitize(html, out);
+        assertEquals(result.html, out.toString());
+    }
+
+}
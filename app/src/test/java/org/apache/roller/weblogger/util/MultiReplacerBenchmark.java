@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares replacing the smileys of the SmileysPlugin in a single pass with
+ * a MultiReplacer against the previous approach of one replaceAll() per
+ * smiley, over entry bodies of a few paragraphs with the odd smiley.
+ *
+ * Not a unit test, run it by hand, e.g.
+ *
+ *   java -cp ... org.apache.roller.weblogger.util.MultiReplacerBenchmark
+ *
+ * optional arguments are: number of entries, paragraphs per entry
+ */
+public class MultiReplacerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int paragraphs = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+        Properties smileyDefs = new Properties();
+        try (InputStream in = MultiReplacerBenchmark.class.getResourceAsStream(
+                "/org/apache/roller/weblogger/business/plugins/entry/smileys.properties")) {
+            smileyDefs.load(in);
+        }
+        List<String> smileys = new ArrayList<>(smileyDefs.stringPropertyNames());
+        Map<String, String> imageTags = new HashMap<>();
+        for (String smiley : smileys) {
+            imageTags.put(smiley, "<img src=\"http://localhost/roller/images/smileys/"
+                    + smileyDefs.getProperty(smiley) + "\" class=\"smiley\" alt=\"\" />");
+        }
+
+        Random random = new Random(42);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int p = 0; p < paragraphs; p++) {
+                text.append("<p>");
+                for (int w = 0; w < 60; w++) {
+                    text.append(word(random, 2 + random.nextInt(8)));
+                    text.append(random.nextInt(10) == 0 ? ", " : " ");
+                }
+                if (random.nextInt(3) == 0) {
+                    text.append(smileys.get(random.nextInt(smileys.size())));
+                }
+                text.append("</p>\n");
+            }
+            texts.add(text.toString());
+        }
+
+        // warm up, then measure each
+        run("single pass", texts, smileys, imageTags, true);
+        run("replaceAll ", texts, smileys, imageTags, false);
+
+        run("single pass", texts, smileys, imageTags, true);
+        run("replaceAll ", texts, smileys, imageTags, false);
+    }
+
+    private static void run(String name, List<String> texts, List<String> smileys,
+            Map<String, String> imageTags, boolean singlePass) {
+
+        long start = System.nanoTime();
+        long length = 0;
+        if (singlePass) {
+            MultiReplacer replacer = new MultiReplacer(imageTags);
+            for (String text : texts) {
+                length += replacer.replace(text).length();
+            }
+        } else {
+            Pattern[] patterns = new Pattern[smileys.size()];
+            String[] tags = new String[smileys.size()];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = Pattern.compile(Pattern.quote(smileys.get(i)));
+                tags[i] = Matcher.quoteReplacement(imageTags.get(smileys.get(i)));
+            }
+            for (String text : texts) {
+                for (int i = 0; i < patterns.length; i++) {
+                    text = patterns[i].matcher(text).replaceAll(tags[i]);
+                }
+                length += text.length();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(name + ": " + texts.size() + " entries, " + length + " chars, "
+                + (elapsed / 1000000) + "ms, " + (elapsed / 1000 / texts.size()) + "us/entry");
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test single pass replacement of literal strings.
+ */
+public class MultiReplacerTest {
+
+    @Test
+    public void testReplace() {
+        Map<String, String> replacements = new HashMap<>();
+        replacements.put(":)", "[smile]");
+        replacements.put(":))", "[laugh]");
+        replacements.put("O:-)", "[angel]");
+        replacements.put(":-)", "[smile]");
+        replacements.put("é", "e");
+        MultiReplacer replacer = new MultiReplacer(replacements);
+
+        assertEquals("[smile] and [laugh], [angel] not O:-[smile]",
+                replacer.replace(":-) and :)), O:-) not O:-:-)"));
+        assertEquals("cafe", replacer.replace("café"));
+
+        // replacements aren't scanned again
+        replacements.put("[smile]", "wrong");
+        assertEquals("[smile][smile]", new MultiReplacer(replacements).replace(":):-)"));
+
+        // nothing found, nothing copied
+        String text = "no smileys here: (just text)";
+        assertSame(text, replacer.replace(text));
+        assertNull(replacer.replace(null));
+        assertSame(text, new MultiReplacer(new HashMap<>()).replace(text));
+    }
+
+    @Test
+    public void testSameAsReplaceAll() {
+        // strings which aren't part of one another give the same results as
+        // replacing them one at a time
+        Map<String, String> replacements = new HashMap<>();
+        replacements.put(";-)", "<img alt=\"wink\" />");
+        replacements.put("8-)", "<img alt=\"cool\" />");
+        replacements.put(":-D", "<img alt=\"grin\" />");
+        replacements.put("\\-o", "<img alt=\"bored\" />");
+        MultiReplacer replacer = new MultiReplacer(replacements);
+
+        String text = "<p>Back from the trip ;-) 8-) it was fun :-D</p>\n"
+                + "<p>Well, mostly \\-o ;-) </p>";
+        String expected = text;
+        for (Map.Entry<String, String> replacement : replacements.entrySet()) {
+            expected = Pattern.compile(Pattern.quote(replacement.getKey())).matcher(expected)
+                    .replaceAll(Matcher.quoteReplacement(replacement.getValue()));
+        }
+        assertEquals(expected, replacer.replace(text));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Compares GC time of an LRUCacheImpl full of on heap CachedContent against
+ * the same cache holding off heap content, under a large working set.
+ *
+ * Not a unit test, run it by hand with a fixed heap, e.g.
+ *
+ *   java -Xmx2g -XX:MaxDirectMemorySize=2g -cp ... \
+ *       org.apache.roller.weblogger.util.cache.CachedContentOffHeapBenchmark
+ *
+ * optional arguments are: entries, entry size in KB, number of requests
+ */
+public class CachedContentOffHeapBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int entryKb = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+
+        // warm up, then measure each mode
+        run(false, entries / 10, entryKb, requests / 10);
+        run(true, entries / 10, entryKb, requests / 10);
+
+        report("on heap ", run(false, entries, entryKb, requests));
+        report("off heap", run(true, entries, entryKb, requests));
+    }
+
+    private static long[] run(boolean offHeap, int entries, int entryKb, int requests) throws Exception {
+        LRUCacheImpl cache = new LRUCacheImpl("benchmark", entries);
+        Random random = new Random(42);
+        // ascii, so each entry is entryKb once encoded as utf-8
+        char[] page = new char[entryKb * 1024];
+
+        System.gc();
+        long gcTimeBefore = gcTime();
+        long gcCountBefore = gcCount();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < requests; i++) {
+            // the working set is twice the cache size, so about half the requests miss
+            String key = "page" + random.nextInt(entries * 2);
+            if (cache.get(key) == null) {
+                CachedContent content = new CachedContent(page.length);
+                for (int c = 0; c < page.length; c++) {
+                    page[c] = (char) (' ' + random.nextInt(95));
+                }
+                content.getCachedWriter().write(page);
+                content.close();
+                if (offHeap) {
+                    content.moveOffHeap();
+                }
+                cache.put(key, content);
+            }
+
+            // some short lived request garbage
+            byte[] garbage = new byte[8 * 1024];
+            garbage[random.nextInt(garbage.length)] = 1;
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        return new long[] { elapsed, gcTime() - gcTimeBefore, gcCount() - gcCountBefore };
+    }
+
+    private static void report(String mode, long[] result) {
+        System.out.println(mode + ": elapsed=" + result[0] + "ms, gcTime=" + result[1]
+                + "ms, collections=" + result[2]);
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ConcurrentLRUCacheImpl.
+ */
+public class ConcurrentLRUCacheImplTest {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 10);
+        
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        assertEquals("string1", cache.get("key1"));
+        assertEquals("string2", cache.get("key2"));
+        
+        cache.put("key1", "string1b");
+        assertEquals("string1b", cache.get("key1"));
+        
+        cache.remove("key1");
+        assertNull(cache.get("key1"));
+        
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(3L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(3L, stats.get("puts"));
+        
+        cache.clear();
+        assertNull(cache.get("key2"));
+        assertEquals(0, cache.getStats().get("size"));
+    }
+
+    @Test
+    public void testLRU() {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 3);
+        
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        cache.put("key3", "string3");
+        
+        // accessing key1 and key2 will make key3 the eviction candidate
+        cache.get("key1");
+        cache.get("key2");
+        
+        cache.put("key4", "string4");
+        assertNull(cache.get("key3"));
+        assertNotNull(cache.get("key1"));
+        assertNotNull(cache.get("key2"));
+        assertNotNull(cache.get("key4"));
+        assertEquals(3, cache.getStats().get("size"));
+    }
+
+    @Test
+    public void testBoundedUnderChurn() {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 50);
+        
+        for (int i = 0; i < 10000; i++) {
+            cache.put("key" + (i % 200), "string" + i);
+            cache.get("key" + (i % 7));
+        }
+        assertTrue((Integer) cache.getStats().get("size") <= 50);
+    }
+
+    @Test
+    public void testByteBudget() throws Exception {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 100, 3000, 0);
+        
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, new LazyExpiringCacheEntry(content(1000)));
+        }
+        Map<String, Object> stats = cache.getStats();
+        assertTrue((Long) stats.get("bytes") <= 3000);
+        assertEquals(7000L, stats.get("bytesEvicted"));
+        assertNotNull(cache.get("key9"));
+        
+        // too big to ever fit
+        cache.put("big", new LazyExpiringCacheEntry(content(5000)));
+        assertNull(cache.get("big"));
+        
+        cache.remove("key9");
+        assertTrue((Long) cache.getStats().get("bytes") <= 2000);
+    }
+
+    @Test
+    public void testClearUnderChurn() throws Exception {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 20, 5000, 0);
+        CachedContent content = content(100);
+        
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    cache.put("key" + (i % 50), content);
+                }
+            });
+            writers[t].start();
+        }
+        while (writers[0].isAlive()) {
+            cache.clear();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        
+        // puts racing with clear mustn't have thrown off the byte count
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(100L * (Integer) stats.get("size"), stats.get("bytes"));
+        
+        cache.clear();
+        assertEquals(0L, cache.getStats().get("bytes"));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 10, 1);
+        
+        cache.put("key1", "string1");
+        assertNotNull(cache.get("key1"));
+        
+        Thread.sleep(1100);
+        assertNull(cache.get("key1"));
+    }
+
+    @Test
+    public void testOffHeapContent() throws Exception {
+        ConcurrentLRUCacheImpl cache = new ConcurrentLRUCacheImpl("test", 10, 3000, 0);
+        
+        CachedContent content = content(1000);
+        byte[] onHeap = content.getContent();
+        content.moveOffHeap();
+        assertTrue(content.isOffHeap());
+        assertEquals(1000, content.getContentLength());
+        assertArrayEquals(onHeap, content.getContent());
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.writeTo(out);
+        assertArrayEquals(onHeap, out.toByteArray());
+        
+        cache.put("key1", new LazyExpiringCacheEntry(content));
+        assertEquals(1000L, cache.getStats().get("bytes"));
+    }
+
+    @Test
+    public void testCompressedContent() throws Exception {
+        CachedContent content = content(1000);
+        content.compress();
+        assertTrue(content.hasGzipContent());
+        assertTrue(content.getGzipContentLength() < 1000);
+        content.moveOffHeap();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.writeGzipTo(out);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertArrayEquals(content.getContent(), in.readAllBytes());
+        }
+    }
+
+    private static CachedContent content(int size) throws Exception {
+        CachedContent content = new CachedContent(size);
+        for (int i = 0; i < size; i++) {
+            content.getCachedWriter().write('x');
+        }
+        content.close();
+        return content;
+    }
+
+}